@@ -0,0 +1,117 @@
+package com.example.dailyweighttracker_kotlin.data
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.time.LocalDate
+import java.util.Locale
+import java.util.Random
+
+// Times the version 6 to 7 migration on generated databases of increasing size, along with
+// the file size and how long the newest page of every user's history takes before and after.
+// Only the results and the page queries' plans are asserted; the timings are logged.
+@RunWith(AndroidJUnit4::class)
+class MigrationBenchmark {
+
+    private lateinit var context: Context
+
+    @Before
+    fun setUp() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        context.deleteDatabase(DB_NAME)
+    }
+
+    @After
+    fun tearDown() {
+        context.deleteDatabase(DB_NAME)
+    }
+
+    @Test
+    fun migrate6To7() {
+        for (rows in ROW_COUNTS) {
+            val db = Version6Database.create(context, DB_NAME)
+            Version6Database.insertUsers(db, USERS)
+            Version6Database.insertWeights(db, weights(rows))
+            val pageBefore = timeNewestPages(db)
+            db.close()
+            val sizeBefore = context.getDatabasePath(DB_NAME).length()
+
+            val database = AppDatabase.buildDatabase(context, DB_NAME)
+            val start = System.nanoTime()
+            val migrated = database.openHelper.writableDatabase
+            val migration = System.nanoTime() - start
+            val count = migrated.query("SELECT COUNT(*) FROM `weights`").use { it.moveToFirst(); it.getLong(0) }
+            // Timings vary too much on shared devices to assert on; the plans show the index is used
+            for ((sql, args) in listOf(NEWEST_PAGE to arrayOf<Any>(1), OLDER_PAGE to arrayOf<Any>(1, 0, 0))) {
+                val plan = migrated.query("EXPLAIN QUERY PLAN $sql", args).use { cursor ->
+                    val detail = cursor.getColumnIndexOrThrow("detail")
+                    generateSequence { if (cursor.moveToNext()) cursor.getString(detail) else null }.toList()
+                }
+                assertTrue("$sql: $plan", plan.any { it.contains("INDEX index_weights_userId_date") })
+                assertTrue("$sql: $plan", plan.none { it.contains("TEMP B-TREE") })
+            }
+            // Compacted, so the pages the old table freed don't count
+            migrated.execSQL("VACUUM")
+            migrated.query("PRAGMA wal_checkpoint(TRUNCATE)").use { it.moveToFirst() }
+            val sizeAfter = context.getDatabasePath(DB_NAME).length()
+            database.close()
+
+            val pageAfter = SQLiteDatabase.openDatabase(context.getDatabasePath(DB_NAME).path, null, SQLiteDatabase.OPEN_READONLY)
+                .use { timeNewestPages(it) }
+
+            Log.i(TAG, String.format(Locale.US, "%d rows: migrated in %d ms (%.0f rows/s); %d KiB -> %d KiB;"
+                    + " newest page for %d users %d us -> %d us",
+                rows, migration / 1_000_000, rows * 1e9 / migration, sizeBefore / 1024, sizeAfter / 1024,
+                USERS, pageBefore / 1000, pageAfter / 1000))
+            assertEquals(rows.toLong(), count)
+            context.deleteDatabase(DB_NAME)
+        }
+    }
+
+    // A daily reading per user, to the tenth, every user starting on the same day
+    private fun weights(rows: Int): Sequence<Triple<Int, Double, LocalDate>> {
+        val random = Random(7)
+        val current = DoubleArray(USERS) { 150.0 + random.nextInt(60) }
+        return (0 until rows).asSequence().map { i ->
+            val user = i % USERS
+            current[user] = Math.round((current[user] + random.nextGaussian() * 0.4) * 10) / 10.0
+            Triple(user + 1, current[user], START.plusDays((i / USERS).toLong()))
+        }
+    }
+
+    // Best of RUNS for reading the newest page of every user, as the history screen does first
+    private fun timeNewestPages(db: SQLiteDatabase): Long {
+        var best = Long.MAX_VALUE
+        repeat(RUNS) {
+            val start = System.nanoTime()
+            for (user in 1..USERS) {
+                db.rawQuery(NEWEST_PAGE, arrayOf(user.toString())).use { cursor -> while (cursor.moveToNext()) cursor.getDouble(2) }
+            }
+            best = minOf(best, System.nanoTime() - start)
+        }
+        return best
+    }
+
+    companion object {
+        private const val TAG = "MigrationBenchmark"
+        private const val DB_NAME = "migration-benchmark.db"
+        private val ROW_COUNTS = intArrayOf(10_000, 100_000, 1_000_000)
+        private const val USERS = 100
+        private const val RUNS = 5
+        private const val PAGE_SIZE = 30
+        // The history screen's first page and a later one, as WeightDao issues them
+        private const val NEWEST_PAGE =
+            "SELECT * FROM `weights` WHERE `userId` = ? ORDER BY `date` DESC, `id` DESC LIMIT $PAGE_SIZE"
+        private const val OLDER_PAGE = "SELECT * FROM `weights` WHERE `userId` = ?1 AND `date` <= ?2" +
+            " AND (`date` < ?2 OR `id` < ?3) ORDER BY `date` DESC, `id` DESC LIMIT $PAGE_SIZE"
+        private val START: LocalDate = LocalDate.of(2000, 1, 1)
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.dailyweighttracker_kotlin.data
+
+import android.content.Context
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.example.dailyweighttracker_kotlin.data.room.User
+import com.example.dailyweighttracker_kotlin.data.room.Weight
+import com.example.dailyweighttracker_kotlin.data.room.WeightSummary
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.time.LocalDate
+
+// Opens databases from every earlier version with AppDatabase and checks what survives.
+// Room validates the migrated tables against the entities on open, so a wrong column or index fails here.
+@RunWith(AndroidJUnit4::class)
+class MigrationTest {
+
+    private lateinit var context: Context
+    private var database: AppDatabase? = null
+
+    @Before
+    fun setUp() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        context.deleteDatabase(DB_NAME)
+    }
+
+    @After
+    fun tearDown() {
+        database?.close()
+        context.deleteDatabase(DB_NAME)
+    }
+
+    @Test
+    fun migrate6To7_keepsEveryWeightAndDate() = runBlocking {
+        val dates = listOf(
+            LocalDate.of(1969, 12, 31),
+            LocalDate.of(1970, 1, 1),
+            LocalDate.of(2024, 2, 29),
+            LocalDate.of(2024, 2, 29),
+            LocalDate.of(2099, 12, 31)
+        )
+        val db = Version6Database.create(context, DB_NAME)
+        Version6Database.insertUsers(db, 2)
+        Version6Database.insertWeights(db, dates.asSequence().mapIndexed { i, date -> Triple(1, 150.0 + i, date) })
+        Version6Database.insertWeights(db, sequenceOf(Triple(2, 200.5, LocalDate.of(2020, 6, 1))))
+        db.execSQL("INSERT INTO `goals` (`userId`, `goalWeight`) VALUES (1, 140.0)")
+        db.close()
+
+        val migrated = open()
+        val weightDao = migrated.weightDao()
+
+        // Newest first, with the two entries on the same day in id order
+        val expected = dates.mapIndexed { i, date -> Weight(id = i + 1, userId = 1, weight = 150.0 + i, date = date) }
+            .sortedWith(compareByDescending<Weight> { it.date }.thenByDescending { it.id })
+        assertEquals(expected, weightDao.getNewestWeights(1, 10))
+        assertEquals(expected.first(), weightDao.getLatestWeight(1).first())
+        assertEquals(WeightSummary(count = 5, lowest = 150.0, highest = 154.0), weightDao.getWeightSummary(1).first())
+        assertEquals(
+            listOf(Weight(id = 6, userId = 2, weight = 200.5, date = LocalDate.of(2020, 6, 1))),
+            weightDao.getNewestWeights(2, 10)
+        )
+        assertEquals(140.0, migrated.goalDao().getGoalForUserFlow(1).first()?.goalWeight)
+
+        // Stored as day counts, and new ids carry on from the old ones
+        assertEquals(listOf(-1L, 0L), longs("SELECT `date` FROM `weights` WHERE `id` <= 2 ORDER BY `id`"))
+        weightDao.insert(Weight(userId = 1, weight = 149.0, date = LocalDate.of(2100, 1, 1)))
+        assertEquals(7, weightDao.getLatestWeight(1).first()?.id)
+
+        assertEquals(
+            listOf("index_weights_userId_date", "index_weights_userId_weight"),
+            strings("SELECT `name` FROM sqlite_master WHERE `type` = 'index' AND `tbl_name` = 'weights' ORDER BY `name`")
+        )
+    }
+
+    @Test
+    fun migrate6To7_emptyDatabase() = runBlocking {
+        Version6Database.create(context, DB_NAME).close()
+
+        val weightDao = open().weightDao()
+
+        assertNull(weightDao.getLatestWeight(1).first())
+        assertEquals(WeightSummary(count = 0, lowest = null, highest = null), weightDao.getWeightSummary(1).first())
+    }
+
+    @Test
+    fun versionsBefore6_areRebuilt() = runBlocking {
+        for (version in AppDatabase.DESTRUCTIVE_MIGRATION_VERSIONS) {
+            // What version 5's broken migration expected to find
+            val db = context.openOrCreateDatabase(DB_NAME, Context.MODE_PRIVATE, null)
+            db.execSQL("CREATE TABLE `weight_table` (`id` INTEGER PRIMARY KEY, `weight` REAL)")
+            db.execSQL("INSERT INTO `weight_table` VALUES (1, 150.0)")
+            db.version = version
+            db.close()
+
+            val rebuilt = open()
+            val userId = rebuilt.userDao().insertUser(User(username = "user", password = "password")).toInt()
+            rebuilt.weightDao().insert(Weight(userId = userId, weight = 150.0, date = LocalDate.of(2024, 1, 1)))
+
+            assertEquals("version $version", 1, rebuilt.weightDao().getWeightSummary(userId).first().count)
+            assertEquals("version $version", 0L, longs("SELECT COUNT(*) FROM sqlite_master WHERE `name` = 'weight_table'").single())
+            rebuilt.close()
+            database = null
+            context.deleteDatabase(DB_NAME)
+        }
+    }
+
+    private fun open(): AppDatabase = AppDatabase.buildDatabase(context, DB_NAME).also { database = it }
+
+    private fun longs(sql: String): List<Long> =
+        database!!.openHelper.readableDatabase.query(sql).use { cursor ->
+            generateSequence { if (cursor.moveToNext()) cursor.getLong(0) else null }.toList()
+        }
+
+    private fun strings(sql: String): List<String> =
+        database!!.openHelper.readableDatabase.query(sql).use { cursor ->
+            generateSequence { if (cursor.moveToNext()) cursor.getString(0) else null }.toList()
+        }
+
+    companion object {
+        private const val DB_NAME = "migration-test.db"
+    }
+}
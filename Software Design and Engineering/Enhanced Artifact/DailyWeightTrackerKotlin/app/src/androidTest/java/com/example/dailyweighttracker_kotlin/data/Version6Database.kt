@@ -0,0 +1,66 @@
+package com.example.dailyweighttracker_kotlin.data
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import java.time.LocalDate
+
+// Writes databases in the version 6 schema, the last one before dates became epoch days
+object Version6Database {
+
+    // The tables and indices Room created for version 6
+    private val SCHEMA = listOf(
+        "CREATE TABLE IF NOT EXISTS `users` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "`username` TEXT NOT NULL, `password` TEXT NOT NULL, `is_guest` INTEGER NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS `weights` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "`userId` INTEGER NOT NULL, `weight` REAL NOT NULL, `date` TEXT NOT NULL, " +
+            "FOREIGN KEY(`userId`) REFERENCES `users`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )",
+        "CREATE INDEX IF NOT EXISTS `index_weights_userId` ON `weights` (`userId`)",
+        "CREATE TABLE IF NOT EXISTS `goals` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "`userId` INTEGER NOT NULL, `goalWeight` REAL NOT NULL, " +
+            "FOREIGN KEY(`userId`) REFERENCES `users`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )",
+        "CREATE INDEX IF NOT EXISTS `index_goals_userId` ON `goals` (`userId`)"
+    )
+
+    // Creates an empty version 6 database, replacing any with the same name
+    fun create(context: Context, name: String): SQLiteDatabase {
+        context.deleteDatabase(name)
+        val db = context.openOrCreateDatabase(name, Context.MODE_PRIVATE, null)
+        SCHEMA.forEach(db::execSQL)
+        db.version = 6
+        return db
+    }
+
+    // Adds users with ids 1 to count
+    fun insertUsers(db: SQLiteDatabase, count: Int) {
+        db.beginTransaction()
+        try {
+            val insert = db.compileStatement("INSERT INTO `users` (`id`, `username`, `password`, `is_guest`) VALUES (?, ?, ?, 0)")
+            for (id in 1..count) {
+                insert.bindLong(1, id.toLong())
+                insert.bindString(2, "user$id")
+                insert.bindString(3, "password$id")
+                insert.executeInsert()
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    // Adds one weight per (userId, weight, date), with the date as an ISO string
+    fun insertWeights(db: SQLiteDatabase, weights: Sequence<Triple<Int, Double, LocalDate>>) {
+        db.beginTransaction()
+        try {
+            val insert = db.compileStatement("INSERT INTO `weights` (`userId`, `weight`, `date`) VALUES (?, ?, ?)")
+            for ((userId, weight, date) in weights) {
+                insert.bindLong(1, userId.toLong())
+                insert.bindDouble(2, weight)
+                insert.bindString(3, date.toString())
+                insert.executeInsert()
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+}
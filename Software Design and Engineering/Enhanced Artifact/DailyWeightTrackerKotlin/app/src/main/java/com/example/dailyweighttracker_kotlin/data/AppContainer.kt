@@ -15,7 +15,8 @@ interface AppContainer {
 class AppDataContainer(private val context: Context) : AppContainer {
 
     override val weightRepository: WeightRepository by lazy {
-        WeightRepository(AppDatabase.getDatabase(context).weightDao())
+        val database = AppDatabase.getDatabase(context)
+        WeightRepository(database.weightDao(), database.invalidationTracker)
     }
 
     override val userPreferencesDAO: UserPreferencesDAO by lazy {
@@ -12,8 +12,8 @@ import com.example.dailyweighttracker_kotlin.data.room.*
 // Defines the database
 @Database(
     entities = [Weight::class, User::class, Goal::class],
-    version = 6,
-    exportSchema = false
+    version = 7,
+    exportSchema = true
 )
 
 
@@ -29,26 +29,54 @@ abstract class AppDatabase : RoomDatabase() {
         @Volatile
         private var Instance: AppDatabase? = null
 
-       // Database Migration
-        val MIGRATION_1_2 = object : Migration(5, 6) {
+        private const val DATABASE_NAME = "daily_weight_db"
+
+        // Version 7 stores weight dates as epoch days and indexes them with the user
+        val MIGRATION_6_7 = object : Migration(6, 7) {
             override fun migrate(db: SupportSQLiteDatabase) {
-                db.execSQL("ALTER TABLE weight_table ADD COLUMN notes TEXT DEFAULT '' NOT NULL")
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `weights_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                        "`userId` INTEGER NOT NULL, `weight` REAL NOT NULL, `date` INTEGER NOT NULL, " +
+                        "FOREIGN KEY(`userId`) REFERENCES `users`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )"
+                )
+                // julianday is exact for ISO dates, which are all at midnight
+                db.execSQL(
+                    "INSERT INTO `weights_new` (`id`, `userId`, `weight`, `date`) " +
+                        "SELECT `id`, `userId`, `weight`, CAST(julianday(`date`) - 2440587.5 AS INTEGER) FROM `weights`"
+                )
+                db.execSQL("DROP TABLE `weights`")
+                db.execSQL("ALTER TABLE `weights_new` RENAME TO `weights`")
+                // Indexed after the copy so each index is built once
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_weights_userId_date` ON `weights` (`userId`, `date`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_weights_userId_weight` ON `weights` (`userId`, `weight`)")
             }
         }
 
+        // Every migration, oldest first
+        val ALL_MIGRATIONS = arrayOf(MIGRATION_6_7)
+
+        // Versions before 6 were never exported and had no working migration, so they are rebuilt
+        val DESTRUCTIVE_MIGRATION_VERSIONS = intArrayOf(1, 2, 3, 4, 5)
+
         // Creates database if database doesn't exist.
         fun getDatabase(context: Context): AppDatabase {
             return Instance ?: synchronized(this) {
-                val instance = Room.databaseBuilder(
-                    context.applicationContext,
-                    AppDatabase::class.java,
-                    "daily_weight_db"
-                )
-                    .addMigrations(MIGRATION_1_2)
-                    .build()
+                val instance = buildDatabase(context, DATABASE_NAME)
                 Instance = instance
                 instance
             }
         }
+
+        // Builds a database with every migration
+        fun buildDatabase(context: Context, name: String): AppDatabase {
+            return Room.databaseBuilder(
+                context.applicationContext,
+                AppDatabase::class.java,
+                name
+            )
+                .addMigrations(*ALL_MIGRATIONS)
+                .fallbackToDestructiveMigrationFrom(true, *DESTRUCTIVE_MIGRATION_VERSIONS)
+                .build()
+        }
     }
 }
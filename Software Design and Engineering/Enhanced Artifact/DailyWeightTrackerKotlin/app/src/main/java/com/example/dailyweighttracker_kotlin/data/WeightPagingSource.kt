@@ -0,0 +1,74 @@
+package com.example.dailyweighttracker_kotlin.data
+
+import androidx.paging.PagingSource
+import androidx.paging.PagingState
+import androidx.room.InvalidationTracker
+import com.example.dailyweighttracker_kotlin.data.room.Weight
+import com.example.dailyweighttracker_kotlin.data.room.WeightDao
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.time.LocalDate
+import java.util.concurrent.atomic.AtomicBoolean
+
+// Position of a weight in the history, newest first
+data class WeightPageKey(val date: LocalDate, val id: Int)
+
+/**
+ * Pages a user's weights newest first, seeking from the (date, id) of the page edge instead of
+ * counting an offset, so each load reads only the rows it returns.
+ * Invalidates itself when the weights table changes so the pager reloads around what is on screen.
+ */
+class WeightPagingSource(
+    private val weightDao: WeightDao,
+    private val invalidationTracker: InvalidationTracker,
+    private val userId: Int
+) : PagingSource<WeightPageKey, Weight>() {
+
+    private val registered = AtomicBoolean(false)
+
+    private val observer = object : InvalidationTracker.Observer(WEIGHTS_TABLE) {
+        override fun onInvalidated(tables: Set<String>) {
+            invalidate()
+        }
+    }
+
+    init {
+        registerInvalidatedCallback { invalidationTracker.removeObserver(observer) }
+    }
+
+    override suspend fun load(params: LoadParams<WeightPageKey>): LoadResult<WeightPageKey, Weight> {
+        // Watch the table from the first load, off the main thread
+        if (registered.compareAndSet(false, true)) {
+            withContext(Dispatchers.IO) { invalidationTracker.addObserver(observer) }
+        }
+        val key = params.key
+        val weights = when {
+            key == null -> weightDao.getNewestWeights(userId, params.loadSize)
+            params is LoadParams.Prepend ->
+                weightDao.getWeightsNewerThan(userId, key.date, key.id, params.loadSize).asReversed()
+            params is LoadParams.Append ->
+                weightDao.getWeightsOlderThan(userId, key.date, key.id, params.loadSize)
+            // Refresh starts at the key itself
+            else -> weightDao.getWeightsOlderThan(userId, key.date, key.id + 1, params.loadSize)
+        }
+        val reachedNewest = key == null || (params is LoadParams.Prepend && weights.size < params.loadSize)
+        val reachedOldest = params !is LoadParams.Prepend && weights.size < params.loadSize
+        return LoadResult.Page(
+            data = weights,
+            prevKey = if (reachedNewest) null else weights.firstOrNull()?.toPageKey() ?: key,
+            nextKey = if (reachedOldest) null else weights.lastOrNull()?.toPageKey()
+        )
+    }
+
+    // Reloads from a little above the first visible weight so the list doesn't jump
+    override fun getRefreshKey(state: PagingState<WeightPageKey, Weight>): WeightPageKey? {
+        val anchor = state.anchorPosition ?: return null
+        return state.closestItemToPosition(maxOf(0, anchor - state.config.pageSize / 2))?.toPageKey()
+    }
+
+    private fun Weight.toPageKey() = WeightPageKey(date, id)
+
+    companion object {
+        private const val WEIGHTS_TABLE = "weights"
+    }
+}
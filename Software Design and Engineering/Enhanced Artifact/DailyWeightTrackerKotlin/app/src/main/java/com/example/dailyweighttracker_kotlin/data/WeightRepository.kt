@@ -1,15 +1,32 @@
 package com.example.dailyweighttracker_kotlin.data
 
+import androidx.paging.PagingSource
+import androidx.room.InvalidationTracker
 import com.example.dailyweighttracker_kotlin.data.room.Weight
 import com.example.dailyweighttracker_kotlin.data.room.WeightDao
+import com.example.dailyweighttracker_kotlin.data.room.WeightSummary
 import kotlinx.coroutines.flow.Flow
 
 
 // Manages weights in database
-class WeightRepository(private val weightDao: WeightDao) {
+class WeightRepository(
+    private val weightDao: WeightDao,
+    private val invalidationTracker: InvalidationTracker
+) {
 
-    // Returns weights
-    fun getAllWeightsStream(userId: Int): Flow<List<Weight>> = weightDao.getAllWeights(userId)
+    // Returns the most recent weight
+    fun getLatestWeightStream(userId: Int): Flow<Weight?> = weightDao.getLatestWeight(userId)
+
+    // Returns the last few weights, newest first
+    fun getRecentWeightsStream(userId: Int, limit: Int): Flow<List<Weight>> =
+        weightDao.getRecentWeights(userId, limit)
+
+    // Returns the count, lowest and highest weight
+    fun getWeightSummaryStream(userId: Int): Flow<WeightSummary> = weightDao.getWeightSummary(userId)
+
+    // Returns a new paging source over weights, newest first
+    fun getWeightsPagingSource(userId: Int): PagingSource<WeightPageKey, Weight> =
+        WeightPagingSource(weightDao, invalidationTracker, userId)
 
     // Inserts weight into database
     suspend fun insertWeight(weight: Weight) = weightDao.insert(weight)
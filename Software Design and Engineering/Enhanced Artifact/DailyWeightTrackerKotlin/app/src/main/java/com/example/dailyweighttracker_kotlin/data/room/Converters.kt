@@ -2,23 +2,19 @@ package com.example.dailyweighttracker_kotlin.data.room
 
 import androidx.room.TypeConverter
 import java.time.LocalDate
-import java.time.format.DateTimeFormatter
 
-// Converts LocalDate to a string to be stored in the Database
+// Converts LocalDate to a day count since 1970-01-01 to be stored in the Database
 class Converters {
 
-    private val formatter = DateTimeFormatter.ISO_LOCAL_DATE
-
-
     @TypeConverter
-    fun fromLocalDate(date: LocalDate?): String? {
-        return date?.format(formatter)
+    fun fromLocalDate(date: LocalDate?): Long? {
+        return date?.toEpochDay()
     }
 
     @TypeConverter
-    fun toLocalDate(dateString: String?): LocalDate? {
-        return dateString?.let {
-            LocalDate.parse(it, formatter)
+    fun toLocalDate(epochDay: Long?): LocalDate? {
+        return epochDay?.let {
+            LocalDate.ofEpochDay(it)
         }
     }
-}
\ No newline at end of file
+}
@@ -18,7 +18,10 @@ import java.time.LocalDate
             onDelete = ForeignKey.CASCADE
         )
     ],
-    indices = [Index(value = ["userId"])]
+    indices = [
+        Index(value = ["userId", "date"]),
+        Index(value = ["userId", "weight"])
+    ]
 )
 
 // Creates weight data class
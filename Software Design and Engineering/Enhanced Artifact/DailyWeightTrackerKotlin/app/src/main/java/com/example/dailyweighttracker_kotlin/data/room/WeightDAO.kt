@@ -7,6 +7,7 @@ import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import androidx.room.Update
 import kotlinx.coroutines.flow.Flow
+import java.time.LocalDate
 
 
     /**
@@ -30,7 +31,38 @@ import kotlinx.coroutines.flow.Flow
         @Delete
         suspend fun delete(weight: Weight)
 
-        // Get weight by user id and order by date
-        @Query("SELECT * FROM weights WHERE userId = :userId ORDER BY date DESC")
-        fun getAllWeights(userId: Int): Flow<List<Weight>>
+        // Get the most recent weight
+        @Query("SELECT * FROM weights WHERE userId = :userId ORDER BY date DESC, id DESC LIMIT 1")
+        fun getLatestWeight(userId: Int): Flow<Weight?>
+
+        // Get the last few weights, newest first
+        @Query("SELECT * FROM weights WHERE userId = :userId ORDER BY date DESC, id DESC LIMIT :limit")
+        fun getRecentWeights(userId: Int, limit: Int): Flow<List<Weight>>
+
+        // Get the count, lowest and highest weight, each as its own lookup
+        @Query(
+            "SELECT (SELECT COUNT(*) FROM weights WHERE userId = :userId) AS count, " +
+                "(SELECT MIN(weight) FROM weights WHERE userId = :userId) AS lowest, " +
+                "(SELECT MAX(weight) FROM weights WHERE userId = :userId) AS highest"
+        )
+        fun getWeightSummary(userId: Int): Flow<WeightSummary>
+
+        // Get the newest page of weights, newest first
+        @Query("SELECT * FROM weights WHERE userId = :userId ORDER BY date DESC, id DESC LIMIT :limit")
+        suspend fun getNewestWeights(userId: Int, limit: Int): List<Weight>
+
+        // Get the page of weights older than (date, id), newest first. The bare date bound lets the
+        // (userId, date) index seek straight to the key instead of walking down from the newest row.
+        @Query(
+            "SELECT * FROM weights WHERE userId = :userId AND date <= :date AND (date < :date OR id < :id) " +
+                "ORDER BY date DESC, id DESC LIMIT :limit"
+        )
+        suspend fun getWeightsOlderThan(userId: Int, date: LocalDate, id: Int, limit: Int): List<Weight>
+
+        // Get the page of weights newer than (date, id), oldest first, bounded the same way
+        @Query(
+            "SELECT * FROM weights WHERE userId = :userId AND date >= :date AND (date > :date OR id > :id) " +
+                "ORDER BY date ASC, id ASC LIMIT :limit"
+        )
+        suspend fun getWeightsNewerThan(userId: Int, date: LocalDate, id: Int, limit: Int): List<Weight>
     }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.example.dailyweighttracker_kotlin.data.room
+
+// Count and range of a user's weights; lowest and highest are null with no weights
+data class WeightSummary(
+    val count: Int,
+    val lowest: Double?,
+    val highest: Double?,
+)
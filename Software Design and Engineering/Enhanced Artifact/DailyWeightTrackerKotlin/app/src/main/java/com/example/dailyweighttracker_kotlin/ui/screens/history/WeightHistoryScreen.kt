@@ -6,7 +6,6 @@ import androidx.compose.foundation.layout.fillMaxHeight
 import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.lazy.LazyColumn
-import androidx.compose.foundation.lazy.items
 import androidx.compose.foundation.text.KeyboardOptions
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Delete
@@ -27,6 +26,8 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.text.input.KeyboardType
 import androidx.compose.ui.unit.dp
 import androidx.lifecycle.viewmodel.compose.viewModel
+import androidx.paging.compose.collectAsLazyPagingItems
+import androidx.paging.compose.itemKey
 import com.example.dailyweighttracker_kotlin.AppViewModelProvider
 import java.time.format.DateTimeFormatter
 
@@ -37,6 +38,7 @@ fun WeightHistoryScreen(
     viewModel: WeightHistoryViewModel = viewModel(factory = AppViewModelProvider.Factory)
 ) {
     val uiState by viewModel.uiState.collectAsState()
+    val weights = viewModel.weights.collectAsLazyPagingItems()
 
     // Delete Dialog
     if (uiState.showDeleteConfirmation) {
@@ -85,12 +87,14 @@ fun WeightHistoryScreen(
         modifier = Modifier.padding(16.dp),
         verticalArrangement = Arrangement.spacedBy(8.dp)
     ) {
-        items(uiState.weights) { weight ->
-            WeightHistoryItem(
-                weight = weight,
-                weightUnit = uiState.weightUnit.label,
-                onEvent = viewModel::onEvent
-            )
+        items(count = weights.itemCount, key = weights.itemKey { it.id }) { index ->
+            weights[index]?.let { weight ->
+                WeightHistoryItem(
+                    weight = weight,
+                    weightUnit = uiState.weightUnit.label,
+                    onEvent = viewModel::onEvent
+                )
+            }
         }
     }
 }
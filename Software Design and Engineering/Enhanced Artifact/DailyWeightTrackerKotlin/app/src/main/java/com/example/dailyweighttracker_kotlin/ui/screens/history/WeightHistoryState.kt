@@ -5,7 +5,6 @@ import java.time.LocalDate
 
 // UI State for weight history screen
 data class WeightHistoryState(
-    val weights: List<WeightEntry> = emptyList(),
     val weightUnit: WeightUnit = WeightUnit.LBS,
     val weightToDelete: WeightEntry? = null,
     val showDeleteConfirmation: Boolean = false,
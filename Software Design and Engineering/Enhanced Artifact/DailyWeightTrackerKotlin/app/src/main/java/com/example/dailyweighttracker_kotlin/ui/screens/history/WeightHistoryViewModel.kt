@@ -2,16 +2,26 @@ package com.example.dailyweighttracker_kotlin.ui.screens.history
 
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
+import androidx.paging.map
 import com.example.dailyweighttracker_kotlin.data.SessionManager
 import com.example.dailyweighttracker_kotlin.data.UserPreferencesDAO
 import com.example.dailyweighttracker_kotlin.data.WeightRepository
 import com.example.dailyweighttracker_kotlin.data.WeightUnit
 import com.example.dailyweighttracker_kotlin.data.room.Weight
+import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
-import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 
@@ -26,10 +36,28 @@ class WeightHistoryViewModel(
     private val _uiState = MutableStateFlow(WeightHistoryState())
     val uiState: StateFlow<WeightHistoryState> = _uiState.asStateFlow()
 
+    // Weight history for the current user, loaded a page at a time as the list scrolls
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val weights: Flow<PagingData<WeightEntry>> = SessionManager.currentUser
+        .flatMapLatest { user ->
+            if (user == null) {
+                flowOf(PagingData.empty())
+            } else {
+                userPreferencesDAO.getUnitPreference(user.id)
+                    .distinctUntilChanged()
+                    .flatMapLatest { unit ->
+                        Pager(PagingConfig(pageSize = PAGE_SIZE, enablePlaceholders = false)) {
+                            weightRepository.getWeightsPagingSource(user.id)
+                        }.flow.map { page -> page.map { it.toWeightEntry(unit) } }
+                    }
+            }
+        }
+        .cachedIn(viewModelScope)
+
     private var job: Job? = null
 
     init {
-        // Load data when user logs in
+        // Load unit when user logs in
         viewModelScope.launch {
             SessionManager.currentUser.collect { user ->
                 job?.cancel()
@@ -37,15 +65,9 @@ class WeightHistoryViewModel(
                     _uiState.value = WeightHistoryState()
                 } else {
                     job = launch {
-                        combine(
-                            weightRepository.getAllWeightsStream(user.id),
-                            userPreferencesDAO.getUnitPreference(user.id)
-                        ) { weights, unit ->
-                            _uiState.value.copy(
-                                weights = weights.map { it.toWeightEntry(unit) },
-                                weightUnit = unit
-                            )
-                        }.collect { _uiState.value = it }
+                        userPreferencesDAO.getUnitPreference(user.id).collect { unit ->
+                            _uiState.update { it.copy(weightUnit = unit) }
+                        }
                     }
                 }
             }
@@ -92,6 +114,9 @@ class WeightHistoryViewModel(
     }
 }
 
+// Weights loaded per page; the first load is three pages
+private const val PAGE_SIZE = 30
+
 // Converts room weight to UI weight entry
 private fun Weight.toWeightEntry(unit: WeightUnit): WeightEntry {
     val weightInUnit = when (unit) {
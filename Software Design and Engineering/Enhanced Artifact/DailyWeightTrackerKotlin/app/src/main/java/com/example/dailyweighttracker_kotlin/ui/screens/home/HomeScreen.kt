@@ -128,6 +128,69 @@ fun HomeScreenContent(
             }
         }
 
+        // Summary card
+        Card(
+            modifier = Modifier
+                .fillMaxWidth()
+                .testTag("weight_summary_card"),
+            shape = MaterialTheme.shapes.large
+        ) {
+            Column(
+                modifier = Modifier.padding(16.dp),
+                verticalArrangement = Arrangement.spacedBy(4.dp)
+            ) {
+
+                Text(
+                    text = stringResource(R.string.weight_summary),
+                    style = MaterialTheme.typography.titleMedium
+                )
+
+                Text(
+                    text = stringResource(R.string.entries_count, homeUiState.weightSummary.count),
+                    style = MaterialTheme.typography.bodyMedium
+                )
+
+                Row(
+                    modifier = Modifier.fillMaxWidth(),
+                    horizontalArrangement = Arrangement.SpaceBetween
+                ) {
+                    Text(
+                        text = stringResource(R.string.lowest_weight, formatWeight(homeUiState.weightSummary.lowest, homeUiState)),
+                        style = MaterialTheme.typography.bodyMedium
+                    )
+                    Text(
+                        text = stringResource(R.string.highest_weight, formatWeight(homeUiState.weightSummary.highest, homeUiState)),
+                        style = MaterialTheme.typography.bodyMedium
+                    )
+                }
+
+                if (homeUiState.recentWeights.isNotEmpty()) {
+                    Text(
+                        text = stringResource(R.string.recent_weights),
+                        style = MaterialTheme.typography.titleSmall,
+                        modifier = Modifier.padding(top = 8.dp)
+                    )
+                }
+
+                // Recent weights, newest first
+                homeUiState.recentWeights.forEach { weight ->
+                    Row(
+                        modifier = Modifier.fillMaxWidth(),
+                        horizontalArrangement = Arrangement.SpaceBetween
+                    ) {
+                        Text(
+                            text = weight.date.format(DateTimeFormatter.ofPattern("MM/dd/yyyy")),
+                            style = MaterialTheme.typography.bodyMedium
+                        )
+                        Text(
+                            text = formatWeight(weight.weight, homeUiState),
+                            style = MaterialTheme.typography.bodyMedium
+                        )
+                    }
+                }
+            }
+        }
+
         // Goal weight card
         Card(
             modifier = Modifier
@@ -202,4 +265,8 @@ fun HomeScreenContent(
             }
         }
     }
-}
\ No newline at end of file
+}
+
+// Formats a weight in the user's unit, or N/A
+private fun formatWeight(weight: Double?, homeUiState: HomeUiState): String =
+    weight?.let { "%.1f ${homeUiState.weightUnit.name.lowercase()}".format(it) } ?: "N/A"
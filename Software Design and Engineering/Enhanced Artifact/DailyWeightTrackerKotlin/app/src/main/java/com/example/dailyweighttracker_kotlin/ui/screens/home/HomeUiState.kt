@@ -2,11 +2,13 @@ package com.example.dailyweighttracker_kotlin.ui.screens.home
 
 import com.example.dailyweighttracker_kotlin.data.WeightUnit
 import com.example.dailyweighttracker_kotlin.data.room.Weight
+import com.example.dailyweighttracker_kotlin.data.room.WeightSummary
 
 // Holds UI state for Home screen
 data class HomeUiState(
-    val weightList: List<Weight> = emptyList(),
     val mostRecentWeight: Weight? = null,
+    val recentWeights: List<Weight> = emptyList(),
+    val weightSummary: WeightSummary = WeightSummary(count = 0, lowest = null, highest = null),
     val goalWeight: Double? = null,
     val weightUnit: WeightUnit = WeightUnit.LBS,
     val showAddWeightDialog: Boolean = false,
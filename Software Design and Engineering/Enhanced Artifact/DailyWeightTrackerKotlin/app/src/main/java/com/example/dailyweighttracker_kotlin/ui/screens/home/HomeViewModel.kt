@@ -10,6 +10,7 @@ import kotlinx.coroutines.Job
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.collect
 import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
@@ -43,30 +44,23 @@ class HomeViewModel(
                     // If user is logged in, start collecting their data
                     dataCollectionJob = launch {
                         combine(
-                            weightsRepository.getAllWeightsStream(user.id),
+                            weightsRepository.getLatestWeightStream(user.id),
+                            weightsRepository.getRecentWeightsStream(user.id, RECENT_WEIGHT_COUNT),
+                            weightsRepository.getWeightSummaryStream(user.id),
                             goalRepository.getGoalForUserFlow(user.id),
                             userPreferencesDAO.getUnitPreference(user.id)
-                        ) { weights, goal, unit ->
-                            Triple(weights, goal, unit)
-                        }.collect { (weights, goal, unit) ->
-
-                            // Find the most recent weight
-                            val mostRecent = weights
-                                .sortedWith(
-                                    compareByDescending<com.example.dailyweighttracker_kotlin.data.room.Weight> { it.date }
-                                        .thenByDescending { it.id }
-                                )
-                                .firstOrNull()
+                        ) { mostRecent, recent, summary, goal, unit ->
                             // Update the UI state with the collected data
                             _homeUiState.update { currentState ->
                                 currentState.copy(
-                                    weightList = weights,
                                     mostRecentWeight = mostRecent,
+                                    recentWeights = recent,
+                                    weightSummary = summary,
                                     goalWeight = goal?.goalWeight,
                                     weightUnit = unit
                                 )
                             }
-                        }
+                        }.collect()
                     }
 
                 }
@@ -80,3 +74,6 @@ class HomeViewModel(
     fun onSetGoalClick() = _homeUiState.update { it.copy(showSetGoalDialog = true) }
     fun onSetGoalDialogDismiss() = _homeUiState.update { it.copy(showSetGoalDialog = false) }
 }
+
+// Number of recent weights shown on the Home screen
+private const val RECENT_WEIGHT_COUNT = 5
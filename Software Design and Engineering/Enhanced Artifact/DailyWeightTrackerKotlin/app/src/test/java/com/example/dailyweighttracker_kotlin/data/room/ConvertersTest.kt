@@ -0,0 +1,33 @@
+package com.example.dailyweighttracker_kotlin.data.room
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.time.LocalDate
+
+// Dates round trip through the epoch day column, including before 1970 and leap days
+class ConvertersTest {
+
+    private val converters = Converters()
+
+    @Test
+    fun localDate_roundTripsThroughEpochDay() {
+        for (date in listOf(
+            LocalDate.of(1900, 3, 1),
+            LocalDate.of(1969, 12, 31),
+            LocalDate.of(1970, 1, 1),
+            LocalDate.of(2024, 2, 29),
+            LocalDate.of(2099, 12, 31)
+        )) {
+            assertEquals(date, converters.toLocalDate(converters.fromLocalDate(date)))
+        }
+        assertEquals(-1L, converters.fromLocalDate(LocalDate.of(1969, 12, 31)))
+        assertEquals(19782L, converters.fromLocalDate(LocalDate.of(2024, 2, 29)))
+    }
+
+    @Test
+    fun null_staysNull() {
+        assertNull(converters.fromLocalDate(null))
+        assertNull(converters.toLocalDate(null))
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.dailyweighttracker;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Minimal JMH-style loop for on-device benchmarks: a warm-up pass, then a measured pass that
+ * reports average latency and allocations per operation to logcat.
+ */
+final class BenchmarkRunner {
+
+    private static final String TAG = "Benchmark";
+
+    interface Operation {
+        void run(int iteration);
+    }
+
+    static final class Result {
+        final double nanosPerOp;
+        final double allocsPerOp;
+
+        Result(double nanosPerOp, double allocsPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.allocsPerOp = allocsPerOp;
+        }
+    }
+
+    private BenchmarkRunner() {
+    }
+
+    @SuppressWarnings("deprecation")
+    static Result measure(String name, int iterations, Operation operation) {
+        int warmup = Math.max(1, iterations / 10);
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run(warmup + i);
+        }
+        long elapsed = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+
+        Result result = new Result((double) elapsed / iterations, (double) Debug.getThreadAllocCount() / iterations);
+        Log.i(TAG, String.format(Locale.US, "%s: %.0f ns/op, %.1f allocs/op (%d ops)",
+                name, result.nanosPerOp, result.allocsPerOp, iterations));
+        return result;
+    }
+}
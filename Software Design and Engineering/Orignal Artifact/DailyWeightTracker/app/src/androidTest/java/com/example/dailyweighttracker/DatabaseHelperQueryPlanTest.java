@@ -0,0 +1,208 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN for every statement DatabaseHelper issues and fails if any of them
+ * falls back to a full table scan or a temporary B-tree sort.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseHelperQueryPlanTest {
+
+    private static final String DB_NAME = "query-plan-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        db = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void allWeights_usesIndex() {
+        assertIndexed(DatabaseHelper.SQL_ALL_WEIGHTS, "1");
+    }
+
+    @Test
+    public void mostRecentWeight_usesIndex() {
+        assertIndexed(DatabaseHelper.SQL_MOST_RECENT_WEIGHT, "1");
+    }
+
+    @Test
+    public void weightsAfter_usesIndex() {
+        assertIndexed(DatabaseHelper.SQL_WEIGHTS_AFTER, "1", "0", "0", "0", "100");
+    }
+
+    @Test
+    public void weightsBetween_usesIndex() {
+        assertIndexed(DatabaseHelper.SQL_WEIGHTS_BETWEEN, "1", "0", "100", "0", "0", "100", "10");
+    }
+
+    @Test
+    public void latestWeight_usesIndex() {
+        assertIndexed(DatabaseHelper.SQL_LATEST_WEIGHT, "1");
+    }
+
+    @Test
+    public void entryOwner_usesIndex() {
+        assertIndexed(DatabaseHelper.SQL_ENTRY_OWNER, "1");
+    }
+
+    @Test
+    public void rollups_useIndex() {
+        assertIndexed(DatabaseHelper.SQL_ROLLUPS, "1", "0", "0", "100");
+        assertIndexed(WeightRollups.SQL_ENTRIES_AROUND, "1", "0", "100");
+    }
+
+    @Test
+    public void rollupWrites_useIndex() {
+        assertIndexed(WeightRollups.SQL_MERGE, "1", "150", "150", "150", "0", "150", "0", "150", "1", "0", "0");
+        assertIndexed(WeightRollups.SQL_DELETE_BUCKET, "1", "0", "0");
+        assertIndexed(WeightRollups.SQL_DELETE_USER, "1");
+    }
+
+    @Test
+    public void sketches_useIndex() {
+        assertIndexed(WeightSketches.SQL_SKETCHES_BETWEEN, "1", "0", "100");
+    }
+
+    @Test
+    public void sketchReadsAndWrites_useIndex() {
+        assertIndexed(WeightSketches.SQL_SKETCH, "1", "600");
+        assertIndexed(WeightSketches.SQL_DELETE_MONTH, "1", "600");
+        assertIndexed(WeightSketches.SQL_DELETE_USER, "1");
+    }
+
+    @Test
+    public void trendWindow_usesIndex() {
+        assertIndexed(WeightTrends.SQL_WINDOW, "1", "100");
+    }
+
+    @Test
+    public void pendingGoalEvents_useIndex() {
+        assertIndexed(GoalNotifier.SQL_PENDING_EVENTS);
+    }
+
+    @Test
+    public void goalEventWrites_useIndex() {
+        assertIndexed(GoalNotifier.SQL_SET_STATE, "1", "1");
+        assertIndexed(GoalNotifier.SQL_RESCHEDULE, "1", "0", "1");
+        assertInsertIndexed(DatabaseHelper.TABLE_GOAL_EVENTS, DatabaseHelper.INDEX_GOAL_EVENTS_OPEN,
+                DatabaseHelper.SQL_INSERT_GOAL_EVENT, "1", "150", "150", "lbs", "0", "0");
+    }
+
+    @Test
+    public void weightAtDate_usesIndex() {
+        assertIndexed(DatabaseHelper.SQL_COUNT_WEIGHTS_AT, "1", "0");
+    }
+
+    @Test
+    public void updateAndDeleteWeight_useIndex() {
+        assertIndexed(DatabaseHelper.SQL_UPDATE_WEIGHT, "150", "1");
+        assertIndexed(DatabaseHelper.SQL_DELETE_WEIGHT, "1");
+        assertIndexed(DatabaseHelper.SQL_DELETE_WEIGHTS_FOR_USER, "1");
+    }
+
+    @Test
+    public void archiveBlocks_useIndex() {
+        assertIndexed(WeightArchive.SQL_BLOCKS_BETWEEN, "1", "0", "100");
+        assertIndexed(WeightArchive.SQL_HAS_BLOCKS, "1");
+        assertIndexed(WeightArchive.SQL_BLOCK, "1", "600");
+        assertIndexed(WeightArchive.SQL_BLOCK_AT, "1", "600", "100");
+        assertIndexed(WeightArchive.SQL_BLOCKS_WITH_ID, "1");
+        assertIndexed(WeightArchive.SQL_BLOCKS_IN_MONTHS, "1", "600", "601");
+        assertIndexed(WeightArchive.SQL_NEWEST_BLOCK, "1");
+        assertIndexed(WeightArchive.SQL_DELETE_BLOCK, "1", "600");
+        assertIndexed(WeightArchive.SQL_DELETE_USER, "1");
+        // Restoring everything reads every block by design
+        assertIndexedScanning(DatabaseHelper.TABLE_ARCHIVE, WeightArchive.SQL_ALL_BLOCKS);
+    }
+
+    @Test
+    public void archiving_usesIndex() {
+        // One row per account, each probing the weights index once
+        assertIndexedScanning(DatabaseHelper.TABLE_USERS, WeightArchive.SQL_LATEST_DATES);
+        assertIndexed(WeightArchive.SQL_LATEST_DATE, "1");
+        assertIndexed(WeightArchive.SQL_ENTRIES_BEFORE, "1", "100");
+        assertIndexed(WeightArchive.SQL_DELETE_BEFORE, "1", "100");
+    }
+
+    @Test
+    public void userLookups_useIndex() {
+        assertIndexed("SELECT " + DatabaseHelper.COLUMN_USER_ID + " FROM " + DatabaseHelper.TABLE_USERS
+                + " WHERE " + DatabaseHelper.WHERE_USERNAME_PASSWORD, "alice", "secret");
+        assertIndexed("SELECT " + DatabaseHelper.COLUMN_USER_ID + " FROM " + DatabaseHelper.TABLE_USERS
+                + " WHERE " + DatabaseHelper.WHERE_USERNAME, "alice");
+        assertIndexed("UPDATE " + DatabaseHelper.TABLE_USERS + " SET " + DatabaseHelper.COLUMN_PASSWORD + " = ?"
+                + " WHERE " + DatabaseHelper.WHERE_USERNAME, "secret", "alice");
+    }
+
+    // Fails if any step of the plan scans a table or sorts through a temporary B-tree
+    private void assertIndexed(String sql, String... args) {
+        assertIndexedScanning(null, sql, args);
+    }
+
+    // As assertIndexed, but the named table may be scanned
+    private void assertIndexedScanning(String scannedTable, String sql, String... args) {
+        assertTrue("No query plan for " + sql, checkPlan(scannedTable, sql, args) > 0);
+    }
+
+    // An insert of VALUES reads no table, so its plan is empty and its conflict check isn't in it.
+    // Fails if the plan reads anything or the table lacks the unique index that check goes through.
+    private void assertInsertIndexed(String table, String uniqueIndex, String sql, String... args) {
+        assertEquals("Plan reads a table for " + sql, 0, checkPlan(null, sql, args));
+        boolean found = false;
+        try (Cursor indexes = db.rawQuery("PRAGMA index_list(" + table + ")", null)) {
+            int nameColumn = indexes.getColumnIndexOrThrow("name");
+            int uniqueColumn = indexes.getColumnIndexOrThrow("unique");
+            while (indexes.moveToNext()) {
+                found |= indexes.getString(nameColumn).equals(uniqueIndex) && indexes.getInt(uniqueColumn) == 1;
+            }
+        }
+        assertTrue("No unique index " + uniqueIndex + " on " + table, found);
+    }
+
+    // Checks each step of the plan and returns how many there were
+    private int checkPlan(String scannedTable, String sql, String... args) {
+        int steps = 0;
+        try (Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                steps++;
+                String detail = plan.getString(detailColumn);
+                // The row an EXISTS or scalar subquery is wrapped in, not a table
+                boolean constant = detail.equals("SCAN CONSTANT ROW");
+                // Older SQLite versions write "SCAN TABLE name"
+                String scanned = detail.replace("SCAN TABLE ", "SCAN ") + " ";
+                boolean allowed = scannedTable != null && scanned.startsWith("SCAN " + scannedTable + " ");
+                assertFalse("Full scan in plan for " + sql + ": " + detail,
+                        detail.startsWith("SCAN") && !constant && !allowed);
+                assertFalse("Temporary sort in plan for " + sql + ": " + detail, detail.contains("TEMP B-TREE"));
+            }
+        }
+        return steps;
+    }
+}
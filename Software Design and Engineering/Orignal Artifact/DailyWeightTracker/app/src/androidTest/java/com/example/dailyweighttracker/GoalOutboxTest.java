@@ -0,0 +1,162 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.os.HandlerThread;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * Goal detection on the write path and the outbox's coalescing, retry and dedup rules.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GoalOutboxTest {
+
+    private static final String DB_NAME = "goal-outbox-test.db";
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private HandlerThread thread;
+    private FakeSender sender;
+    private GoalNotifier notifier;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        thread = new HandlerThread("GoalOutboxTest");
+        thread.start();
+        sender = new FakeSender();
+        notifier = new GoalNotifier(dbHelper, sender, thread.getLooper());
+    }
+
+    @After
+    public void tearDown() {
+        thread.quit();
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void reachesGoal_byToleranceOrCrossing() {
+        assertTrue(GoalNotifier.reachesGoal(Double.NaN, 150.04, 150));
+        assertFalse(GoalNotifier.reachesGoal(Double.NaN, 149, 150));
+        assertTrue(GoalNotifier.reachesGoal(151, 149.2, 150));
+        assertTrue(GoalNotifier.reachesGoal(149, 150.8, 150));
+        assertFalse(GoalNotifier.reachesGoal(152, 151, 150));
+    }
+
+    @Test
+    public void crossingGoal_queuesOneEventPerGoal() {
+        dbHelper.addWeight(USER_ID, 155, 150, "lbs");
+        assertEquals(0, pendingEvents());
+        dbHelper.addWeight(USER_ID, 149.6, 150, "lbs");
+        assertEquals(1, pendingEvents());
+        // Bouncing back over the same goal is not news
+        dbHelper.addWeight(USER_ID, 150.4, 150, "lbs");
+        dbHelper.addWeight(USER_ID, 149.8, 150, "lbs");
+        assertEquals(1, pendingEvents());
+
+        assertEquals(1, notifier.drain(System.currentTimeMillis()));
+        assertEquals(1, sender.sent.size());
+        assertEquals(0, pendingEvents());
+    }
+
+    @Test
+    public void pendingEvents_areCoalescedPerUser() {
+        dbHelper.addWeight(USER_ID, 160, 0, "lbs");
+        dbHelper.addWeight(USER_ID, 155, 155, "lbs");
+        dbHelper.addWeight(USER_ID, 150, 150, "lbs");
+
+        assertEquals(1, notifier.drain(System.currentTimeMillis()));
+        assertEquals(Double.valueOf(150), sender.sent.get(0));
+        assertEquals(1, count(GoalNotifier.STATE_SUPERSEDED));
+    }
+
+    @Test
+    public void failedSend_isRetriedWithBackoff() {
+        dbHelper.addWeight(USER_ID, 150, 150, "lbs");
+        sender.outcomes.add(GoalNotifier.Outcome.RETRY);
+        sender.outcomes.add(GoalNotifier.Outcome.RETRY);
+
+        long now = System.currentTimeMillis();
+        assertEquals(0, notifier.drain(now));
+        // Not due again until the backoff has passed
+        assertEquals(0, notifier.drain(now + GoalNotifier.backoff(1) - 1));
+        assertEquals(0, notifier.drain(now + GoalNotifier.backoff(1)));
+        long second = now + GoalNotifier.backoff(1);
+        assertEquals(1, notifier.drain(second + GoalNotifier.backoff(2)));
+        assertEquals(1, count(GoalNotifier.STATE_SENT));
+        assertTrue(GoalNotifier.backoff(2) > GoalNotifier.backoff(1));
+    }
+
+    @Test
+    public void droppedSend_isNotRetried() {
+        dbHelper.addWeight(USER_ID, 150, 150, "lbs");
+        sender.outcomes.add(GoalNotifier.Outcome.DROPPED);
+
+        assertEquals(0, notifier.drain(System.currentTimeMillis()));
+        assertEquals(1, count(GoalNotifier.STATE_FAILED));
+        assertEquals(0, pendingEvents());
+    }
+
+    @Test
+    public void failedGoal_canBeQueuedAgain() {
+        dbHelper.addWeight(USER_ID, 155, 150, "lbs");
+        dbHelper.addWeight(USER_ID, 150, 150, "lbs");
+        // No permission or phone number yet
+        sender.outcomes.add(GoalNotifier.Outcome.DROPPED);
+        assertEquals(0, notifier.drain(System.currentTimeMillis()));
+
+        dbHelper.addWeight(USER_ID, 151, 150, "lbs");
+        dbHelper.addWeight(USER_ID, 149.5, 150, "lbs");
+        assertEquals(1, pendingEvents());
+        assertEquals(1, notifier.drain(System.currentTimeMillis()));
+        assertEquals(1, count(GoalNotifier.STATE_FAILED));
+        assertEquals(1, count(GoalNotifier.STATE_SENT));
+
+        // Once sent, the goal stays told
+        dbHelper.addWeight(USER_ID, 150.6, 150, "lbs");
+        dbHelper.addWeight(USER_ID, 149.5, 150, "lbs");
+        assertEquals(0, pendingEvents());
+    }
+
+    private long pendingEvents() {
+        return count(GoalNotifier.STATE_PENDING);
+    }
+
+    private long count(int state) {
+        return DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), DatabaseHelper.TABLE_GOAL_EVENTS,
+                DatabaseHelper.COLUMN_EVENT_STATE + " = ?", new String[]{String.valueOf(state)});
+    }
+
+    // Records what was sent and answers with queued outcomes, then SENT
+    private static class FakeSender implements GoalNotifier.Sender {
+        final List<Double> sent = new ArrayList<>();
+        final Queue<GoalNotifier.Outcome> outcomes = new ArrayDeque<>();
+
+        @Override
+        public GoalNotifier.Outcome send(String username, double goalWeight, String unit, boolean lastAttempt) {
+            GoalNotifier.Outcome outcome = outcomes.isEmpty() ? GoalNotifier.Outcome.SENT : outcomes.poll();
+            if (outcome == GoalNotifier.Outcome.SENT) {
+                sent.add(goalWeight);
+            }
+            return outcome;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Range scans and most-recent lookups as the history grows, through SqliteWeightStore against
+ * SegmentWeightStore, plus the size of each on disk.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SegmentStoreBenchmark {
+
+    private static final String TAG = "SegmentStoreBench";
+    private static final String DB_NAME = "segment-benchmark.db";
+    private static final String SEGMENTS_DIR = "segment-benchmark";
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int BATCH_ROWS = 10_000;
+    private static final int RUNS = 5;
+    private static final int LOOKUPS = 1_000;
+    // A month of hourly readings
+    private static final int RANGE_ROWS = 720;
+    private static final long USER_ID = 1;
+    private static final long START = 1_420_070_400_000L;
+    private static final long HOUR = 3_600_000L;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private File directory;
+    private SqliteWeightStore sqlite;
+    private SegmentWeightStore segments;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        directory = new File(context.getFilesDir(), SEGMENTS_DIR);
+        deleteSegments();
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        sqlite = new SqliteWeightStore(dbHelper);
+        segments = new SegmentWeightStore(directory, sqlite);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        segments.close();
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        deleteSegments();
+    }
+
+    @Test
+    public void rangeScanAndMostRecent_segmentsVersusSqlite() {
+        int rows = 0;
+        long[] sqliteTimes = new long[2];
+        long[] segmentTimes = new long[2];
+        for (int size : SIZES) {
+            while (rows < size) {
+                int count = Math.min(BATCH_ROWS, size - rows);
+                List<WeightEntry> entries = entries(rows, count);
+                sqlite.addWeights(USER_ID, entries);
+                segments.addWeights(USER_ID, entries);
+                rows += count;
+            }
+            // A month from the middle of the history
+            long afterDate = START + (size / 2) * HOUR;
+            assertEquals(sqlite.getWeightsAfter(USER_ID, afterDate, Long.MAX_VALUE, RANGE_ROWS).size(),
+                    segments.getWeightsAfter(USER_ID, afterDate, Long.MAX_VALUE, RANGE_ROWS).size());
+            assertEquals(sqlite.getMostRecentWeight(USER_ID).getDate(), segments.getMostRecentWeight(USER_ID).getDate());
+
+            sqliteTimes = time(sqlite, afterDate);
+            segmentTimes = time(segments, afterDate);
+            Log.i(TAG, size + " rows: range scan sqlite " + sqliteTimes[0] / 1000 + " us, segments "
+                    + segmentTimes[0] / 1000 + " us; most recent sqlite " + sqliteTimes[1] + " ns, segments "
+                    + segmentTimes[1] + " ns; on disk sqlite " + context.getDatabasePath(DB_NAME).length() / 1024
+                    + " KiB, segments " + new File(directory, USER_ID + ".seg").length() / 1024 + " KiB");
+        }
+        assertTrue("range scan sqlite " + sqliteTimes[0] + " ns, segments " + segmentTimes[0] + " ns",
+                segmentTimes[0] < sqliteTimes[0]);
+    }
+
+    // Best of RUNS for a range scan, and for a most-recent lookup averaged over LOOKUPS
+    private static long[] time(WeightStore store, long afterDate) {
+        long scan = Long.MAX_VALUE;
+        long lookup = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            store.getWeightsAfter(USER_ID, afterDate, Long.MAX_VALUE, RANGE_ROWS);
+            scan = Math.min(scan, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                store.getMostRecentWeight(USER_ID);
+            }
+            lookup = Math.min(lookup, (System.nanoTime() - start) / LOOKUPS);
+        }
+        return new long[]{scan, lookup};
+    }
+
+    private void deleteSegments() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    // One reading an hour from the given offset
+    private static List<WeightEntry> entries(int from, int count) {
+        List<WeightEntry> entries = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            entries.add(WeightEntry.of(150 + (i % 300) / 10.0, START + i * HOUR));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.runner.RunWith;
+
+/**
+ * The {@link WeightStore} contract on a device, against {@link SqliteWeightStore} on a fresh
+ * database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SqliteWeightStoreTest extends WeightStoreContractTest {
+
+    private static final String DB_NAME = "store-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Override
+    protected WeightStore createStore() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        return new SqliteWeightStore(dbHelper);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+}
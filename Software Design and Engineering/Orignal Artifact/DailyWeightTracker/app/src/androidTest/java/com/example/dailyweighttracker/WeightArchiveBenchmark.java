@@ -0,0 +1,148 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ten years of daily readings for several users, archived: the compression ratio of the blocks
+ * against the 24 bytes of an (id, date, weight) row, the database size before and after, and how
+ * fast blocks decode, alone and through getAllWeights against reading the same history live.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightArchiveBenchmark {
+
+    private static final String TAG = "WeightArchiveBench";
+    private static final String DB_NAME = "archive-benchmark.db";
+    private static final int USERS = 10;
+    private static final int DAYS = 3_650;
+    private static final int RUNS = 5;
+    private static final int RAW_ENTRY_BYTES = 24;
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_420_070_400_000L;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void compressionAndDecodeThroughput() {
+        Random random = new Random(7);
+        for (long user = 1; user <= USERS; user++) {
+            dbHelper.addWeights(user, entries(random));
+        }
+        List<WeightEntry> expected = readAll();
+        long liveRead = timeReadAll();
+        long liveBytes = compactedSize();
+
+        int archived = dbHelper.archiveWeightsOlderThan(0);
+        long archivedBytes = compactedSize();
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<byte[]> blocks = new ArrayList<>();
+        long blockBytes = 0;
+        try (Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COLUMN_ARCHIVE_DATA
+                + " FROM " + DatabaseHelper.TABLE_ARCHIVE, null)) {
+            while (cursor.moveToNext()) {
+                byte[] block = cursor.getBlob(0);
+                blocks.add(block);
+                blockBytes += block.length;
+            }
+        }
+        WeightArchive.Entries decoded = new WeightArchive.Entries(archived);
+        long decode = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            decoded.size = 0;
+            for (byte[] block : blocks) {
+                decoded.addBlock(block);
+            }
+            decode = Math.min(decode, System.nanoTime() - start);
+        }
+        assertEquals(archived, decoded.size);
+        assertEquals(expected, readAll());
+        long archivedRead = timeReadAll();
+
+        double ratio = (double) archived * RAW_ENTRY_BYTES / blockBytes;
+        Log.i(TAG, String.format(Locale.US, "%d entries archived into %d blocks: %.2f bytes/entry, %.1fx;"
+                        + " database %d KiB live, %d KiB archived",
+                archived, blocks.size(), (double) blockBytes / archived, ratio, liveBytes / 1024, archivedBytes / 1024));
+        Log.i(TAG, String.format(Locale.US, "decode %.1f M entries/s; getAllWeights for %d users"
+                        + " live %d us, archived %d us",
+                archived * 1e3 / decode, USERS, liveRead / 1000, archivedRead / 1000));
+        assertTrue("ratio " + ratio, ratio > 2);
+        assertTrue("live " + liveBytes + " bytes, archived " + archivedBytes + " bytes", archivedBytes < liveBytes);
+    }
+
+    // A morning reading a day, to the tenth, a few minutes either side of 7:00
+    private static List<WeightEntry> entries(Random random) {
+        List<WeightEntry> entries = new ArrayList<>(DAYS);
+        double weight = 150 + random.nextInt(60);
+        for (int i = 0; i < DAYS; i++) {
+            weight = Math.round((weight + random.nextGaussian() * 0.4) * 10) / 10.0;
+            entries.add(WeightEntry.of(weight, START + i * DAY + 7 * 3_600_000L + random.nextInt(600_000)));
+        }
+        return entries;
+    }
+
+    private List<WeightEntry> readAll() {
+        List<WeightEntry> entries = new ArrayList<>(USERS * DAYS);
+        for (long user = 1; user <= USERS; user++) {
+            try (Cursor cursor = dbHelper.getAllWeights(user)) {
+                while (cursor.moveToNext()) {
+                    entries.add(new WeightEntry(cursor.getLong(0), cursor.getDouble(1), cursor.getLong(2)));
+                }
+            }
+        }
+        return entries;
+    }
+
+    // Best of RUNS for reading every user's history
+    private long timeReadAll() {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            readAll();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    // The database file's size once the log is checkpointed and free pages are vacuumed away
+    private long compactedSize() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL("VACUUM");
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null)) {
+            cursor.moveToFirst();
+        }
+        return context.getDatabasePath(DB_NAME).length();
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Archived months reading back exactly as they were written, through every read path, and
+ * writes to archived entries restoring them with the rollups intact.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightArchiveTest {
+
+    private static final String DB_NAME = "weight-archive-test.db";
+    private static final long USER_ID = 1;
+    private static final long OTHER_USER_ID = 2;
+    private static final long DAY = 86_400_000L;
+    // 2015-01-01 in UTC
+    private static final long START = 1_420_070_400_000L;
+    private static final int DAYS = 1000;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private long[] ids;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        Random random = new Random(42);
+        List<WeightEntry> entries = new ArrayList<>();
+        double weight = 180;
+        for (int i = 0; i < DAYS; i++) {
+            // A morning reading a few minutes either side of 7:00, in quarters so rollup sums are
+            // exact whatever order they are added in
+            weight = Math.round((weight + random.nextGaussian() * 0.4) * 4) / 4.0;
+            entries.add(WeightEntry.of(weight, START + i * DAY + 7 * 3_600_000L + random.nextInt(600_000)));
+        }
+        ids = dbHelper.addWeights(USER_ID, entries);
+        dbHelper.addWeights(OTHER_USER_ID, entries.subList(0, 100));
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void archivedHistory_readsBackUnchanged() {
+        List<WeightEntry> before = readAll(USER_ID);
+        WeightTrend trend = dbHelper.getTrend(USER_ID);
+        String rollups = dumpTable(DatabaseHelper.TABLE_ROLLUPS);
+        String sketches = dumpTable(DatabaseHelper.TABLE_SKETCHES);
+
+        int archived = dbHelper.archiveWeightsOlderThan(0);
+
+        // Everything but the trend window of each user, rounded down to whole months
+        assertTrue(archived > DAYS - WeightTrends.HORIZON_DAYS - 31);
+        assertEquals(DAYS + 100 - archived, liveCount());
+        assertEquals(before, readAll(USER_ID));
+        assertEquals(before, readPages(USER_ID, 37));
+        assertEquals(before.subList(100, 900), readBetween(before.get(99), before.get(899)));
+        assertEquals(100, readAll(OTHER_USER_ID).size());
+        // Replayed from the live entries alone
+        dbHelper.getTrends().invalidate(USER_ID);
+        WeightTrend replayed = dbHelper.getTrend(USER_ID);
+        assertEquals(trend.getLatestDate(), replayed.getLatestDate());
+        assertEquals(trend.getTrend(), replayed.getTrend(), 0);
+        assertEquals(trend.getMovingAverage30(), replayed.getMovingAverage30(), 0);
+        assertEquals(rollups, dumpTable(DatabaseHelper.TABLE_ROLLUPS));
+        assertEquals(sketches, dumpTable(DatabaseHelper.TABLE_SKETCHES));
+        // Starts mid-month in the archive, so that partial month is read from its block
+        assertEquals(801, dbHelper.getWeightSketch(USER_ID, before.get(100).getDate(), before.get(900).getDate())
+                .getCount());
+
+        // Archiving again finds nothing new
+        assertEquals(0, dbHelper.archiveWeightsOlderThan(0));
+    }
+
+    @Test
+    public void archive_keepsEntriesYoungerThanTheAge() {
+        long now = System.currentTimeMillis();
+        dbHelper.addWeights(USER_ID, Arrays.asList(WeightEntry.of(170, now - 400 * DAY), WeightEntry.of(171, now)));
+
+        dbHelper.archiveWeightsOlderThan(365 * DAY);
+
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_WEIGHTS
+                + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_DATE + " >= ?",
+                new String[]{String.valueOf(USER_ID), String.valueOf(now - 365 * DAY)})) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+        }
+        assertEquals(DAYS + 2, readAll(USER_ID).size());
+    }
+
+    @Test
+    public void writesToArchivedEntries_restoreThem() {
+        dbHelper.archiveWeightsOlderThan(0);
+        List<WeightEntry> expected = new ArrayList<>(readAll(USER_ID));
+
+        assertTrue(dbHelper.updateWeight(ids[10], 175.5));
+        expected.set(10, new WeightEntry(ids[10], 175.5, expected.get(10).getDate()));
+        assertTrue(dbHelper.deleteWeight(ids[40]));
+        assertFalse(dbHelper.deleteWeight(ids[40]));
+        assertArrayEquals(new boolean[]{true, true}, dbHelper.deleteWeights(new long[]{ids[300], ids[301]}));
+        expected.remove(301);
+        expected.remove(300);
+        expected.remove(40);
+        // Backdated into an archived month, so it is read from both tables
+        long backdated = dbHelper.addWeights(USER_ID,
+                Arrays.asList(WeightEntry.of(160, expected.get(500).getDate() + 1)))[0];
+        expected.add(501, new WeightEntry(backdated, 160, expected.get(500).getDate() + 1));
+
+        assertEquals(expected, readAll(USER_ID));
+        assertEquals(expected, readPages(USER_ID, 50));
+        String maintained = dumpTable(DatabaseHelper.TABLE_ROLLUPS);
+        assertEquals(expected.size() + 100, dbHelper.rebuildRollups());
+        assertEquals(maintained, dumpTable(DatabaseHelper.TABLE_ROLLUPS));
+        assertEquals(expected.size() + 100, liveCount());
+    }
+
+    @Test
+    public void deletingRecentEntries_restoresTheTrendWindow() {
+        dbHelper.archiveWeightsOlderThan(0);
+        List<WeightEntry> all = readAll(USER_ID);
+        long[] recent = new long[WeightTrends.HORIZON_DAYS];
+        for (int i = 0; i < recent.length; i++) {
+            recent[i] = all.get(all.size() - 1 - i).getId();
+        }
+
+        dbHelper.deleteWeights(recent);
+
+        WeightEntry latest = all.get(all.size() - 1 - recent.length);
+        assertEquals(all.subList(0, all.size() - recent.length), readAll(USER_ID));
+        assertEquals(latest.getDate(), dbHelper.getTrend(USER_ID).getLatestDate());
+        try (Cursor cursor = dbHelper.getMostRecentWeight(USER_ID)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(latest.getId(), cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseHelper.COLUMN_ID)));
+        }
+    }
+
+    @Test
+    public void deleteAllWeightsForUser_dropsTheirBlocks() {
+        dbHelper.archiveWeightsOlderThan(0);
+
+        dbHelper.deleteAllWeightsForUser(USER_ID);
+
+        assertTrue(readAll(USER_ID).isEmpty());
+        assertEquals(100, readAll(OTHER_USER_ID).size());
+        assertEquals(0, dbHelper.archiveWeightsOlderThan(0));
+    }
+
+    private List<WeightEntry> readAll(long userId) {
+        try (Cursor cursor = dbHelper.getAllWeights(userId)) {
+            return toEntries(cursor);
+        }
+    }
+
+    private List<WeightEntry> readPages(long userId, int pageSize) {
+        List<WeightEntry> read = new ArrayList<>();
+        long afterDate = Long.MIN_VALUE;
+        long afterId = Long.MIN_VALUE;
+        while (true) {
+            List<WeightEntry> page;
+            try (Cursor cursor = dbHelper.getWeightsAfter(userId, afterDate, afterId, pageSize, null)) {
+                page = toEntries(cursor);
+            }
+            if (page.isEmpty()) {
+                return read;
+            }
+            assertTrue(page.size() <= pageSize);
+            read.addAll(page);
+            afterDate = page.get(page.size() - 1).getDate();
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private List<WeightEntry> readBetween(WeightEntry after, WeightEntry to) {
+        try (Cursor cursor = dbHelper.getWeightsBetween(USER_ID, after.getDate(), after.getId(),
+                to.getDate(), to.getId(), null)) {
+            return toEntries(cursor);
+        }
+    }
+
+    private static List<WeightEntry> toEntries(Cursor cursor) {
+        List<WeightEntry> entries = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            entries.add(new WeightEntry(cursor.getLong(0), cursor.getDouble(1), cursor.getLong(2)));
+        }
+        return entries;
+    }
+
+    private int liveCount() {
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_WEIGHTS, null)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    // Every row of a table, in key order, as text
+    private String dumpTable(String table) {
+        StringBuilder dump = new StringBuilder();
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT * FROM " + table + " ORDER BY 1, 2, 3",
+                null)) {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    dump.append(cursor.getType(i) == Cursor.FIELD_TYPE_BLOB
+                            ? Arrays.toString(cursor.getBlob(i)) : cursor.getString(i)).append(i + 1 < cursor.getColumnCount() ? ',' : '\n');
+                }
+            }
+        }
+        return dump.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Throughput of the batch write API at 10k and 100k rows, against one-row-per-call writes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightBatchBenchmark {
+
+    private static final String TAG = "WeightBatchBenchmark";
+    private static final String DB_NAME = "batch-benchmark.db";
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void singleRowWrites_10k() {
+        int rows = 10_000;
+        WeightStatements statements = dbHelper.getStatements();
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < rows; i++) {
+            statements.insert(USER_ID, 150.0 + i % 50, i);
+        }
+        report("insert single", rows, start);
+    }
+
+    @Test
+    public void batchWrites_10k() {
+        runBatches(10_000);
+    }
+
+    @Test
+    public void batchWrites_100k() {
+        runBatches(100_000);
+    }
+
+    private void runBatches(int rows) {
+        List<WeightEntry> entries = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            entries.add(WeightEntry.of(150.0 + i % 50, i));
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        long[] ids = dbHelper.addWeights(USER_ID, entries);
+        report("addWeights", rows, start);
+        for (long id : ids) {
+            assertNotEquals(-1, id);
+        }
+
+        List<WeightEntry> updates = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            updates.add(new WeightEntry(ids[i], 140.0, i));
+        }
+        start = SystemClock.elapsedRealtime();
+        boolean[] updated = dbHelper.updateWeights(updates);
+        report("updateWeights", rows, start);
+
+        start = SystemClock.elapsedRealtime();
+        boolean[] deleted = dbHelper.deleteWeights(ids);
+        report("deleteWeights", rows, start);
+
+        for (int i = 0; i < rows; i++) {
+            assertTrue(updated[i]);
+            assertTrue(deleted[i]);
+        }
+        // Deleting again reports every item as missing
+        assertFalse(dbHelper.deleteWeights(new long[]{ids[0]})[0]);
+    }
+
+    private static void report(String name, int rows, long start) {
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+        Log.i(TAG, name + ": " + rows + " rows in " + elapsed + " ms (" + rows * 1000L / elapsed + " rows/s)");
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The in-memory histories staying in step with the database through every write path, and their
+ * eviction under the memory budget.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightCacheTest {
+
+    private static final String DB_NAME = "weight-cache-test.db";
+
+    private Context context;
+    private CountingHelper dbHelper;
+    private WeightCache cache;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new CountingHelper(context);
+        cache = dbHelper.getWeightCache();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void latestWeight_isServedFromMemoryOnceLoaded() {
+        dbHelper.addWeight(1, 150);
+        assertEquals(150, dbHelper.getLatestWeight(1).getWeight(), 0);
+        assertEquals(1, dbHelper.loads);
+
+        long id = dbHelper.addWeight(1, 149.5, 0, "lbs");
+        assertEquals(149.5, dbHelper.getLatestWeight(1).getWeight(), 0);
+        dbHelper.updateWeight(id, 148.5);
+        assertEquals(148.5, dbHelper.getLatestWeight(1).getWeight(), 0);
+        dbHelper.deleteWeight(id);
+        assertEquals(150, dbHelper.getLatestWeight(1).getWeight(), 0);
+        assertEquals(1, dbHelper.loads);
+        assertMatchesDatabase(1);
+
+        dbHelper.deleteAllWeightsForUser(1);
+        assertNull(dbHelper.getLatestWeight(1));
+    }
+
+    @Test
+    public void batchWrites_reloadTheHistory() {
+        List<WeightEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(WeightEntry.of(150 + i % 10, 1_000_000L * (100 - i)));
+        }
+        cache.getHistory(1);
+        long[] ids = dbHelper.addWeights(1, entries);
+        assertMatchesDatabase(1);
+
+        List<WeightEntry> updates = new ArrayList<>();
+        updates.add(new WeightEntry(ids[0], 140, 0));
+        dbHelper.updateWeights(updates);
+        dbHelper.deleteWeights(new long[]{ids[1], ids[2]});
+        assertMatchesDatabase(1);
+        assertEquals(97, cache.getHistory(1).size);
+    }
+
+    @Test
+    public void leastRecentlyUsedHistories_areEvictedOverBudget() {
+        for (long user = 1; user <= 3; user++) {
+            for (int i = 0; i < 100; i++) {
+                dbHelper.addWeight(user, 150);
+            }
+        }
+        cache.setBudget(2 * 100 * WeightCache.BYTES_PER_ENTRY);
+        cache.getHistory(1);
+        cache.getHistory(2);
+        cache.getLatest(1);
+        cache.getHistory(3);
+
+        // User 2 was used least recently
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertTrue(cache.getUsedBytes() <= 2 * 100 * WeightCache.BYTES_PER_ENTRY);
+
+        // The history in use is kept even if it alone is over budget
+        cache.setBudget(0);
+        assertNotNull(cache.getLatest(1));
+        assertTrue(cache.contains(1));
+    }
+
+    private void assertMatchesDatabase(long userId) {
+        WeightCache.History history = cache.getHistory(userId);
+        try (Cursor cursor = dbHelper.getAllWeights(userId)) {
+            assertEquals(cursor.getCount(), history.size);
+            for (int i = 0; cursor.moveToNext(); i++) {
+                assertEquals(cursor.getLong(0), history.ids[i]);
+                assertEquals(cursor.getDouble(1), history.weights[i], 0);
+                assertEquals(cursor.getLong(2), history.dates[i]);
+            }
+        }
+    }
+
+    // Counts the history loads that reach the database
+    private static class CountingHelper extends DatabaseHelper {
+        int loads;
+
+        CountingHelper(Context context) {
+            super(context, DB_NAME);
+        }
+
+        @Override
+        public Cursor getAllWeights(long userId) {
+            loads++;
+            return super.getAllWeights(userId);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Latency of the home screen's most-recent-weight read while a bulk insert transaction is open,
+ * with write-ahead logging and with the rollback journal.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightConcurrencyBenchmark {
+
+    private static final String TAG = "WeightConcurrencyBench";
+    private static final String DB_NAME = "concurrency-benchmark.db";
+    private static final int EXISTING_ROWS = 100_000;
+    private static final int BULK_ROWS = 200_000;
+    private static final long USER_ID = 1;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void readsDuringBulkWrite_walVersusRollbackJournal() throws Exception {
+        Latency wal = measure(true);
+        context.deleteDatabase(DB_NAME);
+        Latency rollback = measure(false);
+
+        Log.i(TAG, "WAL: " + wal);
+        Log.i(TAG, "Rollback journal: " + rollback);
+        // With WAL the reader never waits for the writer's transaction to commit
+        assertTrue("Readers were blocked in WAL mode: " + wal, wal.max < wal.writeMillis * 1_000_000L / 2);
+        assertTrue(wal.reads > rollback.reads);
+    }
+
+    private Latency measure(boolean wal) throws InterruptedException {
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        dbHelper.setWriteAheadLoggingEnabled(wal);
+        try {
+            dbHelper.addWeights(USER_ID, entries(0, EXISTING_ROWS));
+            List<WeightEntry> bulk = entries(EXISTING_ROWS, BULK_ROWS);
+
+            CountDownLatch writing = new CountDownLatch(1);
+            AtomicBoolean done = new AtomicBoolean();
+            long[] writeMillis = new long[1];
+            Thread writer = new Thread(() -> {
+                long start = System.nanoTime();
+                writing.countDown();
+                dbHelper.addWeights(USER_ID, bulk);
+                writeMillis[0] = (System.nanoTime() - start) / 1_000_000;
+                done.set(true);
+            });
+            writer.start();
+            writing.await();
+
+            // Read continuously for as long as the bulk transaction runs
+            long[] latencies = new long[1024];
+            int reads = 0;
+            while (!done.get()) {
+                long start = System.nanoTime();
+                try (Cursor cursor = dbHelper.getMostRecentWeight(USER_ID)) {
+                    cursor.moveToFirst();
+                }
+                if (reads == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, reads * 2);
+                }
+                latencies[reads++] = System.nanoTime() - start;
+            }
+            writer.join();
+            return new Latency(Arrays.copyOf(latencies, reads), writeMillis[0]);
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    // One reading an hour from the given offset
+    private static List<WeightEntry> entries(int from, int count) {
+        List<WeightEntry> entries = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            entries.add(WeightEntry.of(150 + (i % 300) / 10.0, 1_420_070_400_000L + i * 3_600_000L));
+        }
+        return entries;
+    }
+
+    private static final class Latency {
+        final int reads;
+        final long p50;
+        final long p99;
+        final long max;
+        final long writeMillis;
+
+        Latency(long[] nanos, long writeMillis) {
+            Arrays.sort(nanos);
+            reads = nanos.length;
+            p50 = reads == 0 ? 0 : nanos[reads / 2];
+            p99 = reads == 0 ? 0 : nanos[Math.min(reads - 1, reads * 99 / 100)];
+            max = reads == 0 ? 0 : nanos[reads - 1];
+            this.writeMillis = writeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return reads + " reads during a " + writeMillis + " ms write, p50 " + p50 / 1000 + " us, p99 "
+                    + p99 / 1000 + " us, max " + max / 1000 + " us";
+        }
+    }
+}
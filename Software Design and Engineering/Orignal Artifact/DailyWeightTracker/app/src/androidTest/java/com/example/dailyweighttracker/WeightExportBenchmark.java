@@ -0,0 +1,159 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Export throughput on a million-row history, plain and gzipped, and resuming a cancelled export.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightExportBenchmark {
+
+    private static final String TAG = "WeightExportBenchmark";
+    private static final String DB_NAME = "export-benchmark.db";
+    private static final int ROW_COUNT = 1_000_000;
+    private static final int BATCH_SIZE = 10_000;
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private File fullFile;
+    private File resumedFile;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        fullFile = new File(context.getCacheDir(), "export-full");
+        resumedFile = new File(context.getCacheDir(), "export-resumed");
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        assertTrue(!fullFile.exists() || fullFile.delete());
+        assertTrue(!resumedFile.exists() || resumedFile.delete());
+    }
+
+    @Test
+    public void exportMillionRows() throws IOException {
+        insertRows(dbHelper, ROW_COUNT);
+        WeightExporter exporter = new WeightExporter(dbHelper);
+
+        for (boolean gzip : new boolean[]{false, true}) {
+            for (WeightExporter.Format format : WeightExporter.Format.values()) {
+                Runtime runtime = Runtime.getRuntime();
+                runtime.gc();
+                long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+                long start = SystemClock.elapsedRealtime();
+                WeightExporter.Checkpoint result = exporter.export(USER_ID, fullFile, format, gzip, null, null);
+                long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+                Log.i(TAG, format + (gzip ? " gzip" : "") + ": " + result.rowsWritten + " rows in " + elapsed
+                        + " ms (" + result.rowsWritten * 1000L / elapsed + " rows/s), " + fullFile.length() / 1024
+                        + " KiB, heap growth " + (runtime.totalMemory() - runtime.freeMemory() - heapBefore) / 1024 + " KiB");
+                assertTrue(result.complete);
+                assertEquals(ROW_COUNT, result.rowsWritten);
+            }
+        }
+    }
+
+    @Test
+    public void resumedExportMatchesFullExport() throws IOException {
+        insertRows(dbHelper, 25_000);
+        for (boolean gzip : new boolean[]{false, true}) {
+            for (WeightExporter.Format format : WeightExporter.Format.values()) {
+                WeightExporter.Checkpoint full = new WeightExporter(dbHelper, 1000)
+                        .export(USER_ID, fullFile, format, gzip, null, null);
+
+                // Cancel once the third page has been read
+                CancellationSignal signal = new CancellationSignal();
+                WeightExporter.Checkpoint partial;
+                try (PageCountingHelper cancelling = new PageCountingHelper(3, signal)) {
+                    partial = new WeightExporter(cancelling, 1000)
+                            .export(USER_ID, resumedFile, format, gzip, null, signal);
+                }
+                assertFalse(partial.complete);
+                assertEquals(3000, partial.rowsWritten);
+
+                WeightExporter.Checkpoint resumed = new WeightExporter(dbHelper, 1000)
+                        .export(USER_ID, resumedFile, format, gzip, partial, null);
+                assertTrue(resumed.complete);
+                assertEquals(full.rowsWritten, resumed.rowsWritten);
+                assertArrayEquals(format + (gzip ? " gzip" : ""), read(fullFile, gzip), read(resumedFile, gzip));
+            }
+        }
+    }
+
+    // Adds one reading an hour through the batch insert
+    private static void insertRows(DatabaseHelper dbHelper, int count) {
+        List<WeightEntry> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            batch.add(WeightEntry.of(150 + (i % 300) / 10.0, 1_420_070_400_000L + i * 3_600_000L));
+            if (batch.size() == BATCH_SIZE || i == count - 1) {
+                dbHelper.addWeights(USER_ID, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static byte[] read(File file, boolean gzip) throws IOException {
+        try (InputStream fileIn = new FileInputStream(file);
+             InputStream in = gzip ? new GZIPInputStream(fileIn) : fileIn) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // Cancels the signal after handing out the given number of pages
+    private class PageCountingHelper extends DatabaseHelper {
+        private final CancellationSignal signal;
+        private int pagesLeft;
+
+        PageCountingHelper(int pages, CancellationSignal signal) {
+            super(context, DB_NAME);
+            this.pagesLeft = pages;
+            this.signal = signal;
+        }
+
+        @Override
+        public Cursor getWeightsAfter(long userId, long afterDate, long afterId, int limit, CancellationSignal s) {
+            Cursor page = super.getWeightsAfter(userId, afterDate, afterId, limit, s);
+            // Fill the window now so cancelling only stops the next page
+            page.getCount();
+            if (--pagesLeft == 0) {
+                signal.cancel();
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.text.format.DateFormat;
+import android.widget.TextView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.DecimalFormat;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Allocations per bound history row with a DecimalFormat, String.format and DateFormat per value,
+ * against the shared WeightFormat.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightFormatBenchmark {
+
+    private static final int ITERATIONS = 10_000;
+    private static final String UNIT = "lbs";
+    private static final long START = 1_420_070_400_000L;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @Test
+    public void bindRow() {
+        BenchmarkRunner.Result[] results = new BenchmarkRunner.Result[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            TextView weightView = new TextView(context);
+            TextView dateView = new TextView(context);
+            results[0] = BenchmarkRunner.measure("bind/DecimalFormat", ITERATIONS, i -> {
+                DecimalFormat df = new DecimalFormat("#.0");
+                weightView.setText(String.format("%s %s", df.format(weight(i)), UNIT));
+                dateView.setText(DateFormat.format(DatabaseHelper.DISPLAY_DATE_PATTERN, date(i)));
+            });
+
+            WeightFormat format = WeightFormat.get(UNIT);
+            char[] dateChars = new char[WeightFormat.DATE_LENGTH];
+            results[1] = BenchmarkRunner.measure("bind/WeightFormat", ITERATIONS, i -> {
+                weightView.setText(format.format(weight(i)));
+                dateView.setText(dateChars, 0, format.writeDate(date(i), dateChars, 0));
+            });
+        });
+        assertTrue(results[1].allocsPerOp < results[0].allocsPerOp);
+    }
+
+    @Test
+    public void formatOnly_allocatesNothingOnceWarm() {
+        WeightFormat format = new WeightFormat(UNIT, TimeZone.getDefault());
+        char[] dateChars = new char[WeightFormat.DATE_LENGTH];
+        int[] length = new int[1];
+        // The warm-up pass caches every weight text the measured pass uses
+        BenchmarkRunner.Result result = BenchmarkRunner.measure("format/WeightFormat", ITERATIONS, i -> {
+            length[0] += format.format(weight(i)).length();
+            length[0] += format.writeDate(date(i), dateChars, 0);
+        });
+        assertTrue(length[0] > 0);
+        assertEquals(0, result.allocsPerOp, 0);
+    }
+
+    // 300 distinct weights, one reading an hour
+    private static double weight(int i) {
+        return 150 + (i % 300) / 10.0;
+    }
+
+    private static long date(int i) {
+        return START + i * 3_600_000L;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.dailyweighttracker;
+
+import android.text.format.DateFormat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * WeightFormat's output against the platform formatters it replaces.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightFormatTest {
+
+    @Test
+    public void weights_roundToOneDecimalWithUnit() {
+        WeightFormat format = new WeightFormat("lbs", TimeZone.getDefault());
+        assertEquals("150.0 lbs", format.format(150));
+        assertEquals("150.5 lbs", format.format(150.47));
+        assertEquals("0.5 lbs", format.format(0.46));
+        // Cached texts are reused
+        assertSame(format.format(72.3), format.format(72.3));
+        // Outside the cache
+        assertEquals("1234.5 lbs", format.format(1234.5));
+        assertEquals("-2.5 lbs", format.format(-2.5));
+        assertEquals("150.0", WeightFormat.formatNumber(149.96));
+    }
+
+    @Test
+    public void days_areTheDatePart() {
+        WeightFormat format = new WeightFormat("lbs", TimeZone.getTimeZone("UTC"));
+        assertEquals("2000-02-29", format.formatDay(951_782_400_000L));
+        assertEquals("1969-12-31", format.formatDay(-1));
+    }
+
+    @Test
+    public void dates_matchDateFormat() {
+        // Across DST changes, leap days, and before the epoch
+        String[] zones = {"UTC", "America/New_York", "Asia/Kolkata", "Australia/Lord_Howe"};
+        long[] dates = {0, -1, 951_782_400_000L, 1_583_650_800_000L, 1_604_210_400_000L,
+                1_709_164_799_999L, 4_102_444_800_000L};
+        TimeZone original = TimeZone.getDefault();
+        char[] chars = new char[WeightFormat.DATE_LENGTH];
+        try {
+            for (String zone : zones) {
+                TimeZone timeZone = TimeZone.getTimeZone(zone);
+                TimeZone.setDefault(timeZone);
+                WeightFormat format = new WeightFormat("kg", timeZone);
+                for (long date : dates) {
+                    for (long offset = 0; offset < 48 * 3_600_000L; offset += 3_599_999L) {
+                        long millis = date + offset;
+                        String expected = DateFormat.format(DatabaseHelper.DISPLAY_DATE_PATTERN, millis).toString();
+                        assertEquals(zone + " " + millis, expected,
+                                new String(chars, 0, format.writeDate(millis, chars, 0)));
+                    }
+                }
+            }
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Time to the history screen's first row as the history grows, loading one keyset page against
+ * loading the whole history.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightHistoryPagingBenchmark {
+
+    private static final String TAG = "WeightHistoryPagingBench";
+    private static final String DB_NAME = "history-paging-benchmark.db";
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int BATCH_ROWS = 10_000;
+    private static final int RUNS = 5;
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void firstRow_pagedVersusFullHistory() {
+        int rows = 0;
+        long paged = 0;
+        long full = 0;
+        for (int size : SIZES) {
+            while (rows < size) {
+                int count = Math.min(BATCH_ROWS, size - rows);
+                dbHelper.addWeights(USER_ID, entries(rows, count));
+                rows += count;
+            }
+
+            paged = Long.MAX_VALUE;
+            full = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                try (Cursor cursor = dbHelper.getWeightsAfter(USER_ID, Long.MIN_VALUE, Long.MIN_VALUE,
+                        WeightHistoryPager.DEFAULT_PAGE_SIZE, null)) {
+                    // getCount fills the cursor's window, as the repository does before handing it over
+                    cursor.getCount();
+                    assertTrue(cursor.moveToFirst());
+                }
+                paged = Math.min(paged, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                try (Cursor cursor = dbHelper.getAllWeights(USER_ID)) {
+                    cursor.getCount();
+                    assertTrue(cursor.moveToFirst());
+                }
+                full = Math.min(full, System.nanoTime() - start);
+            }
+            Log.i(TAG, size + " rows: first page " + paged / 1000 + " us, full history " + full / 1000 + " us");
+        }
+        // A page costs the same at any size; counting the whole history does not
+        assertTrue("paged " + paged + " ns, full " + full + " ns", paged < full);
+    }
+
+    // One reading an hour from the given offset
+    private static List<WeightEntry> entries(int from, int count) {
+        List<WeightEntry> entries = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            entries.add(WeightEntry.of(150 + (i % 300) / 10.0, 1_420_070_400_000L + i * 3_600_000L));
+        }
+        return entries;
+    }
+}
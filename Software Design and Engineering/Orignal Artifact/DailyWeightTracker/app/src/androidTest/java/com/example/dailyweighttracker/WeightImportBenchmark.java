@@ -0,0 +1,88 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Import throughput on a million-row CSV file. WeightImporterTest covers the validation and dedup rules.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightImportBenchmark {
+
+    private static final String TAG = "WeightImportBenchmark";
+    private static final String DB_NAME = "import-benchmark.db";
+    private static final int ROW_COUNT = 1_000_000;
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private File csvFile;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        csvFile = new File(context.getCacheDir(), "import-benchmark.csv");
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+        assertTrue(!csvFile.exists() || csvFile.delete());
+    }
+
+    @Test
+    public void importMillionRowCsv() throws IOException {
+        // One reading a minute, starting 2015-01-01
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile))) {
+            writer.write("date,weight\n");
+            for (int i = 0; i < ROW_COUNT; i++) {
+                writer.write((1_420_070_400_000L + i * 60_000L) + "," + (150 + (i % 300) / 10.0) + "\n");
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long[] peakHeap = {heapBefore};
+        long start = SystemClock.elapsedRealtime();
+        WeightImporter.Result result;
+        try (InputStream in = new FileInputStream(csvFile)) {
+            result = new WeightImporter(dbHelper).importFrom(in, WeightImporter.Format.CSV, USER_ID,
+                    (read, imported) -> peakHeap[0] = Math.max(peakHeap[0], runtime.totalMemory() - runtime.freeMemory()));
+        }
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        Log.i(TAG, "Imported " + result.imported + " rows in " + elapsed + " ms ("
+                + result.imported * 1000L / elapsed + " rows/s), peak heap growth "
+                + (peakHeap[0] - heapBefore) / 1024 + " KiB");
+        assertEquals(ROW_COUNT, result.imported);
+
+        // A second pass finds everything already recorded
+        try (InputStream in = new FileInputStream(csvFile)) {
+            result = new WeightImporter(dbHelper).importFrom(in, WeightImporter.Format.CSV, USER_ID, null);
+        }
+        assertEquals(0, result.imported);
+        assertEquals(ROW_COUNT, result.duplicates);
+    }
+}
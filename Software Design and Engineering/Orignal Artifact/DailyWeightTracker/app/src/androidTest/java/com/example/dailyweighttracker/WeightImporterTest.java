@@ -0,0 +1,120 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * WeightImporter's header detection, validation and dedup rules, and that a bad value costs only
+ * its own row.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightImporterTest {
+
+    private static final String DB_NAME = "importer-test.db";
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void csvHeader_namesTheColumns() throws IOException {
+        WeightImporter.Result result = importText(WeightImporter.Format.CSV,
+                "\"Weight\",\"Date\"\n180.5,2020-01-01 08:00:00\n179,2020-01-02\n");
+
+        assertEquals(2, result.rowsRead);
+        assertEquals(2, result.imported);
+        assertEquals(180.5, firstWeight(), 0);
+    }
+
+    @Test
+    public void csvWithoutHeader_keepsItsFirstRow() throws IOException {
+        WeightImporter.Result result = importText(WeightImporter.Format.CSV,
+                "\"2020-01-01 08:00:00\",\"180.5\"\n\"2020-01-02\",\"179\"\n");
+
+        assertEquals(2, result.rowsRead);
+        assertEquals(2, result.imported);
+        assertEquals(180.5, firstWeight(), 0);
+    }
+
+    @Test
+    public void csvUnreadableFirstRow_isCountedInvalid() throws IOException {
+        WeightImporter.Result result = importText(WeightImporter.Format.CSV,
+                "when,lbs\n2020-01-02,179\n");
+
+        assertEquals(2, result.rowsRead);
+        assertEquals(1, result.invalid);
+        assertEquals(1, result.imported);
+    }
+
+    @Test
+    public void validatesAndDeduplicatesJson() throws IOException {
+        WeightImporter.Result result = importText(WeightImporter.Format.JSON,
+                "[{\"date\": \"2020-01-01 08:00:00\", \"weight\": 180.5},"
+                        + "{\"date\": \"2020-01-01 08:00:00\", \"weight\": 180.5},"
+                        + "{\"date\": \"2020-01-02\", \"weight\": \"179.0\"},"
+                        + "{\"date\": 1577980800000, \"weight\": -3},"
+                        + "{\"date\": \"not a date\", \"weight\": 178}]");
+
+        assertEquals(5, result.rowsRead);
+        assertEquals(2, result.imported);
+        assertEquals(1, result.duplicates);
+        assertEquals(2, result.invalid);
+    }
+
+    @Test
+    public void jsonBadValues_costOnlyTheirRow() throws IOException {
+        WeightImporter.Result result = importText(WeightImporter.Format.JSON,
+                "[{\"date\": null, \"weight\": 180},"
+                        + "{\"date\": \"2020-01-01\", \"weight\": null},"
+                        + "{\"date\": 1577980800000.5, \"weight\": 180},"
+                        + "{\"date\": {\"day\": 3}, \"weight\": [180]},"
+                        + "\"2020-01-04,180\","
+                        + "{\"date\": 1578038400000, \"weight\": 179.5}]");
+
+        assertEquals(6, result.rowsRead);
+        assertEquals(5, result.invalid);
+        assertEquals(1, result.imported);
+        assertEquals(179.5, firstWeight(), 0);
+    }
+
+    private WeightImporter.Result importText(WeightImporter.Format format, String text) throws IOException {
+        try (InputStream in = new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))) {
+            return new WeightImporter(dbHelper).importFrom(in, format, USER_ID, null);
+        }
+    }
+
+    // The weight of the user's oldest entry
+    private double firstWeight() {
+        List<WeightEntry> entries = new SqliteWeightStore(dbHelper).getAllWeights(USER_ID);
+        assertFalse(entries.isEmpty());
+        return entries.get(0).getWeight();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Times the version 2 to version 3 upgrade on a large synthetic database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightMigrationBenchmark {
+
+    private static final String TAG = "WeightMigrationBenchmark";
+    private static final String DB_NAME = "migration-benchmark.db";
+    private static final int ROW_COUNT = 200_000;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion2() {
+        createVersion2Database(ROW_COUNT);
+
+        long start = SystemClock.elapsedRealtime();
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Migrated " + ROW_COUNT + " rows in " + elapsed + " ms");
+
+        assertFalse(WeightMigration.legacyTableExists(db));
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*), MIN(typeof(weight)), MIN(typeof(date)) FROM weights", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(ROW_COUNT, cursor.getInt(0));
+            assertEquals("real", cursor.getString(1));
+            assertEquals("integer", cursor.getString(2));
+        }
+        // Every username in the old rows now has a users row the entries point at
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM weights w LEFT JOIN users u ON u._id = w.user_id WHERE u._id IS NULL", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+        dbHelper.close();
+    }
+
+    @Test
+    public void resumesInterruptedMigration() {
+        createVersion2Database(5_000);
+        SQLiteDatabase raw = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB_NAME), null);
+        // Simulate a migration that stopped after the schema change but before any batch committed
+        raw.execSQL("ALTER TABLE weights RENAME TO " + DatabaseHelper.TABLE_WEIGHTS_LEGACY);
+        raw.execSQL("CREATE TABLE weights (_id INTEGER PRIMARY KEY AUTOINCREMENT, weight REAL, date INTEGER, user TEXT)");
+        raw.setVersion(3);
+        raw.close();
+
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        assertFalse(WeightMigration.legacyTableExists(db));
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM weights", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(5_000, cursor.getInt(0));
+        }
+        dbHelper.close();
+    }
+
+    // Writes a database in the version 2 layout with one reading per hour
+    private void createVersion2Database(int rows) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB_NAME), null);
+        db.execSQL("CREATE TABLE weights (_id INTEGER PRIMARY KEY AUTOINCREMENT, weight TEXT, date TEXT, user TEXT)");
+        db.execSQL("CREATE TABLE users (_id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT UNIQUE, password TEXT)");
+        SQLiteStatement insert = db.compileStatement("INSERT INTO weights (weight, date, user) VALUES (?, strftime('%Y-%m-%d %H:%M:%S', ?, 'unixepoch', 'localtime'), ?)");
+        long hour = 60L * 60;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < rows; i++) {
+                insert.bindString(1, String.valueOf(150 + (i % 200) / 10.0));
+                insert.bindLong(2, 946_684_800L + i * hour);
+                insert.bindString(3, "user" + (i % 4));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.setVersion(2);
+        db.close();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which version 2 rows the upgrade carries over and which it sets aside.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightMigrationTest {
+
+    private static final String DB_NAME = "migration-test.db";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void readableRows_areCopied() {
+        createVersion2Database("INSERT INTO weights (weight, date, user) VALUES ('150', '2000-01-01 07:00:00', 'user0'),"
+                + " (' 151.5 ', '2000-01-02 07:00:00', 'user0')");
+
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT weight FROM weights ORDER BY _id", null)) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(150.0, cursor.getDouble(0), 0.0);
+            assertTrue(cursor.moveToNext());
+            assertEquals(151.5, cursor.getDouble(0), 0.0);
+            assertFalse(cursor.moveToNext());
+        }
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_WEIGHTS_QUARANTINE, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+        dbHelper.close();
+    }
+
+    @Test
+    public void unreadableRows_areQuarantined() {
+        createVersion2Database("INSERT INTO weights (weight, date, user) VALUES ('150', '2000-01-01 07:00:00', 'user0'),"
+                + " ('151', 'last tuesday', 'user0'),"
+                + " ('152', '2000-01-01 07:00:00', NULL),"
+                + " ('', '2000-01-01 07:00:00', 'user0'),"
+                + " ('153lb', '2000-01-01 07:00:00', 'user0')");
+
+        DatabaseHelper dbHelper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*), MIN(weight) FROM weights", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+            assertEquals(150.0, cursor.getDouble(1), 0.0);
+        }
+        // Kept with the text they were stored as
+        try (Cursor cursor = db.rawQuery("SELECT weight, date, user, reason FROM "
+                + DatabaseHelper.TABLE_WEIGHTS_QUARANTINE + " ORDER BY _id", null)) {
+            assertTrue(cursor.moveToNext());
+            assertEquals("151", cursor.getString(0));
+            assertEquals("last tuesday", cursor.getString(1));
+            assertEquals("user0", cursor.getString(2));
+            assertEquals(WeightMigration.REASON_BAD_DATE, cursor.getString(3));
+            assertTrue(cursor.moveToNext());
+            assertEquals("2000-01-01 07:00:00", cursor.getString(1));
+            assertTrue(cursor.isNull(2));
+            assertEquals(WeightMigration.REASON_NO_USER, cursor.getString(3));
+            assertTrue(cursor.moveToNext());
+            assertEquals("", cursor.getString(0));
+            assertEquals(WeightMigration.REASON_BAD_WEIGHT, cursor.getString(3));
+            assertTrue(cursor.moveToNext());
+            assertEquals("153lb", cursor.getString(0));
+            assertEquals(WeightMigration.REASON_BAD_WEIGHT, cursor.getString(3));
+            assertFalse(cursor.moveToNext());
+        }
+        dbHelper.close();
+    }
+
+    // Writes a database in the version 2 layout holding the rows the given insert adds
+    private void createVersion2Database(String insertRows) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DB_NAME), null);
+        db.execSQL("CREATE TABLE weights (_id INTEGER PRIMARY KEY AUTOINCREMENT, weight TEXT, date TEXT, user TEXT)");
+        db.execSQL("CREATE TABLE users (_id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT UNIQUE, password TEXT)");
+        db.execSQL(insertRows);
+        db.setVersion(2);
+        db.close();
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Main-thread delivery and lifecycle cancellation of WeightRepository calls, table observation,
+ * and the debug check that keeps queries off the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightRepositoryTest {
+
+    private static final String DB_NAME = "repository-test.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private WeightRepository repository;
+    private TestOwner owner;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        repository = new WeightRepository(dbHelper);
+        owner = new TestOwner();
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(repository::close);
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void queryOnMainThread_fails() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            try {
+                dbHelper.getReadableDatabase();
+                fail("Expected the main-thread check to reject the query");
+            } catch (IllegalStateException expected) {
+                // Debug builds reject main-thread queries
+            }
+        });
+    }
+
+    @Test
+    public void results_areDeliveredOnMainThread() throws Exception {
+        CountDownLatch delivered = new CountDownLatch(1);
+        AtomicBoolean ranInBackground = new AtomicBoolean();
+        AtomicBoolean deliveredOnMain = new AtomicBoolean();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                repository.execute(owner, (db, signal) -> {
+                    ranInBackground.set(Looper.myLooper() != Looper.getMainLooper());
+                    return db.addWeight(1, 150);
+                }).thenAccept(id -> {
+                    deliveredOnMain.set(Looper.myLooper() == Looper.getMainLooper() && id > 0);
+                    delivered.countDown();
+                }));
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertTrue(ranInBackground.get());
+        assertTrue(deliveredOnMain.get());
+    }
+
+    @Test
+    public void renameOntoTakenName_deliversFalse() throws Exception {
+        assertTrue(dbHelper.addUser("alice", "password"));
+        assertTrue(dbHelper.addUser("bob", "password"));
+        CountDownLatch delivered = new CountDownLatch(1);
+        AtomicBoolean result = new AtomicBoolean(true);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                repository.execute(owner, (db, signal) -> db.updateUsername("alice", "bob")).thenAccept(updated -> {
+                    result.set(updated);
+                    delivered.countDown();
+                }));
+
+        // Completes normally, so the screen can say the name is taken
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertFalse(result.get());
+    }
+
+    @Test
+    public void destroyedOwner_cancelsPendingCalls() throws Exception {
+        CountDownLatch blocking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean secondRan = new AtomicBoolean();
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Object>[] futures = new CompletableFuture[2];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            // The first call holds the worker so the second one is still queued when the owner goes away
+            futures[0] = repository.execute(owner, (db, signal) -> {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            });
+            futures[1] = repository.execute(owner, (db, signal) -> {
+                secondRan.set(true);
+                return null;
+            });
+        });
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                owner.registry.setCurrentState(Lifecycle.State.DESTROYED));
+        release.countDown();
+
+        // A call queued behind the second one runs only after it was skipped
+        CountDownLatch drained = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                repository.execute(new TestOwner(), (db, signal) -> null).thenAccept(ignored -> drained.countDown()));
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+
+        assertTrue(futures[0].isCancelled());
+        assertTrue(futures[1].isCancelled());
+        assertFalse(secondRan.get());
+    }
+
+    @Test
+    public void burstOfWrites_isReportedOncePerFrame() throws Exception {
+        AtomicInteger changes = new AtomicInteger();
+        CountDownLatch changed = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                repository.observe(owner, () -> {
+                    changes.incrementAndGet();
+                    changed.countDown();
+                }, DatabaseHelper.TABLE_WEIGHTS));
+
+        for (int i = 0; i < 50; i++) {
+            dbHelper.notifyTablesChanged(DatabaseHelper.TABLE_WEIGHTS);
+        }
+        dbHelper.notifyTablesChanged(DatabaseHelper.TABLE_USERS);
+        assertTrue(changed.await(5, TimeUnit.SECONDS));
+        awaitFrame();
+        assertEquals(1, changes.get());
+
+        // Other tables are not reported to this observer
+        dbHelper.notifyTablesChanged(DatabaseHelper.TABLE_USERS);
+        awaitFrame();
+        awaitFrame();
+        assertEquals(1, changes.get());
+    }
+
+    @Test
+    public void observedQuery_rerunsOnWriteAndClosesReplacedCursor() throws Exception {
+        List<Cursor> results = new CopyOnWriteArrayList<>();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(2);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                repository.observe(owner, (db, signal) -> db.getMostRecentWeight(1), cursor -> {
+                    results.add(cursor);
+                    first.countDown();
+                    second.countDown();
+                }, DatabaseHelper.TABLE_WEIGHTS));
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        assertEquals(0, results.get(0).getCount());
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                repository.execute(owner, (db, signal) -> db.addWeight(1, 150)));
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        assertTrue(results.get(0).isClosed());
+        assertEquals(1, results.get(1).getCount());
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                owner.registry.setCurrentState(Lifecycle.State.DESTROYED));
+        assertTrue(results.get(1).isClosed());
+    }
+
+    // Waits for the main thread to draw a frame
+    private static void awaitFrame() throws InterruptedException {
+        CountDownLatch frame = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                Choreographer.getInstance().postFrameCallback(frameTimeNanos -> frame.countDown()));
+        assertTrue(frame.await(5, TimeUnit.SECONDS));
+    }
+
+    // A lifecycle the test moves by hand
+    private static class TestOwner implements LifecycleOwner {
+        final LifecycleRegistry registry = LifecycleRegistry.createUnsafe(this);
+
+        TestOwner() {
+            registry.setCurrentState(Lifecycle.State.RESUMED);
+        }
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return registry;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Monthly averages over a whole history as it grows, read from the month rollups against
+ * aggregating the weights themselves.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightRollupsBenchmark {
+
+    private static final String TAG = "WeightRollupsBench";
+    private static final String DB_NAME = "rollups-benchmark.db";
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int BATCH_ROWS = 10_000;
+    private static final int RUNS = 5;
+    private static final long USER_ID = 1;
+    // Sums the same entries per month as the rollups, without them
+    private static final String SQL_RAW_MONTHS = "SELECT " + DatabaseHelper.COLUMN_DATE + " / 2592000000, COUNT(*), SUM("
+            + DatabaseHelper.COLUMN_WEIGHT + ") FROM " + DatabaseHelper.TABLE_WEIGHTS
+            + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ? GROUP BY 1";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void monthlyAverages_rollupsVersusRawRows() {
+        int rows = 0;
+        long rollups = 0;
+        long raw = 0;
+        for (int size : SIZES) {
+            while (rows < size) {
+                int count = Math.min(BATCH_ROWS, size - rows);
+                dbHelper.addWeights(USER_ID, entries(rows, count));
+                rows += count;
+            }
+
+            rollups = Long.MAX_VALUE;
+            raw = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                double total = 0;
+                try (Cursor cursor = dbHelper.getRollups(USER_ID, WeightRollups.PERIOD_MONTH,
+                        Long.MIN_VALUE, Long.MAX_VALUE)) {
+                    while (cursor.moveToNext()) {
+                        total += cursor.getDouble(2) / cursor.getInt(1);
+                    }
+                }
+                rollups = Math.min(rollups, System.nanoTime() - start);
+                assertTrue(total > 0);
+
+                start = System.nanoTime();
+                total = 0;
+                try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(SQL_RAW_MONTHS,
+                        new String[]{String.valueOf(USER_ID)})) {
+                    while (cursor.moveToNext()) {
+                        total += cursor.getDouble(2) / cursor.getInt(1);
+                    }
+                }
+                raw = Math.min(raw, System.nanoTime() - start);
+                assertTrue(total > 0);
+            }
+            Log.i(TAG, size + " rows: rollups " + rollups / 1000 + " us, raw rows " + raw / 1000 + " us");
+        }
+        // The rollups read one row per month; the raw query reads every entry
+        assertTrue("rollups " + rollups + " ns, raw " + raw + " ns", rollups < raw);
+    }
+
+    // One reading an hour from the given offset
+    private static List<WeightEntry> entries(int from, int count) {
+        List<WeightEntry> entries = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            entries.add(WeightEntry.of(150 + (i % 300) / 10.0, 1_420_070_400_000L + i * 3_600_000L));
+        }
+        return entries;
+    }
+}
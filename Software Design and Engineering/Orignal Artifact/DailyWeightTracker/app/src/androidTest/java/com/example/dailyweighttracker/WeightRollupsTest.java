@@ -0,0 +1,133 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * The rollups kept in step by every write path matching a rebuild from the weights, and the
+ * bucket numbering.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightRollupsTest {
+
+    private static final String DB_NAME = "weight-rollups-test.db";
+    private static final long DAY = 86_400_000L;
+    // 2024-01-01, a Monday, in UTC
+    private static final long JAN_1_2024 = 19_723 * DAY;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void buckets_areLocalDaysMondayWeeksAndMonths() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        assertEquals(19_723, WeightRollups.bucketOf(WeightRollups.PERIOD_DAY, JAN_1_2024, utc));
+        // Sunday and Monday fall in different weeks
+        assertEquals(WeightRollups.bucketOf(WeightRollups.PERIOD_WEEK, JAN_1_2024, utc) - 1,
+                WeightRollups.bucketOf(WeightRollups.PERIOD_WEEK, JAN_1_2024 - 1, utc));
+        assertEquals(2024 * 12, WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, JAN_1_2024, utc));
+        assertEquals(2023 * 12 + 11, WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, JAN_1_2024 - 1, utc));
+        // Midnight UTC is still the previous day in New York
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+        assertEquals(19_722, WeightRollups.bucketOf(WeightRollups.PERIOD_DAY, JAN_1_2024, newYork));
+    }
+
+    @Test
+    public void maintainedRollups_matchRebuild() {
+        Random random = new Random(42);
+        List<WeightEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            entries.add(WeightEntry.of(140 + random.nextInt(80) / 2.0, JAN_1_2024 + random.nextInt(120) * DAY / 3));
+        }
+        long[] ids = dbHelper.addWeights(1, entries);
+        dbHelper.addWeights(2, entries.subList(0, 50));
+        dbHelper.addWeight(1, 151.5);
+        dbHelper.addWeight(1, 152.5, 150, "lbs");
+
+        dbHelper.updateWeight(ids[0], 130);
+        dbHelper.deleteWeight(ids[1]);
+        List<WeightEntry> updates = new ArrayList<>();
+        for (int i = 2; i < 20; i++) {
+            updates.add(new WeightEntry(ids[i], 160, 0));
+        }
+        dbHelper.updateWeights(updates);
+        dbHelper.deleteWeights(new long[]{ids[20], ids[21], ids[22], -1});
+        assertFalse(dbHelper.deleteWeight(-1));
+        String maintained = dumpRollups();
+
+        assertEquals(entries.size() + 50 + 2 - 4, dbHelper.rebuildRollups());
+        assertEquals(dumpRollups(), maintained);
+
+        dbHelper.deleteAllWeightsForUser(2);
+        try (Cursor cursor = dbHelper.getRollups(2, WeightRollups.PERIOD_DAY, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void monthRollup_summarizesItsEntries() {
+        TimeZone zone = TimeZone.getDefault();
+        List<WeightEntry> entries = new ArrayList<>();
+        entries.add(WeightEntry.of(150, JAN_1_2024 + 10 * DAY));
+        entries.add(WeightEntry.of(148, JAN_1_2024 + 12 * DAY));
+        entries.add(WeightEntry.of(152, JAN_1_2024 + 11 * DAY));
+        dbHelper.addWeights(1, entries);
+        long month = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, JAN_1_2024 + 10 * DAY, zone);
+
+        try (Cursor cursor = dbHelper.getRollups(1, WeightRollups.PERIOD_MONTH, month, month)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(month, cursor.getLong(0));
+            assertEquals(3, cursor.getInt(1));
+            assertEquals(450, cursor.getDouble(2), 1e-9);
+            assertEquals(148, cursor.getDouble(3), 0);
+            assertEquals(152, cursor.getDouble(4), 0);
+            assertEquals(JAN_1_2024 + 10 * DAY, cursor.getLong(5));
+            assertEquals(150, cursor.getDouble(6), 0);
+            assertEquals(JAN_1_2024 + 12 * DAY, cursor.getLong(7));
+            assertEquals(148, cursor.getDouble(8), 0);
+        }
+    }
+
+    // Every rollup row, in key order, as text
+    private String dumpRollups() {
+        StringBuilder dump = new StringBuilder();
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT * FROM " + DatabaseHelper.TABLE_ROLLUPS
+                + " ORDER BY " + DatabaseHelper.COLUMN_ROLLUP_USER_ID + ", " + DatabaseHelper.COLUMN_ROLLUP_PERIOD
+                + ", " + DatabaseHelper.COLUMN_ROLLUP_BUCKET, null)) {
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    dump.append(cursor.getString(i)).append(i + 1 < cursor.getColumnCount() ? ',' : '\n');
+                }
+            }
+        }
+        return dump.toString();
+    }
+}
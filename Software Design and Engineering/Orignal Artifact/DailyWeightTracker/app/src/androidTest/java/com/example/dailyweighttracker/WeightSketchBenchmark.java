@@ -0,0 +1,116 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * p10/p50/p90 over most of a growing history, merged from the monthly sketches against sorting
+ * every entry in the range, reporting the time of each and the largest difference between them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightSketchBenchmark {
+
+    private static final String TAG = "WeightSketchBench";
+    private static final String DB_NAME = "sketch-benchmark.db";
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int BATCH_ROWS = 10_000;
+    private static final int RUNS = 5;
+    private static final long USER_ID = 1;
+    private static final long START = 1_420_070_400_000L;
+    private static final long HOUR = 3_600_000L;
+    private static final double[] QUANTILES = {0.1, 0.5, 0.9};
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void percentiles_sketchesVersusExact() {
+        int rows = 0;
+        long sketched = 0;
+        long exact = 0;
+        for (int size : SIZES) {
+            while (rows < size) {
+                int count = Math.min(BATCH_ROWS, size - rows);
+                dbHelper.addWeights(USER_ID, entries(rows, count));
+                rows += count;
+            }
+            // Starts and ends mid-month, so both partial months are read from the entries
+            long from = START + size * HOUR / 10;
+            long to = START + size * HOUR * 9 / 10;
+
+            sketched = Long.MAX_VALUE;
+            exact = Long.MAX_VALUE;
+            double[] approximate = new double[QUANTILES.length];
+            double[] expected = new double[QUANTILES.length];
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                WeightSketch sketch = dbHelper.getWeightSketch(USER_ID, from, to);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    approximate[i] = sketch.quantile(QUANTILES[i]);
+                }
+                sketched = Math.min(sketched, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                double[] weights;
+                try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(WeightRollups.SQL_ENTRIES_AROUND,
+                        new String[]{String.valueOf(USER_ID), String.valueOf(from), String.valueOf(to)})) {
+                    weights = new double[cursor.getCount()];
+                    for (int i = 0; cursor.moveToNext(); i++) {
+                        weights[i] = cursor.getDouble(1);
+                    }
+                }
+                Arrays.sort(weights);
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    expected[i] = weights[(int) Math.max(1, Math.ceil(QUANTILES[i] * weights.length)) - 1];
+                }
+                exact = Math.min(exact, System.nanoTime() - start);
+            }
+            double error = 0;
+            for (int i = 0; i < QUANTILES.length; i++) {
+                error = Math.max(error, Math.abs(approximate[i] - expected[i]));
+            }
+            Log.i(TAG, size + " rows: sketches " + sketched / 1000 + " us, exact " + exact / 1000
+                    + " us, max error " + error);
+            // Weights are kept to the tenth, so rounding is the only difference
+            assertTrue("error " + error, error <= 0.05 + 1e-9);
+        }
+        assertTrue("sketches " + sketched + " ns, exact " + exact + " ns", sketched < exact);
+    }
+
+    // One reading an hour from the given offset, with hundredths the sketches round away
+    private static List<WeightEntry> entries(int from, int count) {
+        List<WeightEntry> entries = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            entries.add(WeightEntry.of(150 + (i * 7919 % 3000) / 100.0, START + i * HOUR));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sketch quantiles, merging and serialization, and the stored monthly sketches answering range
+ * queries exactly as the entries themselves would through every write path.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightSketchTest {
+
+    private static final String DB_NAME = "weight-sketch-test.db";
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_600_000_000_000L;
+    private static final double[] QUANTILES = {0, 0.1, 0.5, 0.9, 1};
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void quantiles_matchNearestRankToTheTenth() {
+        Random random = new Random(3);
+        double[] weights = new double[1001];
+        WeightSketch first = new WeightSketch();
+        WeightSketch second = new WeightSketch();
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Math.round((160 + random.nextGaussian() * 5) * 10) / 10.0;
+            (i % 2 == 0 ? first : second).add(weights[i]);
+        }
+        first.merge(second);
+        assertEquals(weights.length, first.getCount());
+        assertQuantiles(weights, first);
+
+        // Round trip, including a negative first tenth
+        WeightSketch copy = WeightSketch.fromBytes(first.toBytes());
+        assertQuantiles(weights, copy);
+        WeightSketch odd = new WeightSketch();
+        odd.add(-3.2);
+        odd.add(1000.1);
+        assertEquals(-3.2, WeightSketch.fromBytes(odd.toBytes()).quantile(0), 0);
+
+        assertTrue(copy.remove(weights[0]));
+        assertFalse(copy.remove(-50));
+        assertEquals(weights.length - 1, copy.getCount());
+        assertTrue(Double.isNaN(new WeightSketch().quantile(0.5)));
+
+        long[] bins = new long[4];
+        odd.histogram(0, 10, bins);
+        assertArrayEquals(new long[]{1, 0, 0, 1}, bins);
+    }
+
+    @Test
+    public void storedSketches_answerRangesLikeTheEntries() {
+        Random random = new Random(9);
+        List<WeightEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            entries.add(WeightEntry.of(Math.round((170 - i * 0.02 + random.nextGaussian()) * 10) / 10.0,
+                    START + (long) (i * DAY * 0.7)));
+        }
+        long[] ids = dbHelper.addWeights(1, entries);
+        dbHelper.addWeights(2, entries.subList(0, 100));
+        dbHelper.updateWeight(ids[10], 150.5);
+        dbHelper.deleteWeight(ids[11]);
+        List<WeightEntry> updates = new ArrayList<>();
+        updates.add(new WeightEntry(ids[300], 190, 0));
+        dbHelper.updateWeights(updates);
+        dbHelper.deleteWeights(new long[]{ids[301], ids[302]});
+
+        long end = START + 420 * DAY;
+        long[][] ranges = {{START, end}, {START + 17 * DAY + 5, START + 200 * DAY}, {START + DAY, START + 9 * DAY},
+                {0, START + 1000 * DAY}};
+        for (long[] range : ranges) {
+            assertQuantiles(entriesBetween(1, range[0], range[1]), dbHelper.getWeightSketch(1, range[0], range[1]));
+        }
+
+        // A rebuild gives the same sketches
+        dbHelper.rebuildRollups();
+        assertQuantiles(entriesBetween(1, START, end), dbHelper.getWeightSketch(1, START, end));
+
+        dbHelper.deleteAllWeightsForUser(2);
+        assertTrue(dbHelper.getWeightSketch(2, 0, START + 1000 * DAY).isEmpty());
+    }
+
+    @Test
+    public void monthStart_isTheFirstInstantOfItsMonth() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        long month = 2024 * 12 + 2;
+        long start = WeightSketches.monthStart(month, zone);
+        assertEquals(month, WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, start, zone));
+        assertEquals(month - 1, WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, start - 1, zone));
+    }
+
+    private double[] entriesBetween(long userId, long fromDate, long toDate) {
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                WeightRollups.SQL_ENTRIES_AROUND, new String[]{String.valueOf(userId),
+                        String.valueOf(fromDate), String.valueOf(toDate)})) {
+            double[] weights = new double[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                weights[i] = cursor.getDouble(1);
+            }
+            return weights;
+        }
+    }
+
+    // Compares the sketch's quantiles with nearest-rank quantiles of the sorted weights
+    private static void assertQuantiles(double[] weights, WeightSketch sketch) {
+        double[] sorted = weights.clone();
+        Arrays.sort(sorted);
+        assertEquals(sorted.length, sketch.getCount());
+        for (double q : QUANTILES) {
+            int rank = (int) Math.max(1, Math.ceil(q * sorted.length));
+            assertEquals("q" + q, sorted[rank - 1], sketch.quantile(q), 0.05 + 1e-9);
+        }
+    }
+}
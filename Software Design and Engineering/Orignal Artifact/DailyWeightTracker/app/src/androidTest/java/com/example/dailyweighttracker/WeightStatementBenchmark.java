@@ -0,0 +1,97 @@
+package com.example.dailyweighttracker;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the ContentValues and SQL-builder write path with the compiled statements.
+ * Each run happens inside a transaction that is rolled back, so the numbers measure per-call
+ * overhead rather than fsync latency.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightStatementBenchmark {
+
+    private static final String DB_NAME = "statement-benchmark.db";
+    private static final int ITERATIONS = 20_000;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        db = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void insert() {
+        BenchmarkRunner.Result before = inRolledBackTransaction(() -> BenchmarkRunner.measure("insert/ContentValues", ITERATIONS, i -> {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_WEIGHT, 150.0 + i % 50);
+            values.put(DatabaseHelper.COLUMN_DATE, System.currentTimeMillis());
+            values.put(DatabaseHelper.COLUMN_WEIGHT_USER_ID, 1L);
+            db.insert(DatabaseHelper.TABLE_WEIGHTS, null, values);
+        }));
+        WeightStatements statements = dbHelper.getStatements();
+        BenchmarkRunner.Result after = inRolledBackTransaction(() -> BenchmarkRunner.measure("insert/compiled", ITERATIONS,
+                i -> statements.insert(1L, 150.0 + i % 50, System.currentTimeMillis())));
+        assertTrue(after.allocsPerOp < before.allocsPerOp);
+    }
+
+    @Test
+    public void updateAndDelete() {
+        WeightStatements statements = dbHelper.getStatements();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ITERATIONS * 2; i++) {
+                statements.insert(1L, 150.0, i);
+            }
+            BenchmarkRunner.Result updateBefore = BenchmarkRunner.measure("update/ContentValues", ITERATIONS, i -> {
+                ContentValues values = new ContentValues();
+                values.put(DatabaseHelper.COLUMN_WEIGHT, 151.0f);
+                db.update(DatabaseHelper.TABLE_WEIGHTS, values, DatabaseHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(i + 1)});
+            });
+            BenchmarkRunner.Result updateAfter = BenchmarkRunner.measure("update/compiled", ITERATIONS,
+                    i -> statements.update(i + 1, 152.0));
+            BenchmarkRunner.Result deleteBefore = BenchmarkRunner.measure("delete/builder", ITERATIONS,
+                    i -> db.delete(DatabaseHelper.TABLE_WEIGHTS, DatabaseHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(i + 1)}));
+            BenchmarkRunner.Result deleteAfter = BenchmarkRunner.measure("delete/compiled", ITERATIONS,
+                    i -> statements.delete(ITERATIONS + i + 1));
+            assertTrue(updateAfter.allocsPerOp < updateBefore.allocsPerOp);
+            assertTrue(deleteAfter.allocsPerOp < deleteBefore.allocsPerOp);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private BenchmarkRunner.Result inRolledBackTransaction(Supplier<BenchmarkRunner.Result> body) {
+        db.beginTransaction();
+        try {
+            return body.get();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The running trend state matching a trend computed from scratch through every write path, and
+ * the goal projection.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeightTrendsTest {
+
+    private static final String DB_NAME = "weight-trends-test.db";
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_700_000_000_000L;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void noEntries_haveNoTrend() {
+        assertNull(dbHelper.getTrend(1));
+        dbHelper.addWeight(1, 150);
+        WeightTrend trend = dbHelper.getTrend(1);
+        assertEquals(150, trend.getTrend(), 0);
+        assertEquals(150, trend.getMovingAverage7(), 0);
+        assertTrue(Double.isNaN(trend.getSlopePerDay()));
+        dbHelper.deleteAllWeightsForUser(1);
+        assertNull(dbHelper.getTrend(1));
+    }
+
+    @Test
+    public void runningState_matchesRecomputation() {
+        Random random = new Random(7);
+        List<WeightEntry> entries = new ArrayList<>();
+        long date = START;
+        for (int i = 0; i < 400; i++) {
+            // Irregular logging, sometimes several times a day
+            date += random.nextInt(3) * DAY / 2 + random.nextInt(3_600_000);
+            entries.add(WeightEntry.of(180 - i * 0.05 + random.nextGaussian(), date));
+        }
+        long[] ids = dbHelper.addWeights(1, entries.subList(0, 300));
+        // Loaded once, then kept up to date one insert at a time
+        assertTrendMatches(1);
+        for (WeightEntry entry : entries.subList(300, 400)) {
+            insertAt(1, entry.getWeight(), entry.getDate());
+        }
+        assertTrendMatches(1);
+
+        // Changes inside and beyond the replayed window
+        dbHelper.updateWeight(ids[299], 190);
+        dbHelper.deleteWeight(ids[298]);
+        dbHelper.updateWeight(ids[0], 100);
+        assertTrendMatches(1);
+        List<WeightEntry> updates = new ArrayList<>();
+        updates.add(new WeightEntry(ids[297], 170, 0));
+        dbHelper.updateWeights(updates);
+        dbHelper.deleteWeights(new long[]{ids[296], ids[295]});
+        assertTrendMatches(1);
+
+        // A backfilled entry
+        dbHelper.addWeights(1, entries.subList(250, 251));
+        assertTrendMatches(1);
+    }
+
+    @Test
+    public void goalEta_followsTheSlope() {
+        List<WeightEntry> entries = new ArrayList<>();
+        for (int day = 0; day < 60; day++) {
+            entries.add(WeightEntry.of(200 - day * 0.5, START + day * DAY));
+        }
+        dbHelper.addWeights(1, entries);
+        WeightTrend trend = dbHelper.getTrend(1);
+        assertEquals(-0.5, trend.getSlopePerDay(), 1e-9);
+
+        // Half a pound a day from wherever the trend is now
+        long latest = START + 59 * DAY;
+        double days = (trend.getTrend() - 150) / 0.5;
+        assertEquals(latest + days * DAY, trend.getGoalEta(150), DAY / 1000.0);
+        assertEquals(latest, trend.getGoalEta(trend.getTrend()));
+        // Heading away from it
+        assertEquals(-1, trend.getGoalEta(250));
+        // Beyond five years
+        assertEquals(-1, trend.getGoalEta(-1000));
+    }
+
+    // Inserts one entry at a given date through the helper, as addWeight does for now
+    private void insertAt(long userId, double weight, long date) {
+        long id = dbHelper.getStatements().insert(userId, weight, date);
+        dbHelper.getTrends().onInserted(userId, id, date, weight);
+    }
+
+    private void assertTrendMatches(long userId) {
+        List<Long> dates = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        try (Cursor cursor = dbHelper.getAllWeights(userId)) {
+            while (cursor.moveToNext()) {
+                weights.add(cursor.getDouble(1));
+                dates.add(cursor.getLong(2));
+            }
+        }
+        int n = dates.size();
+        long latest = dates.get(n - 1);
+        double trend = Double.NaN;
+        long previous = 0;
+        double sum7 = 0;
+        int n7 = 0;
+        double sum30 = 0;
+        double sumX = 0;
+        double sumXX = 0;
+        double sumXY = 0;
+        int n30 = 0;
+        for (int i = 0; i < n; i++) {
+            long date = dates.get(i);
+            double weight = weights.get(i);
+            if (date < latest - WeightTrends.HORIZON_DAYS * DAY) {
+                continue;
+            }
+            trend = Double.isNaN(trend) ? weight
+                    : weight + Math.pow(0.9, (double) (date - previous) / DAY) * (trend - weight);
+            previous = date;
+            if (date > latest - 7 * DAY) {
+                sum7 += weight;
+                n7++;
+            }
+            if (date > latest - 30 * DAY) {
+                double x = (double) (date - latest) / DAY;
+                sum30 += weight;
+                sumX += x;
+                sumXX += x * x;
+                sumXY += x * weight;
+                n30++;
+            }
+        }
+        WeightTrend actual = dbHelper.getTrend(userId);
+        assertEquals(latest, actual.getLatestDate());
+        // The running trend still carries entries from beyond the window, by less than 0.9^180
+        assertEquals(trend, actual.getTrend(), 1e-4);
+        assertEquals(sum7 / n7, actual.getMovingAverage7(), 1e-9);
+        assertEquals(sum30 / n30, actual.getMovingAverage30(), 1e-9);
+        assertEquals((n30 * sumXY - sumX * sum30) / (n30 * sumXX - sumX * sumX), actual.getSlopePerDay(), 1e-6);
+    }
+}
@@ -34,7 +34,7 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
     private TextInputLayout usernameInputLayout;
 
     // Database and preferences
-    private DatabaseHelper dbHelper;
+    private WeightRepository repository;
     private SharedPreferences prefs;
     private String username;
 
@@ -43,10 +43,10 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_account);
 
-        // Initialize database helper and shared preferences
-        dbHelper = new DatabaseHelper(this);
+        // Initialize the repository and shared preferences
+        repository = WeightRepository.getInstance(this);
         prefs = getSharedPreferences("WeightTrackerPrefs", Context.MODE_PRIVATE);
-        username = dbHelper.getCurrentUsername(prefs);
+        username = UserSession.getUsername(prefs);
 
         if (DatabaseHelper.GUEST_USERNAME.equals(username)) {
             Toast.makeText(this, "This feature is not available for guest users.", Toast.LENGTH_SHORT).show();
@@ -83,9 +83,9 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
         // Listen for changes in the selected unit
         unitsRadioGroup.setOnCheckedChangeListener((group, checkedId) -> {
             if (checkedId == R.id.lbs_radio_button) {
-                prefs.edit().putString("unit_" + username, "lbs").apply();
+                prefs.edit().putString(PreferenceKeys.unit(username), "lbs").apply();
             } else if (checkedId == R.id.kg_radio_button) {
-                prefs.edit().putString("unit_" + username, "kg").apply();
+                prefs.edit().putString(PreferenceKeys.unit(username), "kg").apply();
             }
         });
     }
@@ -94,7 +94,7 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
      * Loads the user's preferred unit (lbs or kg)
      */
     private void loadUnitPreference() {
-        String unit = prefs.getString("unit_" + username, "lbs");
+        String unit = prefs.getString(PreferenceKeys.unit(username), "lbs");
         if (unit.equals("kg")) {
             kgRadioButton.setChecked(true);
         } else {
@@ -135,17 +135,20 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
             return;
         }
 
-        if (dbHelper.updateUsername(username, newUsername)) {
-            // Update username in SharedPreferences as well
-            prefs.edit().putString("username", newUsername).apply();
-            username = newUsername;
-            Toast.makeText(this, "Username updated successfully.", Toast.LENGTH_SHORT).show();
-            // Hide the input field and reset the button text
-            usernameInputLayout.setVisibility(View.GONE);
-            changeUsernameButton.setText(R.string.change_username);
-        } else {
-            Toast.makeText(this, "Failed to update username. The username might already be taken.", Toast.LENGTH_LONG).show();
-        }
+        String oldUsername = username;
+        repository.execute(this, (db, signal) -> db.updateUsername(oldUsername, newUsername)).thenAccept(updated -> {
+            if (updated) {
+                // Update username in SharedPreferences as well
+                UserSession.rename(prefs, oldUsername, newUsername);
+                username = newUsername;
+                Toast.makeText(this, "Username updated successfully.", Toast.LENGTH_SHORT).show();
+                // Hide the input field and reset the button text
+                usernameInputLayout.setVisibility(View.GONE);
+                changeUsernameButton.setText(R.string.change_username);
+            } else {
+                Toast.makeText(this, "Failed to update username. The username might already be taken.", Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     /**
@@ -167,18 +170,20 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
         saveButton.setOnClickListener(v -> {
             String currentPassword = currentPasswordInput.getText().toString();
             String newPassword = newPasswordInput.getText().toString();
-
-            // Verify the current password before updating to the new one
-            if (dbHelper.checkUser(username, currentPassword)) {
-                if (dbHelper.updatePassword(username, newPassword)) {
+            String currentUsername = username;
+
+            // Verify the current password before updating to the new one. Null means it was wrong.
+            repository.execute(this, (db, signal) -> db.checkUser(currentUsername, currentPassword)
+                    ? Boolean.valueOf(db.updatePassword(currentUsername, newPassword)) : null).thenAccept(updated -> {
+                if (updated == null) {
+                    Toast.makeText(AccountActivity.this, "Incorrect current password.", Toast.LENGTH_SHORT).show();
+                } else if (updated) {
                     Toast.makeText(AccountActivity.this, "Password updated successfully.", Toast.LENGTH_SHORT).show();
                     dialog.dismiss();
                 } else {
                     Toast.makeText(AccountActivity.this, "Failed to update password.", Toast.LENGTH_SHORT).show();
                 }
-            } else {
-                Toast.makeText(AccountActivity.this, "Incorrect current password.", Toast.LENGTH_SHORT).show();
-            }
+            });
         });
 
         cancelButton.setOnClickListener(v -> dialog.dismiss());
@@ -193,10 +198,11 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
         new MaterialAlertDialogBuilder(this)
                 .setTitle("Delete All Weights?")
                 .setMessage("Are you sure you want to delete all of your saved weight entries? This action cannot be undone.")
-                .setPositiveButton("Delete", (dialog, which) -> {
-                    dbHelper.deleteAllWeightsForUser(username);
-                    Toast.makeText(AccountActivity.this, "All weights deleted.", Toast.LENGTH_SHORT).show();
-                })
+                .setPositiveButton("Delete", (dialog, which) -> repository.execute(this, (db, signal) -> {
+                    db.deleteAllWeightsForUser(UserSession.getUserId(db, prefs));
+                    return null;
+                }).thenAccept(ignored ->
+                        Toast.makeText(AccountActivity.this, "All weights deleted.", Toast.LENGTH_SHORT).show()))
                 .setNegativeButton("Cancel", null)
                 .show();
     }
@@ -205,7 +211,7 @@ public class AccountActivity extends AppCompatActivity implements View.OnClickLi
      * Logs the user out by clearing their username from shared preferences and returning to the main screen.
      */
     private void logout() {
-        prefs.edit().remove("username").apply();
+        UserSession.end(prefs);
         Intent intent = new Intent(AccountActivity.this, MainActivity.class);
         // Clear the activity stack so the user can't navigate back to the account screen
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -1,140 +1,973 @@
 package com.example.dailyweighttracker;
 
-import android.Manifest;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.content.pm.PackageManager;
+import android.content.pm.ApplicationInfo;
 import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.telephony.SmsManager;
+import android.os.CancellationSignal;
+import android.os.Looper;
 import android.util.Log;
-import android.widget.Toast;
 
-import androidx.core.content.ContextCompat;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "WeightTracker.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 12;
     private static final String TAG = "DatabaseHelper";
 
     // Weights Table
-    private static final String TABLE_WEIGHTS = "weights";
-    private static final String COLUMN_ID = "_id";
-    private static final String COLUMN_WEIGHT = "weight";
-    private static final String COLUMN_DATE = "date";
-    private static final String COLUMN_USER = "user";
+    static final String TABLE_WEIGHTS = "weights";
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_WEIGHT = "weight";
+    static final String COLUMN_DATE = "date";
+    static final String COLUMN_WEIGHT_USER_ID = "user_id";
+
+    // Covers the per-user, date-ordered lookups so they never scan or sort the table
+    static final String INDEX_WEIGHTS_USER_DATE = "idx_weights_user_date";
+
+    // Version 2 weights table, kept until its rows have been converted
+    static final String TABLE_WEIGHTS_LEGACY = "weights_legacy";
+    // Version 2 rows the conversion couldn't place, kept as they were stored with the reason
+    static final String TABLE_WEIGHTS_QUARANTINE = "weights_quarantine";
+    static final String COLUMN_QUARANTINE_REASON = "reason";
+    // Username column of the version 2 to 4 weights tables
+    static final String COLUMN_LEGACY_USER = "user";
+    // Version 3 and 4 weights table while it is re-keyed by user id
+    private static final String TABLE_WEIGHTS_BY_NAME = "weights_by_name";
 
     // Users Table
-    private static final String TABLE_USERS = "users";
-    private static final String COLUMN_USER_ID = "_id";
-    private static final String COLUMN_USERNAME = "username";
-    private static final String COLUMN_PASSWORD = "password";
+    static final String TABLE_USERS = "users";
+    static final String COLUMN_USER_ID = "_id";
+    static final String COLUMN_USERNAME = "username";
+    static final String COLUMN_PASSWORD = "password";
+
+    public static final String GUEST_USERNAME = WeightStore.GUEST_USERNAME;
+
+    // Goal events Table: an outbox of goal notifications, drained by GoalNotifier
+    static final String TABLE_GOAL_EVENTS = "goal_events";
+    static final String COLUMN_EVENT_ID = "_id";
+    static final String COLUMN_EVENT_USER_ID = "user_id";
+    static final String COLUMN_EVENT_GOAL = "goal";
+    static final String COLUMN_EVENT_WEIGHT = "weight";
+    static final String COLUMN_EVENT_UNIT = "unit";
+    static final String COLUMN_EVENT_CREATED = "created";
+    static final String COLUMN_EVENT_STATE = "state";
+    static final String COLUMN_EVENT_ATTEMPTS = "attempts";
+    static final String COLUMN_EVENT_NEXT_ATTEMPT = "next_attempt";
+    static final String INDEX_GOAL_EVENTS_STATE = "idx_goal_events_state";
+    // One pending or sent event per (user, goal); failed and superseded ones don't block a new one
+    static final String INDEX_GOAL_EVENTS_OPEN = "idx_goal_events_open";
+    // Version 7 to 10 goal events table while it is rebuilt
+    private static final String TABLE_GOAL_EVENTS_OLD = "goal_events_old";
+
+    // Rollups Table: per user, period (a WeightRollups.PERIOD_ constant) and bucket, maintained by WeightRollups
+    static final String TABLE_ROLLUPS = "weight_rollups";
+    static final String COLUMN_ROLLUP_USER_ID = "user_id";
+    static final String COLUMN_ROLLUP_PERIOD = "period";
+    static final String COLUMN_ROLLUP_BUCKET = "bucket";
+    static final String COLUMN_ROLLUP_COUNT = "count";
+    static final String COLUMN_ROLLUP_SUM = "sum";
+    static final String COLUMN_ROLLUP_MIN = "min";
+    static final String COLUMN_ROLLUP_MAX = "max";
+    static final String COLUMN_ROLLUP_FIRST_DATE = "first_date";
+    static final String COLUMN_ROLLUP_FIRST_WEIGHT = "first_weight";
+    static final String COLUMN_ROLLUP_LAST_DATE = "last_date";
+    static final String COLUMN_ROLLUP_LAST_WEIGHT = "last_weight";
+
+    // Sketches Table: a serialized WeightSketch per user per month, maintained by WeightSketches
+    static final String TABLE_SKETCHES = "weight_sketches";
+    static final String COLUMN_SKETCH_USER_ID = "user_id";
+    static final String COLUMN_SKETCH_MONTH = "month";
+    static final String COLUMN_SKETCH_DATA = "sketch";
+
+    // Archive Table: a user's entries of one old month as a WeightBlock, maintained by WeightArchive.
+    // The date and id bounds let reads and lookups by id skip blocks without decoding them.
+    static final String TABLE_ARCHIVE = "weight_archive";
+    static final String COLUMN_ARCHIVE_USER_ID = "user_id";
+    static final String COLUMN_ARCHIVE_MONTH = "month";
+    static final String COLUMN_ARCHIVE_FIRST_DATE = "first_date";
+    static final String COLUMN_ARCHIVE_LAST_DATE = "last_date";
+    static final String COLUMN_ARCHIVE_MIN_ID = "min_id";
+    static final String COLUMN_ARCHIVE_MAX_ID = "max_id";
+    static final String COLUMN_ARCHIVE_DATA = "data";
+    static final String INDEX_ARCHIVE_IDS = "idx_archive_ids";
+
+    // Queries and filters issued by this helper, shared with the query plan tests
+    static final String SQL_ALL_WEIGHTS = "SELECT " + COLUMN_ID + ", " + COLUMN_WEIGHT + ", " + COLUMN_DATE
+            + " FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_WEIGHT_USER_ID + " = ? ORDER BY " + COLUMN_DATE + ", " + COLUMN_ID;
+    static final String SQL_MOST_RECENT_WEIGHT = "SELECT * FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_WEIGHT_USER_ID + " = ?"
+            + " ORDER BY " + COLUMN_DATE + " DESC, " + COLUMN_ID + " DESC LIMIT 1";
+    // Keyset page of a user's entries after (date, _id), oldest first. The redundant date >= ? bounds
+    // the index range, since row values can't be compared on the SQLite versions minSdk ships with.
+    static final String SQL_WEIGHTS_AFTER = "SELECT " + COLUMN_ID + ", " + COLUMN_WEIGHT + ", " + COLUMN_DATE
+            + " FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_WEIGHT_USER_ID + " = ? AND " + COLUMN_DATE + " >= ?"
+            + " AND (" + COLUMN_DATE + " > ? OR " + COLUMN_ID + " > ?)"
+            + " ORDER BY " + COLUMN_DATE + ", " + COLUMN_ID + " LIMIT ?";
+    // A user's entries after one (date, _id) position up to and including another, oldest first
+    static final String SQL_WEIGHTS_BETWEEN = "SELECT " + COLUMN_ID + ", " + COLUMN_WEIGHT + ", " + COLUMN_DATE
+            + " FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_WEIGHT_USER_ID + " = ? AND " + COLUMN_DATE + " BETWEEN ? AND ?"
+            + " AND (" + COLUMN_DATE + " > ? OR " + COLUMN_ID + " > ?) AND (" + COLUMN_DATE + " < ? OR " + COLUMN_ID + " <= ?)"
+            + " ORDER BY " + COLUMN_DATE + ", " + COLUMN_ID;
+    static final String SQL_INSERT_WEIGHT = "INSERT INTO " + TABLE_WEIGHTS + " (" + COLUMN_WEIGHT + ", " + COLUMN_DATE
+            + ", " + COLUMN_WEIGHT_USER_ID + ") VALUES (?, ?, ?)";
+    static final String SQL_UPDATE_WEIGHT = "UPDATE " + TABLE_WEIGHTS + " SET " + COLUMN_WEIGHT + " = ? WHERE " + COLUMN_ID + " = ?";
+    static final String SQL_DELETE_WEIGHT = "DELETE FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_ID + " = ?";
+    static final String SQL_DELETE_WEIGHTS_FOR_USER = "DELETE FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_WEIGHT_USER_ID + " = ?";
+    static final String SQL_COUNT_WEIGHTS_AT = "SELECT COUNT(*) FROM " + TABLE_WEIGHTS
+            + " WHERE " + COLUMN_WEIGHT_USER_ID + " = ? AND " + COLUMN_DATE + " = ?";
+    static final String SQL_ENTRY_OWNER = "SELECT " + COLUMN_WEIGHT_USER_ID + ", " + COLUMN_DATE + ", " + COLUMN_WEIGHT
+            + " FROM " + TABLE_WEIGHTS
+            + " WHERE " + COLUMN_ID + " = ?";
+    // A user's buckets of one period in a range, oldest first, read along the primary key
+    static final String SQL_ROLLUPS = "SELECT " + COLUMN_ROLLUP_BUCKET + ", " + COLUMN_ROLLUP_COUNT + ", "
+            + COLUMN_ROLLUP_SUM + ", " + COLUMN_ROLLUP_MIN + ", " + COLUMN_ROLLUP_MAX + ", "
+            + COLUMN_ROLLUP_FIRST_DATE + ", " + COLUMN_ROLLUP_FIRST_WEIGHT + ", "
+            + COLUMN_ROLLUP_LAST_DATE + ", " + COLUMN_ROLLUP_LAST_WEIGHT + " FROM " + TABLE_ROLLUPS
+            + " WHERE " + COLUMN_ROLLUP_USER_ID + " = ? AND " + COLUMN_ROLLUP_PERIOD + " = ?"
+            + " AND " + COLUMN_ROLLUP_BUCKET + " BETWEEN ? AND ? ORDER BY " + COLUMN_ROLLUP_BUCKET;
+    static final String SQL_LATEST_WEIGHT = "SELECT " + COLUMN_WEIGHT + " FROM " + TABLE_WEIGHTS
+            + " WHERE " + COLUMN_WEIGHT_USER_ID + " = ? ORDER BY " + COLUMN_DATE + " DESC, " + COLUMN_ID + " DESC LIMIT 1";
+    // A user is told about each goal value once, however often they cross it, unless the last
+    // event for it failed or was superseded
+    static final String SQL_INSERT_GOAL_EVENT = "INSERT OR IGNORE INTO " + TABLE_GOAL_EVENTS + " ("
+            + COLUMN_EVENT_USER_ID + ", " + COLUMN_EVENT_GOAL + ", " + COLUMN_EVENT_WEIGHT + ", " + COLUMN_EVENT_UNIT + ", "
+            + COLUMN_EVENT_CREATED + ", " + COLUMN_EVENT_NEXT_ATTEMPT + ") VALUES (?, ?, ?, ?, ?, ?)";
+    static final String WHERE_USERNAME = COLUMN_USERNAME + " = ?";
+    static final String WHERE_USERNAME_PASSWORD = COLUMN_USERNAME + " = ?" + " AND " + COLUMN_PASSWORD + " = ?";
+
+    // Dates are stored as epoch milliseconds and shown in the format version 2 stored them in
+    public static final String DISPLAY_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    // Connection settings. NORMAL is durable across app crashes in WAL mode and only risks the last
+    // commits on power loss; a negative cache_size is in KiB rather than pages.
+    static final String DEFAULT_SYNCHRONOUS = "NORMAL";
+    static final int DEFAULT_CACHE_SIZE_KIB = 4096;
+    // Memory for cached user histories, about 200k entries
+    static final long DEFAULT_WEIGHT_CACHE_BYTES = 4L << 20;
+    // Age past which whole months of entries are moved to the archive, about two years
+    static final long DEFAULT_ARCHIVE_AGE_MILLIS = 730 * 86_400_000L;
+    // Least time between archive passes; a month ages out at most once a month anyway
+    static final long ARCHIVE_INTERVAL_MILLIS = 86_400_000L;
+
+    private static DatabaseHelper instance;
 
-    public static final String GUEST_USERNAME = "guest";
+    private final String synchronous;
+    private final int cacheSizeKib;
+    private final WeightCache weightCache;
+    private final WeightTrends trends;
+
+    /**
+     * Returns the helper shared by the whole process. It lives as long as the process and is
+     * never closed, so its connections and compiled statements are reused by every screen.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
 
     public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // Opens a database under a different name, used by tests and benchmarks
+    DatabaseHelper(Context context, String name) {
+        this(context, name, DEFAULT_SYNCHRONOUS, DEFAULT_CACHE_SIZE_KIB);
+    }
+
+    DatabaseHelper(Context context, String name, String synchronous, int cacheSizeKib) {
+        super(context, name, null, DATABASE_VERSION);
+        this.synchronous = synchronous;
+        this.cacheSizeKib = cacheSizeKib;
+        this.weightCache = new WeightCache(this, DEFAULT_WEIGHT_CACHE_BYTES);
+        this.trends = new WeightTrends(this);
+        // Lets readers use their own connections while a write transaction is open
+        setWriteAheadLoggingEnabled(true);
+        if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            mainThreadChecks = true;
+        }
+    }
+
+    // Debug builds fail fast on any query from the main thread; it goes through WeightRepository instead
+    private static volatile boolean mainThreadChecks;
+
+    static void setMainThreadChecksEnabled(boolean enabled) {
+        mainThreadChecks = enabled;
+    }
+
+    // Compiled write statements for the currently open database
+    private WeightStatements statements;
+    private WeightRollups rollups;
+    private WeightSketches sketches;
+    private WeightArchive archive;
+
+    // Tells the screens which tables this helper's writes have changed
+    private final TableChangeNotifier changeNotifier = new TableChangeNotifier();
+
+    // Runs on the primary connection, which handles every write and transaction, before onCreate/onUpgrade
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.execSQL("PRAGMA synchronous = " + synchronous);
+        db.execSQL("PRAGMA cache_size = " + -cacheSizeKib);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String CREATE_WEIGHTS_TABLE = "CREATE TABLE " + TABLE_WEIGHTS + "("
-                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + COLUMN_WEIGHT + " TEXT,"
-                + COLUMN_DATE + " TEXT,"
-                + COLUMN_USER + " TEXT" + ")";
-        db.execSQL(CREATE_WEIGHTS_TABLE);
-
         String CREATE_USERS_TABLE = "CREATE TABLE " + TABLE_USERS + "("
                 + COLUMN_USER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
                 + COLUMN_USERNAME + " TEXT UNIQUE,"
                 + COLUMN_PASSWORD + " TEXT" + ")";
         db.execSQL(CREATE_USERS_TABLE);
+        addGuestUser(db);
+
+        createWeightsTable(db);
+        createGoalEventsTable(db);
+        createRollupsTable(db);
+        createSketchesTable(db);
+        createArchiveTable(db);
+    }
+
+    // Weight is stored as REAL, date as epoch milliseconds and the owner by users._id
+    private void createWeightsTable(SQLiteDatabase db) {
+        String CREATE_WEIGHTS_TABLE = "CREATE TABLE " + TABLE_WEIGHTS + "("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + COLUMN_WEIGHT + " REAL,"
+                + COLUMN_DATE + " INTEGER,"
+                + COLUMN_WEIGHT_USER_ID + " INTEGER NOT NULL REFERENCES " + TABLE_USERS + "(" + COLUMN_USER_ID + ")" + ")";
+        db.execSQL(CREATE_WEIGHTS_TABLE);
+        createWeightIndices(db);
+    }
+
+    // _id comes right after date so (date, _id) ordering needs no sort; weight makes the index covering
+    private void createWeightIndices(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_WEIGHTS_USER_DATE + " ON " + TABLE_WEIGHTS
+                + "(" + COLUMN_WEIGHT_USER_ID + ", " + COLUMN_DATE + ", " + COLUMN_ID + ", " + COLUMN_WEIGHT + ")");
+    }
+
+    // State is one of GoalNotifier's STATE_ constants; pending events are looked up by state and due time
+    private void createGoalEventsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_GOAL_EVENTS + "("
+                + COLUMN_EVENT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + COLUMN_EVENT_USER_ID + " INTEGER NOT NULL REFERENCES " + TABLE_USERS + "(" + COLUMN_USER_ID + "),"
+                + COLUMN_EVENT_GOAL + " REAL NOT NULL,"
+                + COLUMN_EVENT_WEIGHT + " REAL NOT NULL,"
+                + COLUMN_EVENT_UNIT + " TEXT,"
+                + COLUMN_EVENT_CREATED + " INTEGER NOT NULL,"
+                + COLUMN_EVENT_STATE + " INTEGER NOT NULL DEFAULT " + GoalNotifier.STATE_PENDING + ","
+                + COLUMN_EVENT_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0,"
+                + COLUMN_EVENT_NEXT_ATTEMPT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + INDEX_GOAL_EVENTS_STATE + " ON " + TABLE_GOAL_EVENTS
+                + "(" + COLUMN_EVENT_STATE + ", " + COLUMN_EVENT_USER_ID + ")");
+        db.execSQL("CREATE UNIQUE INDEX " + INDEX_GOAL_EVENTS_OPEN + " ON " + TABLE_GOAL_EVENTS
+                + "(" + COLUMN_EVENT_USER_ID + ", " + COLUMN_EVENT_GOAL + ")"
+                + " WHERE " + COLUMN_EVENT_STATE + " IN (" + GoalNotifier.STATE_PENDING + ", " + GoalNotifier.STATE_SENT + ")");
+    }
+
+    // One row per bucket, keyed so a user's buckets of one period are read in order without a rowid lookup
+    private void createRollupsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ROLLUPS + "("
+                + COLUMN_ROLLUP_USER_ID + " INTEGER NOT NULL,"
+                + COLUMN_ROLLUP_PERIOD + " INTEGER NOT NULL,"
+                + COLUMN_ROLLUP_BUCKET + " INTEGER NOT NULL,"
+                + COLUMN_ROLLUP_COUNT + " INTEGER NOT NULL,"
+                + COLUMN_ROLLUP_SUM + " REAL NOT NULL,"
+                + COLUMN_ROLLUP_MIN + " REAL NOT NULL,"
+                + COLUMN_ROLLUP_MAX + " REAL NOT NULL,"
+                + COLUMN_ROLLUP_FIRST_DATE + " INTEGER NOT NULL,"
+                + COLUMN_ROLLUP_FIRST_WEIGHT + " REAL NOT NULL,"
+                + COLUMN_ROLLUP_LAST_DATE + " INTEGER NOT NULL,"
+                + COLUMN_ROLLUP_LAST_WEIGHT + " REAL NOT NULL,"
+                + "PRIMARY KEY (" + COLUMN_ROLLUP_USER_ID + ", " + COLUMN_ROLLUP_PERIOD + ", " + COLUMN_ROLLUP_BUCKET + ")"
+                + ") WITHOUT ROWID");
+    }
+
+    private void createSketchesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SKETCHES + "("
+                + COLUMN_SKETCH_USER_ID + " INTEGER NOT NULL,"
+                + COLUMN_SKETCH_MONTH + " INTEGER NOT NULL,"
+                + COLUMN_SKETCH_DATA + " BLOB NOT NULL,"
+                + "PRIMARY KEY (" + COLUMN_SKETCH_USER_ID + ", " + COLUMN_SKETCH_MONTH + ")"
+                + ") WITHOUT ROWID");
+    }
+
+    private void createArchiveTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ARCHIVE + "("
+                + COLUMN_ARCHIVE_USER_ID + " INTEGER NOT NULL,"
+                + COLUMN_ARCHIVE_MONTH + " INTEGER NOT NULL,"
+                + COLUMN_ARCHIVE_FIRST_DATE + " INTEGER NOT NULL,"
+                + COLUMN_ARCHIVE_LAST_DATE + " INTEGER NOT NULL,"
+                + COLUMN_ARCHIVE_MIN_ID + " INTEGER NOT NULL,"
+                + COLUMN_ARCHIVE_MAX_ID + " INTEGER NOT NULL,"
+                + COLUMN_ARCHIVE_DATA + " BLOB NOT NULL,"
+                + "PRIMARY KEY (" + COLUMN_ARCHIVE_USER_ID + ", " + COLUMN_ARCHIVE_MONTH + ")"
+                + ") WITHOUT ROWID");
+        createArchiveIndices(db);
+    }
+
+    // Finding the blocks whose id range holds an id reads this index, not every block's data
+    private void createArchiveIndices(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_ARCHIVE_IDS + " ON " + TABLE_ARCHIVE
+                + "(" + COLUMN_ARCHIVE_MIN_ID + ", " + COLUMN_ARCHIVE_MAX_ID + ")");
+    }
+
+    // Guest entries are owned by a users row like everyone else's. It has no password, so it can't be logged into.
+    private void addGuestUser(SQLiteDatabase db) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_USERS + " (" + COLUMN_USERNAME + ") VALUES (?)",
+                new Object[]{GUEST_USERNAME});
+    }
+
+    /**
+     * Creates a password-less users row for every username in the given table that has none, so
+     * entries recorded under a name that was later changed keep an owner.
+     */
+    static void addUsersForLegacyNames(SQLiteDatabase db, String table) {
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_USERS + " (" + COLUMN_USERNAME + ")"
+                + " SELECT DISTINCT " + COLUMN_LEGACY_USER + " FROM " + table
+                + " WHERE " + COLUMN_LEGACY_USER + " IS NOT NULL");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_WEIGHTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+        if (oldVersion < 5) {
+            addGuestUser(db);
+        }
+        if (oldVersion < 3) {
+            // Versions 1 and 2 stored weight and date as TEXT. The old rows are set aside here and
+            // converted in batches from onOpen, outside of the single upgrade transaction.
+            db.execSQL("ALTER TABLE " + TABLE_WEIGHTS + " RENAME TO " + TABLE_WEIGHTS_LEGACY);
+            createWeightsTable(db);
+        } else if (oldVersion < 5) {
+            // Versions 3 and 4 already had typed columns but were keyed by username
+            db.execSQL("ALTER TABLE " + TABLE_WEIGHTS + " RENAME TO " + TABLE_WEIGHTS_BY_NAME);
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_WEIGHTS_USER_DATE);
+            addUsersForLegacyNames(db, TABLE_WEIGHTS_BY_NAME);
+            createWeightsTable(db);
+            db.execSQL("INSERT INTO " + TABLE_WEIGHTS + " (" + COLUMN_ID + ", " + COLUMN_WEIGHT + ", "
+                    + COLUMN_DATE + ", " + COLUMN_WEIGHT_USER_ID + ")"
+                    + " SELECT w." + COLUMN_ID + ", w." + COLUMN_WEIGHT + ", w." + COLUMN_DATE + ", u." + COLUMN_USER_ID
+                    + " FROM " + TABLE_WEIGHTS_BY_NAME + " w JOIN " + TABLE_USERS + " u"
+                    + " ON u." + COLUMN_USERNAME + " = w." + COLUMN_LEGACY_USER);
+            db.execSQL("DROP TABLE " + TABLE_WEIGHTS_BY_NAME);
+        } else if (oldVersion < 6) {
+            // Version 5's index had weight before _id, which left keyset pages to a sort
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_WEIGHTS_USER_DATE);
+            createWeightIndices(db);
+        }
+        if (oldVersion < 7) {
+            createGoalEventsTable(db);
+        }
+        if (oldVersion < 8) {
+            createRollupsTable(db);
+            WeightRollups rollups = new WeightRollups(db);
+            try {
+                rollups.rebuild();
+            } finally {
+                rollups.close();
+            }
+        }
+        if (oldVersion < 9) {
+            createSketchesTable(db);
+            WeightSketches sketches = new WeightSketches(db);
+            try {
+                sketches.rebuild();
+            } finally {
+                sketches.close();
+            }
+        }
+        if (oldVersion < 10) {
+            createArchiveTable(db);
+        }
+        if (oldVersion < 11 && oldVersion >= 7) {
+            // Versions 7 to 10 made (user, goal) unique across every state, so a failed goal
+            // could never be sent again. Rows are copied as they are; they were unique already.
+            db.execSQL("DROP INDEX " + INDEX_GOAL_EVENTS_STATE);
+            db.execSQL("ALTER TABLE " + TABLE_GOAL_EVENTS + " RENAME TO " + TABLE_GOAL_EVENTS_OLD);
+            createGoalEventsTable(db);
+            db.execSQL("INSERT INTO " + TABLE_GOAL_EVENTS + " SELECT * FROM " + TABLE_GOAL_EVENTS_OLD);
+            db.execSQL("DROP TABLE " + TABLE_GOAL_EVENTS_OLD);
+        }
+        if (oldVersion < 12) {
+            createArchiveIndices(db);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // Finishes a pending or interrupted conversion of version 2 rows
+        if (!db.isReadOnly()
+                && WeightMigration.migrateLegacyWeights(db, WeightMigration.DEFAULT_BATCH_SIZE) > 0) {
+            // The converted rows were copied in behind the rollups' back. The helper is still
+            // opening, so its own maintainers can't be used yet.
+            WeightRollups rollups = new WeightRollups(db);
+            WeightSketches sketches = new WeightSketches(db);
+            try {
+                rebuildRollups(db, rollups, sketches);
+            } finally {
+                rollups.close();
+                sketches.close();
+            }
+        }
+    }
+
+    @Override
+    public SQLiteDatabase getWritableDatabase() {
+        checkNotMainThread();
+        return super.getWritableDatabase();
     }
 
-    public void addWeight(Context context, double weight, SharedPreferences prefs) {
+    @Override
+    public SQLiteDatabase getReadableDatabase() {
+        checkNotMainThread();
+        return super.getReadableDatabase();
+    }
+
+    private static void checkNotMainThread() {
+        if (mainThreadChecks && Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("Database accessed on the main thread");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (statements != null) {
+            statements.close();
+            statements = null;
+        }
+        if (rollups != null) {
+            rollups.close();
+            rollups = null;
+        }
+        if (sketches != null) {
+            sketches.close();
+            sketches = null;
+        }
+        if (archive != null) {
+            archive.close();
+            archive = null;
+        }
+        super.close();
+    }
+
+    // Returns the compiled statements, compiling them again if the database was reopened
+    synchronized WeightStatements getStatements() {
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_WEIGHT, weight);
-        values.put(COLUMN_DATE, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date()));
-        String username = getCurrentUsername(prefs);
-        values.put(COLUMN_USER, username);
-        db.insert(TABLE_WEIGHTS, null, values);
-
-        String goalWeightKey = "goal_weight_" + username;
-        double goalWeight = prefs.getFloat(goalWeightKey, 0);
-
-        String unitKey = "unit_" + username;
-        String unit = prefs.getString(unitKey, "lbs");
-
-        if (goalWeight > 0 && weight == goalWeight) {
-            if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) == PackageManager.PERMISSION_GRANTED) {
-                String phoneNumber = prefs.getString("phone_number", null);
-                if (phoneNumber != null && !phoneNumber.isEmpty()) {
-                    try {
-                        SmsManager smsManager = context.getSystemService(SmsManager.class);
-                        smsManager.sendTextMessage(phoneNumber, null, "Congratulations! You've reached your goal weight of " + goalWeight + " " + unit + "!", null, null);
-                        Toast.makeText(context, "Goal reached! SMS sent.", Toast.LENGTH_LONG).show();
-                    } catch (Exception e) {
-                        Toast.makeText(context, "Failed to send SMS.", Toast.LENGTH_SHORT).show();
-                        Log.e(TAG, "Failed to send SMS", e);
-                    }
-                } else {
-                    // Only show this toast if the user is not a guest
-                    if (!GUEST_USERNAME.equals(username)) {
-                        Toast.makeText(context, "No phone number set for SMS notifications.", Toast.LENGTH_SHORT).show();
+        if (statements == null || !statements.isFor(db)) {
+            statements = new WeightStatements(db);
+        }
+        return statements;
+    }
+
+    // Returns the rollups maintainer, compiling it again if the database was reopened
+    synchronized WeightRollups getRollups() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        if (rollups == null || !rollups.isFor(db)) {
+            rollups = new WeightRollups(db);
+        }
+        return rollups;
+    }
+
+    // Returns the sketches maintainer, compiling it again if the database was reopened
+    synchronized WeightSketches getSketches() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        if (sketches == null || !sketches.isFor(db)) {
+            sketches = new WeightSketches(db);
+        }
+        return sketches;
+    }
+
+    // Returns the archive maintainer, compiling it again if the database was reopened
+    synchronized WeightArchive getArchive() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        if (archive == null || !archive.isFor(db)) {
+            archive = new WeightArchive(db);
+        }
+        return archive;
+    }
+
+    /**
+     * Recomputes every rollup and sketch from the weights, for databases whose rollups are missing
+     * or were written in another time zone. Archived entries are restored to the weights table
+     * first; the next {@link #archiveWeightsOlderThan(long)} archives them again.
+     *
+     * @return the number of entries read
+     */
+    public int rebuildRollups() {
+        WeightArchive archive = getArchive();
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            archive.restoreAll();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        int entries = rebuildRollups(db, getRollups(), getSketches());
+        changeNotifier.notifyChanged(TABLE_ROLLUPS, TABLE_SKETCHES);
+        return entries;
+    }
+
+    /**
+     * Moves each user's entries from whole months older than {@code ageMillis} into the archive
+     * table, compressed one block per month. Entries within {@link WeightTrends#HORIZON_DAYS} of a
+     * user's latest stay live. Reads return archived entries as before.
+     *
+     * @return the number of entries archived
+     */
+    public int archiveWeightsOlderThan(long ageMillis) {
+        WeightArchive archive = getArchive();
+        SQLiteDatabase db = this.getWritableDatabase();
+        int archived;
+        db.beginTransaction();
+        try {
+            archived = archive.archive(System.currentTimeMillis() - ageMillis);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (archived > 0) {
+            // A read running alongside may have seen the entries in both tables, or in neither
+            changeNotifier.notifyChanged(TABLE_WEIGHTS);
+        }
+        return archived;
+    }
+
+    private static int rebuildRollups(SQLiteDatabase db, WeightRollups rollups, WeightSketches sketches) {
+        db.beginTransaction();
+        try {
+            int entries = rollups.rebuild();
+            sketches.rebuild();
+            db.setTransactionSuccessful();
+            return entries;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Looks up an entry's user and date into owner and returns its weight, or NaN if there is no such
+    // entry. An archived entry's month, and those around it, are restored first so it can be changed.
+    private static double findEntry(SQLiteDatabase db, WeightArchive archive, long id, long[] owner) {
+        double weight = findLiveEntry(db, id, owner);
+        if (Double.isNaN(weight) && archive.restoreId(id)) {
+            weight = findLiveEntry(db, id, owner);
+        }
+        if (!Double.isNaN(weight)) {
+            archive.restoreAround(owner[0], owner[1]);
+        }
+        return weight;
+    }
+
+    private static double findLiveEntry(SQLiteDatabase db, long id, long[] owner) {
+        try (Cursor cursor = db.rawQuery(SQL_ENTRY_OWNER, new String[]{String.valueOf(id)})) {
+            if (!cursor.moveToFirst()) {
+                return Double.NaN;
+            }
+            owner[0] = cursor.getLong(0);
+            owner[1] = cursor.getLong(1);
+            return cursor.getDouble(2);
+        }
+    }
+
+    /**
+     * Registers an observer to be told, once per frame on the main thread, which tables this
+     * helper has written. Writes made inside a caller's transaction are reported when the method
+     * that made them returns, which may be before the caller commits.
+     */
+    public void addTableObserver(TableChangeNotifier.Observer observer) {
+        changeNotifier.addObserver(observer);
+    }
+
+    public void removeTableObserver(TableChangeNotifier.Observer observer) {
+        changeNotifier.removeObserver(observer);
+    }
+
+    // Reports writes made outside this helper's own methods, such as through getStatements()
+    void notifyTablesChanged(String... tables) {
+        changeNotifier.notifyChanged(tables);
+    }
+
+    // In-memory user histories, kept in step by the write methods below. Writers that go through
+    // getStatements() must invalidate the users they touch.
+    WeightCache getWeightCache() {
+        return weightCache;
+    }
+
+    // Running trend state, kept in step like the weight cache
+    WeightTrends getTrends() {
+        return trends;
+    }
+
+    // Records a weight for a user now. Returns the new row id.
+    public long addWeight(long userId, double weight) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        long id;
+        db.beginTransaction();
+        try {
+            id = statements.insert(userId, weight, now);
+            rollups.onInserted(userId, now, weight);
+            sketches.onInserted(userId, now, weight);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        weightCache.onInserted(userId, id, now, weight);
+        trends.onInserted(userId, id, now, weight);
+        changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES);
+        return id;
+    }
+    /**
+     * Records a weight for a user now and, in the same transaction, queues a goal event if it
+     * reaches the user's goal. Wake {@link GoalNotifier} afterwards to send it.
+     *
+     * @param goalWeight the user's goal, or 0 if they have none
+     * @param unit       the unit the goal is in, for the notification text
+     * @return the new row id
+     */
+    public long addWeight(long userId, double weight, double goalWeight, String unit) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        long id;
+        db.beginTransaction();
+        try {
+            double previous = Double.NaN;
+            if (goalWeight > 0) {
+                try (Cursor cursor = db.rawQuery(SQL_LATEST_WEIGHT, new String[]{String.valueOf(userId)})) {
+                    if (cursor.moveToFirst()) {
+                        previous = cursor.getDouble(0);
                     }
                 }
-            } else {
-                // Only show this toast if the user is not a guest
-                if (!GUEST_USERNAME.equals(username)) {
-                    Toast.makeText(context, "SMS permission not granted.", Toast.LENGTH_SHORT).show();
-                }
             }
+            id = statements.insert(userId, weight, now);
+            rollups.onInserted(userId, now, weight);
+            sketches.onInserted(userId, now, weight);
+            if (goalWeight > 0 && GoalNotifier.reachesGoal(previous, weight, goalWeight)) {
+                db.execSQL(SQL_INSERT_GOAL_EVENT, new Object[]{userId, goalWeight, weight, unit, now, now});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
+        weightCache.onInserted(userId, id, now, weight);
+        trends.onInserted(userId, id, now, weight);
+        changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES, TABLE_GOAL_EVENTS);
+        return id;
     }
     // Delete weight by ID
-    public void deleteWeight(long id) {
+    public boolean deleteWeight(long id) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        WeightArchive archive = getArchive();
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_WEIGHTS, COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+        long[] owner = new long[2];
+        boolean deleted = false;
+        db.beginTransaction();
+        try {
+            double oldWeight = findEntry(db, archive, id, owner);
+            if (!Double.isNaN(oldWeight)) {
+                deleted = statements.delete(id) > 0;
+                rollups.recompute(owner[0], owner[1]);
+                sketches.onDeleted(owner[0], owner[1], oldWeight);
+                archive.keepRecentLive(owner[0]);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (deleted) {
+            weightCache.onDeleted(owner[0], id, owner[1]);
+            trends.onChanged(owner[0], owner[1]);
+            changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES);
+        }
+        return deleted;
     }
     // Delete all weights for a user
-    public void deleteAllWeightsForUser(String username) {
+    public void deleteAllWeightsForUser(long userId) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        WeightArchive archive = getArchive();
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_WEIGHTS, COLUMN_USER + " = ?", new String[]{username});
+        db.beginTransaction();
+        try {
+            statements.deleteForUser(userId);
+            rollups.deleteUser(userId);
+            sketches.deleteUser(userId);
+            archive.deleteUser(userId);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        weightCache.invalidate(userId);
+        trends.invalidate(userId);
+        changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES);
     }
     // Update weight by ID
-    public void updateWeight(long id, float weight) {
+    public boolean updateWeight(long id, double weight) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        WeightArchive archive = getArchive();
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_WEIGHT, weight);
-        int rows = db.update(TABLE_WEIGHTS, values, COLUMN_ID + " = ?", new String[]{String.valueOf(id)});
+        long[] owner = new long[2];
+        boolean updated = false;
+        db.beginTransaction();
+        try {
+            double oldWeight = findEntry(db, archive, id, owner);
+            if (!Double.isNaN(oldWeight)) {
+                updated = statements.update(id, weight) > 0;
+                rollups.recompute(owner[0], owner[1]);
+                sketches.onUpdated(owner[0], owner[1], oldWeight, weight);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (updated) {
+            weightCache.onUpdated(owner[0], id, owner[1], weight);
+            trends.onChanged(owner[0], owner[1]);
+            changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES);
+        }
+        return updated;
+    }
+    /**
+     * Inserts all entries for a user in a single transaction. The entries' ids are ignored.
+     *
+     * @return the new row id of each entry, in order, or -1 for an entry that could not be inserted
+     */
+    public long[] addWeights(long userId, List<WeightEntry> entries) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        SQLiteDatabase db = this.getWritableDatabase();
+        long[] ids = new long[entries.size()];
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                WeightEntry entry = entries.get(i);
+                try {
+                    ids[i] = statements.insert(userId, entry.getWeight(), entry.getDate());
+                    rollups.onInserted(userId, entry.getDate(), entry.getWeight());
+                    sketches.onInserted(userId, entry.getDate(), entry.getWeight());
+                } catch (SQLException e) {
+                    Log.w(TAG, "Failed to insert " + entry, e);
+                    ids[i] = -1;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // Reloaded on next use rather than inserted into one entry at a time
+        weightCache.invalidate(userId);
+        trends.invalidate(userId);
+        changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES);
+        return ids;
+    }
+    /**
+     * Sets the weight of every entry, matched by id, in a single transaction.
+     *
+     * @return for each entry, in order, whether a row was updated
+     */
+    public boolean[] updateWeights(List<WeightEntry> entries) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        WeightArchive archive = getArchive();
+        SQLiteDatabase db = this.getWritableDatabase();
+        boolean[] updated = new boolean[entries.size()];
+        long[] owners = new long[2 * updated.length];
+        long[] owner = new long[2];
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < updated.length; i++) {
+                WeightEntry entry = entries.get(i);
+                double oldWeight = findEntry(db, archive, entry.getId(), owner);
+                if (!Double.isNaN(oldWeight)) {
+                    updated[i] = statements.update(entry.getId(), entry.getWeight()) > 0;
+                    rollups.recompute(owner[0], owner[1]);
+                    sketches.onUpdated(owner[0], owner[1], oldWeight, entry.getWeight());
+                    owners[2 * i] = owner[0];
+                    owners[2 * i + 1] = owner[1];
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // Finding each id among the cached histories would scan them all
+        weightCache.invalidateAll();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i]) {
+                trends.onChanged(owners[2 * i], owners[2 * i + 1]);
+            }
+        }
+        changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES);
+        return updated;
+    }
+    /**
+     * Deletes every given id in a single transaction.
+     *
+     * @return for each id, in order, whether a row was deleted
+     */
+    public boolean[] deleteWeights(long[] ids) {
+        WeightStatements statements = getStatements();
+        WeightRollups rollups = getRollups();
+        WeightSketches sketches = getSketches();
+        WeightArchive archive = getArchive();
+        SQLiteDatabase db = this.getWritableDatabase();
+        boolean[] deleted = new boolean[ids.length];
+        long[] owners = new long[2 * ids.length];
+        long[] owner = new long[2];
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                double oldWeight = findEntry(db, archive, ids[i], owner);
+                if (!Double.isNaN(oldWeight)) {
+                    deleted[i] = statements.delete(ids[i]) > 0;
+                    rollups.recompute(owner[0], owner[1]);
+                    sketches.onDeleted(owner[0], owner[1], oldWeight);
+                    archive.keepRecentLive(owner[0]);
+                    owners[2 * i] = owner[0];
+                    owners[2 * i + 1] = owner[1];
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        weightCache.invalidateAll();
+        for (int i = 0; i < ids.length; i++) {
+            if (deleted[i]) {
+                trends.onChanged(owners[2 * i], owners[2 * i + 1]);
+            }
+        }
+        changeNotifier.notifyChanged(TABLE_WEIGHTS, TABLE_ROLLUPS, TABLE_SKETCHES);
+        return deleted;
+    }
+    // Get all weights for a user, archived ones included
+    public Cursor getAllWeights(long userId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor live = db.rawQuery(SQL_ALL_WEIGHTS, new String[]{String.valueOf(userId)});
+        if (!WeightArchive.hasBlocks(db, userId)) {
+            return live;
+        }
+        return withArchived(live, WeightArchive.read(db, userId, Long.MIN_VALUE, Long.MIN_VALUE,
+                Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE), Integer.MAX_VALUE);
     }
-    // Get all weights for a user
-    public Cursor getAllWeights(SharedPreferences prefs) {
+    /**
+     * Returns up to {@code limit} of a user's entries recorded after the given (date, id) position,
+     * oldest first. Pass {@code Long.MIN_VALUE} for both to start at the beginning.
+     */
+    public Cursor getWeightsAfter(long userId, long afterDate, long afterId, int limit, CancellationSignal signal) {
         SQLiteDatabase db = this.getReadableDatabase();
-        String username = getCurrentUsername(prefs);
-        return db.rawQuery("SELECT " + COLUMN_ID + " as _id, " + COLUMN_WEIGHT + ", " + COLUMN_DATE + " FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_USER + " = ?", new String[]{username});
+        String date = String.valueOf(afterDate);
+        Cursor live = db.rawQuery(SQL_WEIGHTS_AFTER, new String[]{String.valueOf(userId), date, date,
+                String.valueOf(afterId), String.valueOf(limit)}, signal);
+        if (!WeightArchive.hasBlocks(db, userId)) {
+            return live;
+        }
+        return withArchived(live, WeightArchive.read(db, userId, afterDate, afterId,
+                Long.MAX_VALUE, Long.MAX_VALUE, limit), limit);
+    }
+    /**
+     * Returns a user's entries after the (afterDate, afterId) position up to and including the
+     * (toDate, toId) position, oldest first.
+     */
+    public Cursor getWeightsBetween(long userId, long afterDate, long afterId, long toDate, long toId,
+                                    CancellationSignal signal) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String from = String.valueOf(afterDate);
+        String to = String.valueOf(toDate);
+        Cursor live = db.rawQuery(SQL_WEIGHTS_BETWEEN, new String[]{String.valueOf(userId), from, to, from,
+                String.valueOf(afterId), to, String.valueOf(toId)}, signal);
+        if (!WeightArchive.hasBlocks(db, userId)) {
+            return live;
+        }
+        return withArchived(live, WeightArchive.read(db, userId, afterDate, afterId, toDate, toId,
+                Integer.MAX_VALUE), Integer.MAX_VALUE);
+    }
+
+    // Merges archived entries into live (_id, weight, date) rows, both oldest first, keeping the first limit
+    private static Cursor withArchived(Cursor live, WeightArchive.Entries archived, int limit) {
+        MatrixCursor merged = new MatrixCursor(new String[]{COLUMN_ID, COLUMN_WEIGHT, COLUMN_DATE},
+                (int) Math.min(limit, (long) live.getCount() + archived.size));
+        try {
+            int next = 0;
+            while (merged.getCount() < limit && live.moveToNext()) {
+                long id = live.getLong(0);
+                long date = live.getLong(2);
+                while (merged.getCount() < limit && next < archived.size && (archived.dates[next] < date
+                        || (archived.dates[next] == date && archived.ids[next] < id))) {
+                    merged.addRow(new Object[]{archived.ids[next], archived.weights[next], archived.dates[next]});
+                    next++;
+                }
+                if (merged.getCount() < limit) {
+                    merged.addRow(new Object[]{id, live.getDouble(1), date});
+                }
+            }
+            while (merged.getCount() < limit && next < archived.size) {
+                merged.addRow(new Object[]{archived.ids[next], archived.weights[next], archived.dates[next]});
+                next++;
+            }
+        } finally {
+            live.close();
+        }
+        return merged;
+    }
+    /**
+     * Returns a user's rollups of one period, oldest first, with the columns of {@link #SQL_ROLLUPS}.
+     * Buckets are numbered as by {@link WeightRollups#bucketOf(int, long, java.util.TimeZone)};
+     * buckets without entries have no row.
+     *
+     * @param period one of the {@code WeightRollups.PERIOD_} constants
+     */
+    public Cursor getRollups(long userId, int period, long fromBucket, long toBucket) {
+        return this.getReadableDatabase().rawQuery(SQL_ROLLUPS, new String[]{String.valueOf(userId),
+                String.valueOf(period), String.valueOf(fromBucket), String.valueOf(toBucket)});
+    }
+    /**
+     * Returns a user's moving averages, trend and slope as of their latest entry, or null if they
+     * have none.
+     */
+    public WeightTrend getTrend(long userId) {
+        return trends.get(userId);
+    }
+    /**
+     * Returns a sketch of a user's weights dated from {@code fromDate} to {@code toDate}
+     * inclusive, for percentiles and histograms over the range. Whole months come from their
+     * stored sketches; only the entries of partial months at either end are read.
+     */
+    public WeightSketch getWeightSketch(long userId, long fromDate, long toDate) {
+        return getSketches().query(userId, fromDate, toDate);
+    }
+    /**
+     * Returns a user's most recent entry, or null if they have none. Served from memory once the
+     * user's history has been loaded.
+     */
+    public WeightEntry getLatestWeight(long userId) {
+        return weightCache.getLatest(userId);
     }
     // Get most recent weight for a user
-    public Cursor getMostRecentWeight(SharedPreferences prefs) {
+    public Cursor getMostRecentWeight(long userId) {
         SQLiteDatabase db = this.getReadableDatabase();
-        String username = getCurrentUsername(prefs);
-        return db.rawQuery("SELECT * FROM " + TABLE_WEIGHTS + " WHERE " + COLUMN_USER + " = ?" + " ORDER BY " + COLUMN_DATE + " DESC LIMIT 1", new String[]{username});
+        return db.rawQuery(SQL_MOST_RECENT_WEIGHT, new String[]{String.valueOf(userId)});
     }
     // Add a new user
     public boolean addUser(String username, String password) {
@@ -143,15 +976,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_USERNAME, username);
         values.put(COLUMN_PASSWORD, password);
         long result = db.insert(TABLE_USERS, null, values);
+        if (result != -1) {
+            changeNotifier.notifyChanged(TABLE_USERS);
+        }
         return result != -1;
     }
     // Check if username & password combo exists
     public boolean checkUser(String username, String password) {
         SQLiteDatabase db = this.getReadableDatabase();
         String[] columns = {COLUMN_USER_ID};
-        String selection = COLUMN_USERNAME + " = ?" + " AND " + COLUMN_PASSWORD + " = ?";
         String[] selectionArgs = {username, password};
-        Cursor cursor = db.query(TABLE_USERS, columns, selection, selectionArgs, null, null, null);
+        Cursor cursor = db.query(TABLE_USERS, columns, WHERE_USERNAME_PASSWORD, selectionArgs, null, null, null);
         int count = cursor.getCount();
         cursor.close();
         return count > 0;
@@ -160,19 +995,37 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public boolean checkUserExists(String username) {
         SQLiteDatabase db = this.getReadableDatabase();
         String[] columns = {COLUMN_USER_ID};
-        String selection = COLUMN_USERNAME + " = ?";
         String[] selectionArgs = {username};
-        Cursor cursor = db.query(TABLE_USERS, columns, selection, selectionArgs, null, null, null);
+        Cursor cursor = db.query(TABLE_USERS, columns, WHERE_USERNAME, selectionArgs, null, null, null);
         int count = cursor.getCount();
         cursor.close();
         return count > 0;
     }
-    // Updates username
+    // Get the id of a user, or -1 if there is none
+    public long getUserId(String username) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String[] columns = {COLUMN_USER_ID};
+        String[] selectionArgs = {username};
+        Cursor cursor = db.query(TABLE_USERS, columns, WHERE_USERNAME, selectionArgs, null, null, null);
+        long id = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        return id;
+    }
+    // Updates username. Weights are keyed by user id, so they stay with the renamed user.
     public boolean updateUsername(String oldUsername, String newUsername) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(COLUMN_USERNAME, newUsername);
-        int rows = db.update(TABLE_USERS, values, COLUMN_USERNAME + " = ?", new String[]{oldUsername});
+        int rows;
+        try {
+            rows = db.update(TABLE_USERS, values, WHERE_USERNAME, new String[]{oldUsername});
+        } catch (SQLiteConstraintException e) {
+            // The new name is taken
+            return false;
+        }
+        if (rows > 0) {
+            changeNotifier.notifyChanged(TABLE_USERS);
+        }
         return rows > 0;
     }
     // Updates Password
@@ -180,7 +1033,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(COLUMN_PASSWORD, newPassword);
-        int rows = db.update(TABLE_USERS, values, COLUMN_USERNAME + " = ?", new String[]{username});
+        int rows = db.update(TABLE_USERS, values, WHERE_USERNAME, new String[]{username});
+        if (rows > 0) {
+            changeNotifier.notifyChanged(TABLE_USERS);
+        }
         return rows > 0;
     }
     // Get current username
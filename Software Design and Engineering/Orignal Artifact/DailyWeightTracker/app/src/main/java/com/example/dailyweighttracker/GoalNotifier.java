@@ -0,0 +1,253 @@
+package com.example.dailyweighttracker;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.telephony.SmsManager;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends the goal notifications queued in the goal events table.
+ * {@link DatabaseHelper#addWeight(long, double, double, String)} writes an event in the same
+ * transaction as the weight, so nothing is lost if the process dies before it is sent; the next
+ * {@link #wake()} picks it up. Events are sent on a background thread. Only the newest pending
+ * event of each user is sent, failed sends are retried with exponential backoff, and a unique
+ * index over pending and sent events keeps a user from being told about the same goal twice.
+ * A goal whose event failed or was superseded can be queued again.
+ */
+public final class GoalNotifier {
+
+    private static final String TAG = "GoalNotifier";
+
+    // Values of the goal events table's state column
+    static final int STATE_PENDING = 0;
+    static final int STATE_SENT = 1;
+    static final int STATE_SUPERSEDED = 2;
+    static final int STATE_FAILED = 3;
+
+    // Weights are shown to one decimal place, so anything that displays as the goal reaches it
+    static final double TOLERANCE = 0.05;
+    static final int MAX_ATTEMPTS = 6;
+    static final long BASE_BACKOFF_MILLIS = 30_000;
+    static final long MAX_BACKOFF_MILLIS = 60 * 60_000;
+
+    // Newest first within each user, read backwards along the (state, user_id) index
+    static final String SQL_PENDING_EVENTS = "SELECT e." + DatabaseHelper.COLUMN_EVENT_ID
+            + ", e." + DatabaseHelper.COLUMN_EVENT_USER_ID + ", u." + DatabaseHelper.COLUMN_USERNAME
+            + ", e." + DatabaseHelper.COLUMN_EVENT_GOAL + ", e." + DatabaseHelper.COLUMN_EVENT_UNIT
+            + ", e." + DatabaseHelper.COLUMN_EVENT_ATTEMPTS + ", e." + DatabaseHelper.COLUMN_EVENT_NEXT_ATTEMPT
+            + " FROM " + DatabaseHelper.TABLE_GOAL_EVENTS + " e JOIN " + DatabaseHelper.TABLE_USERS + " u"
+            + " ON u." + DatabaseHelper.COLUMN_USER_ID + " = e." + DatabaseHelper.COLUMN_EVENT_USER_ID
+            + " WHERE e." + DatabaseHelper.COLUMN_EVENT_STATE + " = " + STATE_PENDING
+            + " ORDER BY e." + DatabaseHelper.COLUMN_EVENT_USER_ID + " DESC, e." + DatabaseHelper.COLUMN_EVENT_ID + " DESC";
+    static final String SQL_SET_STATE = "UPDATE " + DatabaseHelper.TABLE_GOAL_EVENTS
+            + " SET " + DatabaseHelper.COLUMN_EVENT_STATE + " = ? WHERE " + DatabaseHelper.COLUMN_EVENT_ID + " = ?";
+    static final String SQL_RESCHEDULE = "UPDATE " + DatabaseHelper.TABLE_GOAL_EVENTS
+            + " SET " + DatabaseHelper.COLUMN_EVENT_ATTEMPTS + " = ?, " + DatabaseHelper.COLUMN_EVENT_NEXT_ATTEMPT + " = ?"
+            + " WHERE " + DatabaseHelper.COLUMN_EVENT_ID + " = ?";
+
+    /**
+     * What became of one attempt to send a notification.
+     */
+    enum Outcome { SENT, RETRY, DROPPED }
+
+    /**
+     * Delivers one notification. Called on the notifier's background thread.
+     */
+    interface Sender {
+        Outcome send(String username, double goalWeight, String unit, boolean lastAttempt);
+    }
+
+    private static GoalNotifier instance;
+
+    private final DatabaseHelper dbHelper;
+    private final Sender sender;
+    private final Handler handler;
+    private final Runnable drainTask = () -> drain(System.currentTimeMillis());
+
+    /**
+     * Returns the notifier for the shared database, sending by SMS.
+     */
+    public static synchronized GoalNotifier getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            HandlerThread thread = new HandlerThread(TAG, android.os.Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            instance = new GoalNotifier(DatabaseHelper.getInstance(appContext), new SmsSender(appContext),
+                    thread.getLooper());
+        }
+        return instance;
+    }
+
+    GoalNotifier(DatabaseHelper dbHelper, Sender sender, Looper looper) {
+        this.dbHelper = dbHelper;
+        this.sender = sender;
+        this.handler = new Handler(looper);
+    }
+
+    /**
+     * Whether a new weight reaches the goal: it is within {@link #TOLERANCE} of it, or it is on
+     * the goal's side after the previous weight was on the other side.
+     *
+     * @param previous the user's previous weight, or NaN if this is their first
+     */
+    static boolean reachesGoal(double previous, double weight, double goal) {
+        if (Math.abs(weight - goal) <= TOLERANCE) {
+            return true;
+        }
+        if (Double.isNaN(previous)) {
+            return false;
+        }
+        return (previous > goal && weight < goal) || (previous < goal && weight > goal);
+    }
+
+    /**
+     * Sends any due events on the background thread. Safe to call from any thread, as often as
+     * needed; calls made while a drain is queued are merged into it.
+     */
+    public void wake() {
+        handler.removeCallbacks(drainTask);
+        handler.post(drainTask);
+    }
+
+    /**
+     * Sends every pending event due by {@code now} and schedules the next retry.
+     *
+     * @return the number of notifications sent
+     */
+    int drain(long now) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        // Read first and write after, so the updates don't change the table under an open cursor
+        List<PendingEvent> pending = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(SQL_PENDING_EVENTS, null)) {
+            while (cursor.moveToNext()) {
+                pending.add(new PendingEvent(cursor.getLong(0), cursor.getLong(1), cursor.getString(2),
+                        cursor.getDouble(3), cursor.getString(4), cursor.getInt(5), cursor.getLong(6)));
+            }
+        }
+
+        int sent = 0;
+        long nextDue = Long.MAX_VALUE;
+        long lastUserId = -1;
+        for (PendingEvent event : pending) {
+            if (event.userId == lastUserId) {
+                // Rows are newest first per user; older goals are out of date
+                db.execSQL(SQL_SET_STATE, new Object[]{STATE_SUPERSEDED, event.id});
+                continue;
+            }
+            lastUserId = event.userId;
+
+            if (event.due > now) {
+                nextDue = Math.min(nextDue, event.due);
+                continue;
+            }
+            int attempts = event.attempts + 1;
+            Outcome outcome = sender.send(event.username, event.goal, event.unit, attempts >= MAX_ATTEMPTS);
+            if (outcome == Outcome.SENT) {
+                db.execSQL(SQL_SET_STATE, new Object[]{STATE_SENT, event.id});
+                sent++;
+            } else if (outcome == Outcome.DROPPED || attempts >= MAX_ATTEMPTS) {
+                db.execSQL(SQL_SET_STATE, new Object[]{STATE_FAILED, event.id});
+            } else {
+                long retryAt = now + backoff(attempts);
+                db.execSQL(SQL_RESCHEDULE, new Object[]{attempts, retryAt, event.id});
+                nextDue = Math.min(nextDue, retryAt);
+            }
+        }
+        if (nextDue != Long.MAX_VALUE) {
+            handler.removeCallbacks(drainTask);
+            handler.postAtTime(drainTask, SystemClock.uptimeMillis() + (nextDue - now));
+        }
+        return sent;
+    }
+
+    // One row of SQL_PENDING_EVENTS
+    private static final class PendingEvent {
+        final long id;
+        final long userId;
+        final String username;
+        final double goal;
+        final String unit;
+        final int attempts;
+        final long due;
+
+        PendingEvent(long id, long userId, String username, double goal, String unit, int attempts, long due) {
+            this.id = id;
+            this.userId = userId;
+            this.username = username;
+            this.goal = goal;
+            this.unit = unit;
+            this.attempts = attempts;
+            this.due = due;
+        }
+    }
+
+    // Delay before the next attempt after the given number of failed ones
+    static long backoff(int attempts) {
+        return Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempts - 1, 20));
+    }
+
+    /**
+     * Sends goal notifications by SMS to the number set on the SMS notifications screen, and
+     * tells the user how it went.
+     */
+    static final class SmsSender implements Sender {
+
+        private final Context context;
+        private final SharedPreferences prefs;
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        SmsSender(Context context) {
+            this.context = context;
+            this.prefs = context.getSharedPreferences("WeightTrackerPrefs", Context.MODE_PRIVATE);
+        }
+
+        @Override
+        public Outcome send(String username, double goalWeight, String unit, boolean lastAttempt) {
+            // Only explain a missing number or permission to registered users
+            boolean guest = DatabaseHelper.GUEST_USERNAME.equals(username);
+            if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+                if (!guest) {
+                    toast("SMS permission not granted.", Toast.LENGTH_SHORT);
+                }
+                return Outcome.DROPPED;
+            }
+            String phoneNumber = prefs.getString("phone_number", null);
+            if (phoneNumber == null || phoneNumber.isEmpty()) {
+                if (!guest) {
+                    toast("No phone number set for SMS notifications.", Toast.LENGTH_SHORT);
+                }
+                return Outcome.DROPPED;
+            }
+            try {
+                SmsManager smsManager = context.getSystemService(SmsManager.class);
+                smsManager.sendTextMessage(phoneNumber, null, "Congratulations! You've reached your goal weight of " + goalWeight + " " + unit + "!", null, null);
+                toast("Goal reached! SMS sent.", Toast.LENGTH_LONG);
+                return Outcome.SENT;
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to send SMS", e);
+                if (lastAttempt) {
+                    toast("Failed to send SMS.", Toast.LENGTH_SHORT);
+                }
+                return Outcome.RETRY;
+            }
+        }
+
+        private void toast(String message, int duration) {
+            mainHandler.post(() -> Toast.makeText(context, message, duration).show());
+        }
+    }
+}
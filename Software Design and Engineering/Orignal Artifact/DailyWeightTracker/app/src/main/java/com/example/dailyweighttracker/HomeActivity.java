@@ -3,7 +3,6 @@ package com.example.dailyweighttracker;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -17,8 +16,6 @@ import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.text.DecimalFormat;
-
 
 /**
  * This activity displays the main screen of the app,  user's most recent weight, and goal weight.
@@ -26,26 +23,43 @@ import java.text.DecimalFormat;
  */
 public class HomeActivity extends AppCompatActivity implements View.OnClickListener {
 
+    // When the archive last ran, in epoch milliseconds
+    private static final String KEY_LAST_ARCHIVE = "last_archive";
+
     private Button setGoalButton;
     private TextView recentWeightTextView;
     private TextView recentDateTextView;
     private TextView goalWeightTextView;
+    private View trendCard;
+    private TextView trendWeightTextView;
+    private TextView trendSlopeTextView;
+    private TextView trendAveragesTextView;
+    private TextView goalEtaTextView;
 
     // Database and preferences
-    private DatabaseHelper dbHelper;
+    private WeightRepository repository;
+    private WeightRepository.Observation recentWeightQuery;
+    private WeightRepository.Observation trendQuery;
     private SharedPreferences prefs;
 
     // User-specific data
     private String unit;
     private String username;
+    // Most recent entry, or NaN if the user has none
+    private double recentWeight = Double.NaN;
+    private long recentDate;
+    // Backs the recent date view's text
+    private final char[] recentDateChars = new char[WeightFormat.DATE_LENGTH];
+    // Trend as of the most recent entry, or null if the user has none
+    private WeightTrend trend;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_home);
 
-        // Initialize database helper and shared preferences
-        dbHelper = new DatabaseHelper(this);
+        // Initialize the repository and shared preferences
+        repository = WeightRepository.getInstance(this);
         prefs = getSharedPreferences("WeightTrackerPrefs", Context.MODE_PRIVATE);
 
         
@@ -58,6 +72,11 @@ public class HomeActivity extends AppCompatActivity implements View.OnClickListe
         recentWeightTextView = findViewById(R.id.text_recent_weight);
         recentDateTextView = findViewById(R.id.text_recent_date);
         goalWeightTextView = findViewById(R.id.text_goal_weight);
+        trendCard = findViewById(R.id.card_trend);
+        trendWeightTextView = findViewById(R.id.text_trend_weight);
+        trendSlopeTextView = findViewById(R.id.text_trend_slope);
+        trendAveragesTextView = findViewById(R.id.text_trend_averages);
+        goalEtaTextView = findViewById(R.id.text_goal_eta);
 
         // Set up click listeners for buttons
         addWeightButton.setOnClickListener(this);
@@ -65,23 +84,59 @@ public class HomeActivity extends AppCompatActivity implements View.OnClickListe
         smsNotificationsButton.setOnClickListener(this);
         setGoalButton.setOnClickListener(this);
         accountButton.setOnClickListener(this);
+
+        // Load the recent weight in the background, and again whenever the weights change. It comes
+        // from the cached history, so switching back to a user doesn't query the database.
+        recentWeightQuery = repository.observe(this,
+                (db, signal) -> db.getLatestWeight(UserSession.getUserId(db, prefs)),
+                this::showRecentWeight, DatabaseHelper.TABLE_WEIGHTS);
+        // The trend is kept up to date as weights are added, so this rarely reads the database
+        trendQuery = repository.observe(this,
+                (db, signal) -> db.getTrend(UserSession.getUserId(db, prefs)),
+                this::showTrend, DatabaseHelper.TABLE_WEIGHTS);
+
+        archiveIfDue();
+    }
+
+    /**
+     * Packs months that have aged out into the archive, at most once a day; reads still return them.
+     * The time is recorded once the pass has finished, so an interrupted one runs again next time.
+     */
+    private void archiveIfDue() {
+        long now = System.currentTimeMillis();
+        long lastRun = prefs.getLong(KEY_LAST_ARCHIVE, 0);
+        // A clock set back is treated as due rather than waiting out the difference
+        if (lastRun <= now && now - lastRun < DatabaseHelper.ARCHIVE_INTERVAL_MILLIS) {
+            return;
+        }
+        repository.execute(this, (db, signal) ->
+                        db.archiveWeightsOlderThan(DatabaseHelper.DEFAULT_ARCHIVE_AGE_MILLIS))
+                .thenAccept(archived -> prefs.edit().putLong(KEY_LAST_ARCHIVE, now).apply());
     }
 
     @Override
     protected void onResume() {
         super.onResume();
         // Reload user data and update the UI when the activity is resumed
-        username = dbHelper.getCurrentUsername(prefs);
-        unit = prefs.getString("unit_" + username, "lbs");
+        String previousUsername = username;
+        username = UserSession.getUsername(prefs);
+        unit = prefs.getString(PreferenceKeys.unit(username), "lbs");
+        if (previousUsername != null && !previousUsername.equals(username)) {
+            // Signed in as someone else; their weights weren't written, so nothing else reloads them
+            recentWeightQuery.invalidate();
+            trendQuery.invalidate();
+        }
         updateUI();
         checkGoalWeight();
+        // Retries goal notifications left over from an earlier run
+        GoalNotifier.getInstance(this).wake();
     }
 
     /**
      * Checks if a goal weight has been set and prompts the user to set one if not.
      */
     private void checkGoalWeight() {
-        if (prefs.getFloat("goal_weight_" + username, 0) == 0) {
+        if (prefs.getFloat(PreferenceKeys.goalWeight(username), 0) == 0) {
             showSetGoalDialog();
         }
     }
@@ -105,9 +160,14 @@ public class HomeActivity extends AppCompatActivity implements View.OnClickListe
             String weightStr = weightInput.getText().toString();
             if (!weightStr.isEmpty()) {
                 try {
-                    float weight = Float.parseFloat(weightStr);
-                    dbHelper.addWeight(HomeActivity.this, weight, prefs);
-                    updateUI(); // Refresh the UI with the new weight
+                    double weight = Double.parseDouble(weightStr);
+                    float goalWeight = prefs.getFloat(PreferenceKeys.goalWeight(username), 0);
+                    String goalUnit = unit;
+                    repository.execute(this, (db, signal) ->
+                                    db.addWeight(UserSession.getUserId(db, prefs), weight, goalWeight, goalUnit))
+                            // Sends the goal notification if this weight queued one; the new weight
+                            // reaches the screen through the observed query
+                            .thenAccept(id -> GoalNotifier.getInstance(this).wake());
                     dialog.dismiss();
                 } catch (NumberFormatException e) {
                     Toast.makeText(this, "Please enter a valid weight.", Toast.LENGTH_SHORT).show();
@@ -137,7 +197,7 @@ public class HomeActivity extends AppCompatActivity implements View.OnClickListe
         final RadioButton kgButton = dialogView.findViewById(R.id.kg_radio_button);
 
         // Set the current unit preference
-        String currentUnit = prefs.getString("unit_" + username, "lbs");
+        String currentUnit = prefs.getString(PreferenceKeys.unit(username), "lbs");
         if (currentUnit.equals("kg")) {
             kgButton.setChecked(true);
         } else {
@@ -154,8 +214,8 @@ public class HomeActivity extends AppCompatActivity implements View.OnClickListe
                     selectedUnit = "kg";
                 }
                 // Save the goal weight and unit preference
-                prefs.edit().putFloat("goal_weight_" + username, goalWeight).apply();
-                prefs.edit().putString("unit_" + username, selectedUnit).apply();
+                prefs.edit().putFloat(PreferenceKeys.goalWeight(username), goalWeight).apply();
+                prefs.edit().putString(PreferenceKeys.unit(username), selectedUnit).apply();
                 unit = selectedUnit;
                 updateUI(); // Refresh the UI with the new goal
             } else {
@@ -171,25 +231,13 @@ public class HomeActivity extends AppCompatActivity implements View.OnClickListe
      * Updates the UI with the most recent weight and goal weight information.
      */
     private void updateUI() {
-        // Update recent weight
-        Cursor cursor = dbHelper.getMostRecentWeight(prefs);
-        if (cursor != null && cursor.moveToFirst()) {
-            double weight = cursor.getDouble(cursor.getColumnIndexOrThrow("weight"));
-            String date = cursor.getString(cursor.getColumnIndexOrThrow("date"));
-            DecimalFormat df = new DecimalFormat("#.0");
-            recentWeightTextView.setText(String.format("%s %s", df.format(weight), unit));
-            recentDateTextView.setText(date);
-            cursor.close();
-        } else {
-            recentWeightTextView.setText("N/A");
-            recentDateTextView.setText("");
-        }
+        showRecentWeight();
+        showTrend();
 
         // Update goal weight
-        float goalWeight = prefs.getFloat("goal_weight_" + username, 0);
+        float goalWeight = prefs.getFloat(PreferenceKeys.goalWeight(username), 0);
         if (goalWeight > 0) {
-            DecimalFormat df = new DecimalFormat("#.0");
-            goalWeightTextView.setText(String.format("%s %s", df.format(goalWeight), unit));
+            goalWeightTextView.setText(WeightFormat.get(unit).format(goalWeight));
             setGoalButton.setText(R.string.change_goal);
         } else {
             goalWeightTextView.setText("N/A");
@@ -197,6 +245,77 @@ public class HomeActivity extends AppCompatActivity implements View.OnClickListe
         }
     }
 
+    /**
+     * Shows the most recent weight once loaded, or N/A if the user has none.
+     */
+    private void showRecentWeight(WeightEntry entry) {
+        if (entry != null) {
+            recentWeight = entry.getWeight();
+            recentDate = entry.getDate();
+        } else {
+            recentWeight = Double.NaN;
+        }
+        showRecentWeight();
+    }
+
+    // Shows the last loaded recent weight in the current unit
+    private void showRecentWeight() {
+        if (!Double.isNaN(recentWeight)) {
+            WeightFormat format = WeightFormat.get(unit);
+            recentWeightTextView.setText(format.format(recentWeight));
+            recentDateTextView.setText(recentDateChars, 0, format.writeDate(recentDate, recentDateChars, 0));
+        } else {
+            recentWeightTextView.setText("N/A");
+            recentDateTextView.setText("");
+        }
+    }
+
+    /**
+     * Shows the trend once loaded, hiding it if the user has no weights.
+     */
+    private void showTrend(WeightTrend loaded) {
+        trend = loaded;
+        showTrend();
+    }
+
+    // Shows the last loaded trend in the current unit, with a projection to the current goal
+    private void showTrend() {
+        if (username == null) {
+            // Not resumed yet; onResume shows it
+            return;
+        }
+        if (trend == null) {
+            trendCard.setVisibility(View.GONE);
+            return;
+        }
+        trendCard.setVisibility(View.VISIBLE);
+        WeightFormat format = WeightFormat.get(unit);
+        trendWeightTextView.setText(format.format(trend.getTrend()));
+        if (Double.isNaN(trend.getSlopePerDay())) {
+            trendSlopeTextView.setVisibility(View.GONE);
+        } else {
+            trendSlopeTextView.setVisibility(View.VISIBLE);
+            trendSlopeTextView.setText(getString(R.string.trend_slope, format.format(trend.getSlopePerDay() * 7)));
+        }
+        trendAveragesTextView.setText(getString(R.string.trend_averages,
+                format.format(trend.getMovingAverage7()), format.format(trend.getMovingAverage30())));
+
+        float goalWeight = prefs.getFloat(PreferenceKeys.goalWeight(username), 0);
+        if (goalWeight <= 0) {
+            goalEtaTextView.setVisibility(View.GONE);
+            return;
+        }
+        goalEtaTextView.setVisibility(View.VISIBLE);
+        long eta = trend.getGoalEta(goalWeight);
+        if (eta == trend.getLatestDate()) {
+            goalEtaTextView.setText(R.string.trend_goal_reached);
+        } else if (eta != -1) {
+            goalEtaTextView.setText(getString(R.string.trend_goal_eta, format.formatDay(eta)));
+        } else {
+            goalEtaTextView.setText(R.string.trend_goal_no_eta);
+        }
+    }
+
     /**
      * Handles clicks for all buttons in the activity.
      */
@@ -0,0 +1,240 @@
+package com.example.dailyweighttracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link WeightStore} in plain Java collections, for tests and benchmarks that run on the JVM.
+ * Each user's entries are kept as parallel primitive arrays ordered by (date, id), like
+ * {@link WeightCache}, so reads are binary searches and array copies. Starts out like a new
+ * database, holding only the guest user.
+ *
+ * <p>Thread safe. Nothing is persisted.
+ */
+public final class InMemoryWeightStore implements WeightStore {
+
+    // One user's entries; the arrays have spare capacity at the end
+    private static final class Series {
+        long[] ids = new long[16];
+        long[] dates = new long[16];
+        double[] weights = new double[16];
+        int size;
+
+        // Index the entry at (date, id) has or would have
+        int position(long date, long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (dates[mid] < date || (dates[mid] == date && ids[mid] < id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void insert(long id, long date, double weight) {
+            int at = position(date, id);
+            if (size == ids.length) {
+                int capacity = size + (size >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(dates, at, dates, at + 1, size - at);
+            System.arraycopy(weights, at, weights, at + 1, size - at);
+            ids[at] = id;
+            dates[at] = date;
+            weights[at] = weight;
+            size++;
+        }
+
+        void remove(int at) {
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(dates, at + 1, dates, at, size - at - 1);
+            System.arraycopy(weights, at + 1, weights, at, size - at - 1);
+            size--;
+        }
+
+        WeightEntry entry(int at) {
+            return new WeightEntry(ids[at], weights[at], dates[at]);
+        }
+    }
+
+    private static final class User {
+        final long id;
+        String password;
+
+        User(long id, String password) {
+            this.id = id;
+            this.password = password;
+        }
+    }
+
+    private final Map<Long, Series> series = new HashMap<>();
+    // Owner and date of every entry, for updates and deletes by id
+    private final Map<Long, long[]> owners = new HashMap<>();
+    private final Map<String, User> users = new HashMap<>();
+    private long nextEntryId = 1;
+    private long nextUserId = 1;
+
+    public InMemoryWeightStore() {
+        users.put(GUEST_USERNAME, new User(nextUserId++, null));
+    }
+
+    @Override
+    public synchronized long addWeight(long userId, double weight, long date) {
+        long id = nextEntryId++;
+        Series entries = series.get(userId);
+        if (entries == null) {
+            entries = new Series();
+            series.put(userId, entries);
+        }
+        entries.insert(id, date, weight);
+        owners.put(id, new long[]{userId, date});
+        return id;
+    }
+
+    @Override
+    public synchronized long[] addWeights(long userId, List<WeightEntry> entries) {
+        long[] ids = new long[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            WeightEntry entry = entries.get(i);
+            ids[i] = addWeight(userId, entry.getWeight(), entry.getDate());
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized boolean updateWeight(long id, double weight) {
+        int at = find(id);
+        if (at == -1) {
+            return false;
+        }
+        series.get(owners.get(id)[0]).weights[at] = weight;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteWeight(long id) {
+        int at = find(id);
+        if (at == -1) {
+            return false;
+        }
+        series.get(owners.remove(id)[0]).remove(at);
+        return true;
+    }
+
+    @Override
+    public synchronized void deleteAllWeightsForUser(long userId) {
+        Series entries = series.remove(userId);
+        if (entries != null) {
+            for (int i = 0; i < entries.size; i++) {
+                owners.remove(entries.ids[i]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<WeightEntry> getAllWeights(long userId) {
+        return getWeightsAfter(userId, Long.MIN_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<WeightEntry> getWeightsAfter(long userId, long afterDate, long afterId, int limit) {
+        Series entries = series.get(userId);
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+        // The first entry past (afterDate, afterId)
+        int from;
+        if (afterId != Long.MAX_VALUE) {
+            from = entries.position(afterDate, afterId + 1);
+        } else {
+            from = afterDate == Long.MAX_VALUE ? entries.size : entries.position(afterDate + 1, Long.MIN_VALUE);
+        }
+        int to = (int) Math.min(entries.size, (long) from + limit);
+        List<WeightEntry> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            page.add(entries.entry(i));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized WeightEntry getMostRecentWeight(long userId) {
+        Series entries = series.get(userId);
+        return entries == null || entries.size == 0 ? null : entries.entry(entries.size - 1);
+    }
+
+    @Override
+    public synchronized boolean addUser(String username, String password) {
+        if (users.containsKey(username)) {
+            return false;
+        }
+        users.put(username, new User(nextUserId++, password));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean checkUser(String username, String password) {
+        User user = users.get(username);
+        return user != null && user.password != null && user.password.equals(password);
+    }
+
+    @Override
+    public synchronized boolean checkUserExists(String username) {
+        return users.containsKey(username);
+    }
+
+    @Override
+    public synchronized long getUserId(String username) {
+        User user = users.get(username);
+        return user == null ? -1 : user.id;
+    }
+
+    @Override
+    public synchronized boolean updateUsername(String oldUsername, String newUsername) {
+        User user = users.get(oldUsername);
+        if (user == null) {
+            return false;
+        }
+        if (oldUsername.equals(newUsername)) {
+            return true;
+        }
+        if (users.containsKey(newUsername)) {
+            return false;
+        }
+        users.remove(oldUsername);
+        users.put(newUsername, user);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updatePassword(String username, String newPassword) {
+        User user = users.get(username);
+        if (user == null) {
+            return false;
+        }
+        user.password = newPassword;
+        return true;
+    }
+
+    // Index of an entry within its user's series, or -1 if there is no such entry
+    private int find(long id) {
+        long[] owner = owners.get(id);
+        if (owner == null) {
+            return -1;
+        }
+        Series entries = series.get(owner[0]);
+        int at = entries.position(owner[1], id);
+        return at < entries.size && entries.ids[at] == id ? at : -1;
+    }
+}
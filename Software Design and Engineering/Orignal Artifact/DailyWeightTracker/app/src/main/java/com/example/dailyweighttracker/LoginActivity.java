@@ -16,7 +16,7 @@ import androidx.appcompat.app.AppCompatActivity;
 public class LoginActivity extends AppCompatActivity {
 
     private EditText editTextUsername, editTextPassword;
-    private DatabaseHelper dbHelper;
+    private WeightRepository repository;
     private SharedPreferences prefs;
 
     @Override
@@ -24,8 +24,8 @@ public class LoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
 
-        // Initialize database helper and shared preferences
-        dbHelper = new DatabaseHelper(this);
+        // Initialize the repository and shared preferences
+        repository = WeightRepository.getInstance(this);
         prefs = getSharedPreferences("WeightTrackerPrefs", Context.MODE_PRIVATE);
 
         // Get references to UI elements
@@ -46,16 +46,18 @@ public class LoginActivity extends AppCompatActivity {
                 return;
             }
 
-            // Check if user credentials are valid
-            if (dbHelper.checkUser(username, password)) {
-                // Save username to shared preferences
-                prefs.edit().putString("username", username).apply();
-                Toast.makeText(LoginActivity.this, "Login successful!", Toast.LENGTH_SHORT).show();
-                // Go to the home screen
-                goToHome();
-            } else {
-                Toast.makeText(LoginActivity.this, "Invalid username or password", Toast.LENGTH_SHORT).show();
-            }
+            // Check if user credentials are valid, resolving the user's id once for the session
+            repository.execute(this, (db, signal) -> db.checkUser(username, password) ? db.getUserId(username) : -1L)
+                    .thenAccept(userId -> {
+                        if (userId != -1) {
+                            UserSession.start(prefs, username, userId);
+                            Toast.makeText(LoginActivity.this, "Login successful!", Toast.LENGTH_SHORT).show();
+                            // Go to the home screen
+                            goToHome();
+                        } else {
+                            Toast.makeText(LoginActivity.this, "Invalid username or password", Toast.LENGTH_SHORT).show();
+                        }
+                    });
         });
 
         // Set up click listener for the sign-up button
@@ -70,21 +72,24 @@ public class LoginActivity extends AppCompatActivity {
             }
 
             // Check if the user already exists
-            if (dbHelper.checkUserExists(username)) {
-                Toast.makeText(LoginActivity.this, "User already exists. Try logging in.", Toast.LENGTH_SHORT).show();
-            } else {
-                // Add the new user to the database
-                boolean inserted = dbHelper.addUser(username, password);
-                if (inserted) {
-                    // Save username to shared preferences
-                    prefs.edit().putString("username", username).apply();
-                    Toast.makeText(LoginActivity.this, "Account created successfully!", Toast.LENGTH_SHORT).show();
-                    // Go to the home screen
-                    goToHome();
-                } else {
-                    Toast.makeText(LoginActivity.this, "Error creating account", Toast.LENGTH_SHORT).show();
+            repository.execute(this, (db, signal) -> db.checkUserExists(username)).thenAccept(exists -> {
+                if (exists) {
+                    Toast.makeText(LoginActivity.this, "User already exists. Try logging in.", Toast.LENGTH_SHORT).show();
+                    return;
                 }
-            }
+                // Add the new user to the database and resolve their id once for the session
+                repository.execute(this, (db, signal) -> db.addUser(username, password) ? db.getUserId(username) : -1L)
+                        .thenAccept(userId -> {
+                            if (userId != -1) {
+                                UserSession.start(prefs, username, userId);
+                                Toast.makeText(LoginActivity.this, "Account created successfully!", Toast.LENGTH_SHORT).show();
+                                // Go to the home screen
+                                goToHome();
+                            } else {
+                                Toast.makeText(LoginActivity.this, "Error creating account", Toast.LENGTH_SHORT).show();
+                            }
+                        });
+            });
         });
 
         // Set up click listener for the guest button
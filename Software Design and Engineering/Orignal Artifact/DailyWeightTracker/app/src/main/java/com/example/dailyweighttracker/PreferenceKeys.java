@@ -0,0 +1,38 @@
+package com.example.dailyweighttracker;
+
+/**
+ * Names of the per-user preference entries. The keys for the most recent user are kept, so the
+ * usual case of one user per session doesn't build a new string on every lookup.
+ */
+public final class PreferenceKeys {
+
+    private static final String GOAL_WEIGHT_PREFIX = "goal_weight_";
+    private static final String UNIT_PREFIX = "unit_";
+
+    private static String cachedUsername;
+    private static String cachedGoalWeightKey;
+    private static String cachedUnitKey;
+
+    private PreferenceKeys() {
+    }
+
+    // Key of the user's goal weight (float)
+    public static synchronized String goalWeight(String username) {
+        cacheFor(username);
+        return cachedGoalWeightKey;
+    }
+
+    // Key of the user's preferred unit, "lbs" or "kg"
+    public static synchronized String unit(String username) {
+        cacheFor(username);
+        return cachedUnitKey;
+    }
+
+    private static void cacheFor(String username) {
+        if (!username.equals(cachedUsername)) {
+            cachedUsername = username;
+            cachedGoalWeightKey = GOAL_WEIGHT_PREFIX + username;
+            cachedUnitKey = UNIT_PREFIX + username;
+        }
+    }
+}
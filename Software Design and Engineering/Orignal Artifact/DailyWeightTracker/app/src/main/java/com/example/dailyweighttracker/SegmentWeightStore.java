@@ -0,0 +1,595 @@
+package com.example.dailyweighttracker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WeightStore} that keeps each user's entries in their own append-only segment file of
+ * fixed-width (id, date, weight) records, read and written through a {@link MappedByteBuffer}.
+ * A record costs 24 bytes, with no row header, page slack or secondary index.
+ *
+ * <p>Records appended in (date, id) order extend the segment's sorted run. A sparse in-memory
+ * index holds the date of every 64th record of that run, so a range scan binary searches the
+ * index and then reads records in sequence. Backdated entries go to an unsorted tail, which reads
+ * merge in through a small sorted list of positions. A delete marks its record with a tombstone,
+ * the id negated, and an update patches the weight in place. Once the tail or the tombstones grow
+ * too large, a background thread compacts the segment: it writes the live records in order to a
+ * new file and swaps it in by rename.
+ *
+ * <p>Ids carry the user in their top bits and a per-user sequence number in the rest, so updates
+ * and deletes only search their own user's segment, binary searching its positions in id order.
+ * The sequence survives deleting all of a user's entries, so ids are never reused. Users are kept
+ * by the store passed in. Mapped pages are written back by the OS; segments are forced to disk on compaction
+ * and {@link #close()}.
+ *
+ * <p>Thread safe. Compaction holds the store's lock while it copies a segment.
+ */
+public final class SegmentWeightStore implements WeightStore, Closeable {
+
+    // Segment header: magic, version, record count, sorted run length, tombstones, next sequence
+    private static final int MAGIC = 0x57545347;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_COUNT = 8;
+    private static final int OFFSET_SORTED = 12;
+    private static final int OFFSET_DELETED = 16;
+    private static final int OFFSET_NEXT_SEQUENCE = 24;
+    // Record: id, date, weight
+    private static final int RECORD_SIZE = 24;
+    private static final int MIN_CAPACITY = 1024;
+    // A buffer is indexed by int, which bounds a segment
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+    // Sorted records per sparse index entry
+    private static final int INDEX_INTERVAL = 64;
+    // Compact once this many records are out of order, or a quarter of the records are tombstones
+    private static final int MAX_UNSORTED = 512;
+    private static final int MIN_DELETED = 64;
+    private static final int SEQUENCE_BITS = 40;
+    static final long MAX_USER_ID = (1L << (63 - SEQUENCE_BITS)) - 1;
+    private static final String SUFFIX = ".seg";
+
+    // One user's segment file, mapped whole
+    private static final class Segment {
+        File file;
+        final FileChannel channel;
+        MappedByteBuffer buffer;
+        int capacity;
+        int count;
+        int sorted;
+        int deleted;
+        long nextSequence;
+        // Date of every INDEX_INTERVAL-th record of the sorted run
+        long[] index = new long[16];
+        int indexSize;
+        // Positions of the records after the sorted run, in (date, id) order
+        int[] tail = new int[16];
+        int tailSize;
+        // Positions of every record in id order. Appends carry the highest id so far, except while
+        // compaction copies records in date order, after which this is rebuilt on the next find.
+        int[] byId = new int[16];
+        long maxId;
+        boolean byIdStale;
+        boolean compactionQueued;
+
+        private Segment(File file, FileChannel channel, int capacity) throws IOException {
+            this.file = file;
+            this.channel = channel;
+            this.capacity = capacity;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+
+        // Opens a segment file, creating it if asked, or returns null if there is none
+        static Segment open(File file, boolean create, int minCapacity) throws IOException {
+            if (!create && !file.exists()) {
+                return null;
+            }
+            FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+            try {
+                long size = channel.size();
+                if (size == 0) {
+                    Segment segment = new Segment(file, channel, Math.max(MIN_CAPACITY, minCapacity));
+                    segment.buffer.putInt(0, MAGIC);
+                    segment.buffer.putInt(OFFSET_VERSION, VERSION);
+                    segment.nextSequence = 1;
+                    segment.writeHeader();
+                    return segment;
+                }
+                Segment segment = new Segment(file, channel, (int) ((size - HEADER_SIZE) / RECORD_SIZE));
+                MappedByteBuffer buffer = segment.buffer;
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION) {
+                    throw new IOException("Not a weight segment: " + file);
+                }
+                segment.count = buffer.getInt(OFFSET_COUNT);
+                segment.sorted = buffer.getInt(OFFSET_SORTED);
+                segment.deleted = buffer.getInt(OFFSET_DELETED);
+                segment.nextSequence = buffer.getLong(OFFSET_NEXT_SEQUENCE);
+                for (int at = 0; at < segment.sorted; at += INDEX_INTERVAL) {
+                    segment.addToIndex(segment.date(at));
+                }
+                for (int at = segment.sorted; at < segment.count; at++) {
+                    segment.addToTail(at);
+                }
+                for (int at = 0; at < segment.count; at++) {
+                    segment.addToIds(at);
+                }
+                return segment;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        long id(int at) {
+            return buffer.getLong(HEADER_SIZE + at * RECORD_SIZE);
+        }
+
+        long date(int at) {
+            return buffer.getLong(HEADER_SIZE + at * RECORD_SIZE + 8);
+        }
+
+        double weight(int at) {
+            return buffer.getDouble(HEADER_SIZE + at * RECORD_SIZE + 16);
+        }
+
+        // Orders a record against (date, id), ignoring whether it is a tombstone
+        int compare(int at, long date, long id) {
+            long recordDate = date(at);
+            if (recordDate != date) {
+                return Long.compare(recordDate, date);
+            }
+            return Long.compare(Math.abs(id(at)), id);
+        }
+
+        void append(long id, long date, double weight) throws IOException {
+            if (count == capacity) {
+                grow();
+            }
+            int at = count;
+            int offset = HEADER_SIZE + at * RECORD_SIZE;
+            buffer.putLong(offset, id);
+            buffer.putLong(offset + 8, date);
+            buffer.putDouble(offset + 16, weight);
+            count++;
+            if (sorted == at && (at == 0 || compare(at - 1, date, id) < 0)) {
+                if (at % INDEX_INTERVAL == 0) {
+                    addToIndex(date);
+                }
+                sorted++;
+            } else {
+                addToTail(at);
+            }
+            addToIds(at);
+            writeHeader();
+        }
+
+        private void grow() throws IOException {
+            if (capacity == MAX_CAPACITY) {
+                throw new IOException("Segment full: " + file);
+            }
+            capacity = (int) Math.min(MAX_CAPACITY, 2L * capacity);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+
+        private void addToIndex(long date) {
+            if (indexSize == index.length) {
+                index = Arrays.copyOf(index, indexSize * 2);
+            }
+            index[indexSize++] = date;
+        }
+
+        private void addToTail(int at) {
+            if (tailSize == tail.length) {
+                tail = Arrays.copyOf(tail, tailSize * 2);
+            }
+            int into = tailAfter(date(at), Math.abs(id(at)));
+            System.arraycopy(tail, into, tail, into + 1, tailSize - into);
+            tail[into] = at;
+            tailSize++;
+        }
+
+        private void addToIds(int at) {
+            long id = Math.abs(id(at));
+            if (byIdStale || id < maxId) {
+                byIdStale = true;
+                return;
+            }
+            if (at >= byId.length) {
+                byId = Arrays.copyOf(byId, Math.max(16, at + (at >> 1)));
+            }
+            byId[at] = at;
+            maxId = id;
+        }
+
+        // Sorts every position by id, through a sorted copy of the ids to keep to primitives
+        private void rebuildIds() {
+            long[] ids = new long[count];
+            for (int at = 0; at < count; at++) {
+                ids[at] = Math.abs(id(at));
+            }
+            long[] sortedIds = ids.clone();
+            Arrays.sort(sortedIds);
+            if (byId.length < count) {
+                byId = new int[count];
+            }
+            for (int at = 0; at < count; at++) {
+                byId[Arrays.binarySearch(sortedIds, ids[at])] = at;
+            }
+            maxId = count == 0 ? 0 : sortedIds[count - 1];
+            byIdStale = false;
+        }
+
+        // The first position of the sorted run past (date, id)
+        int sortedAfter(long date, long id) {
+            // Blocks before the one ahead of the first block starting at or after date are all earlier
+            int low = 0;
+            int high = indexSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (index[mid] < date) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            int at = Math.max(0, low - 1) * INDEX_INTERVAL;
+            while (at < sorted && compare(at, date, id) <= 0) {
+                at++;
+            }
+            return at;
+        }
+
+        // The first index into the tail past (date, id)
+        int tailAfter(long date, long id) {
+            int low = 0;
+            int high = tailSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(tail[mid], date, id) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Position of a live record, or -1
+        int find(long id) {
+            if (byIdStale) {
+                rebuildIds();
+            }
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int at = byId[mid];
+                long midId = Math.abs(id(at));
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    // A tombstone's id is negated
+                    return id(at) == id ? at : -1;
+                }
+            }
+            return -1;
+        }
+
+        boolean needsCompaction() {
+            return tailSize >= MAX_UNSORTED || (deleted >= MIN_DELETED && deleted * 4L >= count);
+        }
+
+        void writeHeader() {
+            buffer.putInt(OFFSET_COUNT, count);
+            buffer.putInt(OFFSET_SORTED, sorted);
+            buffer.putInt(OFFSET_DELETED, deleted);
+            buffer.putLong(OFFSET_NEXT_SEQUENCE, nextSequence);
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    private final File directory;
+    private final WeightStore users;
+    private final Map<Long, Segment> segments = new HashMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SegmentCompactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean closed;
+
+    /**
+     * Opens the segments in {@code directory}, creating it if needed. User operations go to
+     * {@code users}.
+     */
+    public SegmentWeightStore(File directory, WeightStore users) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Can't create " + directory));
+        }
+        this.directory = directory;
+        this.users = users;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized long addWeight(long userId, double weight, long date) {
+        Segment segment = segment(userId, true);
+        try {
+            long id = (userId << SEQUENCE_BITS) | segment.nextSequence++;
+            segment.append(id, date, weight);
+            queueCompaction(userId, segment);
+            return id;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized long[] addWeights(long userId, List<WeightEntry> entries) {
+        long[] ids = new long[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            WeightEntry entry = entries.get(i);
+            ids[i] = addWeight(userId, entry.getWeight(), entry.getDate());
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized boolean updateWeight(long id, double weight) {
+        Segment segment = id > 0 ? segment(id >>> SEQUENCE_BITS, false) : null;
+        int at = segment == null ? -1 : segment.find(id);
+        if (at == -1) {
+            return false;
+        }
+        segment.buffer.putDouble(HEADER_SIZE + at * RECORD_SIZE + 16, weight);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean deleteWeight(long id) {
+        long userId = id >>> SEQUENCE_BITS;
+        Segment segment = id > 0 ? segment(userId, false) : null;
+        int at = segment == null ? -1 : segment.find(id);
+        if (at == -1) {
+            return false;
+        }
+        segment.buffer.putLong(HEADER_SIZE + at * RECORD_SIZE, -id);
+        segment.deleted++;
+        segment.writeHeader();
+        queueCompaction(userId, segment);
+        return true;
+    }
+
+    @Override
+    public synchronized void deleteAllWeightsForUser(long userId) {
+        Segment segment = segment(userId, false);
+        if (segment == null) {
+            return;
+        }
+        // Emptied rather than deleted, so the header keeps the next sequence number
+        try {
+            rewrite(userId, segment, Collections.emptyList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized List<WeightEntry> getAllWeights(long userId) {
+        return getWeightsAfter(userId, Long.MIN_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized List<WeightEntry> getWeightsAfter(long userId, long afterDate, long afterId, int limit) {
+        Segment segment = segment(userId, false);
+        if (segment == null) {
+            return Collections.emptyList();
+        }
+        List<WeightEntry> page = new ArrayList<>(Math.min(limit, segment.count - segment.deleted));
+        // Merges the sorted run with the tail, skipping tombstones
+        int next = segment.sortedAfter(afterDate, afterId);
+        int nextTail = segment.tailAfter(afterDate, afterId);
+        while (page.size() < limit) {
+            int at;
+            if (next < segment.sorted && (nextTail == segment.tailSize
+                    || segment.compare(next, segment.date(segment.tail[nextTail]),
+                    Math.abs(segment.id(segment.tail[nextTail]))) < 0)) {
+                at = next++;
+            } else if (nextTail < segment.tailSize) {
+                at = segment.tail[nextTail++];
+            } else {
+                break;
+            }
+            long id = segment.id(at);
+            if (id > 0) {
+                page.add(new WeightEntry(id, segment.weight(at), segment.date(at)));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized WeightEntry getMostRecentWeight(long userId) {
+        Segment segment = segment(userId, false);
+        if (segment == null) {
+            return null;
+        }
+        int latest = segment.sorted - 1;
+        while (latest >= 0 && segment.id(latest) < 0) {
+            latest--;
+        }
+        for (int i = segment.tailSize - 1; i >= 0; i--) {
+            int at = segment.tail[i];
+            if (segment.id(at) > 0) {
+                if (latest == -1 || segment.compare(latest, segment.date(at), segment.id(at)) < 0) {
+                    latest = at;
+                }
+                break;
+            }
+        }
+        return latest == -1 ? null : new WeightEntry(segment.id(latest), segment.weight(latest), segment.date(latest));
+    }
+
+    @Override
+    public boolean addUser(String username, String password) {
+        return users.addUser(username, password);
+    }
+
+    @Override
+    public boolean checkUser(String username, String password) {
+        return users.checkUser(username, password);
+    }
+
+    @Override
+    public boolean checkUserExists(String username) {
+        return users.checkUserExists(username);
+    }
+
+    @Override
+    public long getUserId(String username) {
+        return users.getUserId(username);
+    }
+
+    @Override
+    public boolean updateUsername(String oldUsername, String newUsername) {
+        return users.updateUsername(oldUsername, newUsername);
+    }
+
+    @Override
+    public boolean updatePassword(String username, String newPassword) {
+        return users.updatePassword(username, newPassword);
+    }
+
+    /**
+     * Rewrites a user's segment with only its live records, all in order. Normally done in the
+     * background once the segment needs it.
+     */
+    synchronized void compact(long userId) throws IOException {
+        Segment segment = segment(userId, false);
+        if (segment == null) {
+            return;
+        }
+        rewrite(userId, segment, getAllWeights(userId));
+    }
+
+    // Replaces a user's segment with one holding just these entries, in order, and the same next
+    // sequence number
+    private void rewrite(long userId, Segment segment, List<WeightEntry> entries) throws IOException {
+        int live = entries.size();
+        File temp = new File(directory, userId + SUFFIX + ".tmp");
+        if (temp.exists() && !temp.delete()) {
+            throw new IOException("Can't delete " + temp);
+        }
+        Segment compacted = Segment.open(temp, true, live + live / 2);
+        try {
+            for (WeightEntry entry : entries) {
+                compacted.append(entry.getId(), entry.getDate(), entry.getWeight());
+            }
+            compacted.nextSequence = segment.nextSequence;
+            compacted.writeHeader();
+            compacted.buffer.force();
+            if (!temp.renameTo(segment.file)) {
+                throw new IOException("Can't replace " + segment.file);
+            }
+        } catch (IOException | RuntimeException e) {
+            compacted.channel.close();
+            temp.delete();
+            throw e;
+        }
+        // The new mapping stays valid across the rename
+        compacted.file = segment.file;
+        segment.channel.close();
+        segments.put(userId, compacted);
+    }
+
+    /**
+     * Waits for queued compactions, then forces every segment to disk and closes it.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closed = true;
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+        }
+    }
+
+    private void queueCompaction(long userId, Segment segment) {
+        if (segment.compactionQueued || !segment.needsCompaction()) {
+            return;
+        }
+        segment.compactionQueued = true;
+        compactor.execute(() -> {
+            synchronized (this) {
+                // Skip segments closed or replaced since
+                if (!closed && segments.get(userId) == segment) {
+                    try {
+                        compact(userId);
+                    } catch (IOException e) {
+                        // The segment is left as it was, and the next write queues another try
+                        segment.compactionQueued = false;
+                    }
+                }
+            }
+        });
+    }
+
+    private Segment segment(long userId, boolean create) {
+        if (closed) {
+            throw new IllegalStateException("Store is closed");
+        }
+        if (userId < 1 || userId > MAX_USER_ID) {
+            if (create) {
+                throw new IllegalArgumentException("User id out of range: " + userId);
+            }
+            return null;
+        }
+        Segment segment = segments.get(userId);
+        if (segment == null) {
+            try {
+                segment = Segment.open(file(userId), create, MIN_CAPACITY);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (segment != null) {
+                segments.put(userId, segment);
+            }
+        }
+        return segment;
+    }
+
+    private File file(long userId) {
+        return new File(directory, userId + SUFFIX);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The app's {@link WeightStore}: the SQLite database behind {@link DatabaseHelper}, with its
+ * rollups, sketches, caches and change notifications kept up to date by the helper's methods.
+ */
+public final class SqliteWeightStore implements WeightStore {
+
+    private final DatabaseHelper dbHelper;
+
+    public SqliteWeightStore(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    @Override
+    public long addWeight(long userId, double weight, long date) {
+        return dbHelper.addWeights(userId, Collections.singletonList(WeightEntry.of(weight, date)))[0];
+    }
+
+    @Override
+    public long[] addWeights(long userId, List<WeightEntry> entries) {
+        return dbHelper.addWeights(userId, entries);
+    }
+
+    @Override
+    public boolean updateWeight(long id, double weight) {
+        return dbHelper.updateWeight(id, weight);
+    }
+
+    @Override
+    public boolean deleteWeight(long id) {
+        return dbHelper.deleteWeight(id);
+    }
+
+    @Override
+    public void deleteAllWeightsForUser(long userId) {
+        dbHelper.deleteAllWeightsForUser(userId);
+    }
+
+    @Override
+    public List<WeightEntry> getAllWeights(long userId) {
+        try (Cursor cursor = dbHelper.getAllWeights(userId)) {
+            return toEntries(cursor);
+        }
+    }
+
+    @Override
+    public List<WeightEntry> getWeightsAfter(long userId, long afterDate, long afterId, int limit) {
+        try (Cursor cursor = dbHelper.getWeightsAfter(userId, afterDate, afterId, limit, null)) {
+            return toEntries(cursor);
+        }
+    }
+
+    @Override
+    public WeightEntry getMostRecentWeight(long userId) {
+        return dbHelper.getLatestWeight(userId);
+    }
+
+    @Override
+    public boolean addUser(String username, String password) {
+        return dbHelper.addUser(username, password);
+    }
+
+    @Override
+    public boolean checkUser(String username, String password) {
+        return dbHelper.checkUser(username, password);
+    }
+
+    @Override
+    public boolean checkUserExists(String username) {
+        return dbHelper.checkUserExists(username);
+    }
+
+    @Override
+    public long getUserId(String username) {
+        return dbHelper.getUserId(username);
+    }
+
+    @Override
+    public boolean updateUsername(String oldUsername, String newUsername) {
+        return dbHelper.updateUsername(oldUsername, newUsername);
+    }
+
+    @Override
+    public boolean updatePassword(String username, String newPassword) {
+        return dbHelper.updatePassword(username, newPassword);
+    }
+
+    // Reads rows with the (_id, weight, date) columns of the helper's weight queries
+    private static List<WeightEntry> toEntries(Cursor cursor) {
+        List<WeightEntry> entries = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            entries.add(new WeightEntry(cursor.getLong(0), cursor.getDouble(1), cursor.getLong(2)));
+        }
+        return entries;
+    }
+}
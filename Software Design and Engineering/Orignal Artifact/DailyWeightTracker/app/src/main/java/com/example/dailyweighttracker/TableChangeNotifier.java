@@ -0,0 +1,71 @@
+package com.example.dailyweighttracker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells observers on the main thread which tables have been written. Changes are collected until
+ * the next frame, so a burst of writes, such as an import's chunks or a refresh's several page
+ * loads, reaches each observer once.
+ */
+public final class TableChangeNotifier {
+
+    /**
+     * Receives the tables written since the last frame. Called on the main thread.
+     */
+    public interface Observer {
+        void onTablesChanged(Set<String> tables);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> dispatch();
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+    // Tables written since the last dispatch; a frame is scheduled while it isn't empty
+    private Set<String> pending = new HashSet<>();
+
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Records that the given tables were written. Safe to call from any thread.
+     */
+    public void notifyChanged(String... tables) {
+        boolean schedule;
+        synchronized (this) {
+            schedule = pending.isEmpty();
+            Collections.addAll(pending, tables);
+        }
+        if (schedule) {
+            // Choreographer belongs to the main thread
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    private void dispatch() {
+        Set<String> tables;
+        synchronized (this) {
+            tables = pending;
+            pending = new HashSet<>();
+        }
+        if (tables.isEmpty()) {
+            return;
+        }
+        Set<String> changed = Collections.unmodifiableSet(tables);
+        for (Observer observer : observers) {
+            observer.onTablesChanged(changed);
+        }
+    }
+}
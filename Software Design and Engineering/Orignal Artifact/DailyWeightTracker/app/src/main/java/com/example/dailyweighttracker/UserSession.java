@@ -0,0 +1,86 @@
+package com.example.dailyweighttracker;
+
+import android.content.SharedPreferences;
+
+/**
+ * Holds the signed-in user's id and name for the life of the process. The id is resolved once at
+ * login (and kept in preferences so it survives a restart) instead of every screen looking the
+ * user up by name before each query.
+ */
+public final class UserSession {
+
+    private static final String KEY_USERNAME = "username";
+    private static final String KEY_USER_ID = "user_id";
+
+    private static long userId = -1;
+    private static String username;
+
+    private UserSession() {
+    }
+
+    /**
+     * Records a successful login or sign-up.
+     */
+    public static synchronized void start(SharedPreferences prefs, String newUsername, long newUserId) {
+        prefs.edit().putString(KEY_USERNAME, newUsername).putLong(KEY_USER_ID, newUserId).apply();
+        username = newUsername;
+        userId = newUserId;
+    }
+
+    /**
+     * Returns the current user's id, resolving it from preferences or the database the first time.
+     * Call it from a {@link WeightRepository} call, since it may query the database.
+     */
+    public static synchronized long getUserId(DatabaseHelper dbHelper, SharedPreferences prefs) {
+        if (userId == -1) {
+            username = dbHelper.getCurrentUsername(prefs);
+            userId = prefs.contains(KEY_USERNAME) ? prefs.getLong(KEY_USER_ID, -1) : -1;
+            if (userId == -1) {
+                // Logged in before ids were stored, or browsing as a guest
+                userId = dbHelper.getUserId(username);
+            }
+        }
+        return userId;
+    }
+
+    /**
+     * Returns the current username, or {@link DatabaseHelper#GUEST_USERNAME} if nobody is logged in.
+     * Only reads preferences, so it is safe on the main thread.
+     */
+    public static synchronized String getUsername(SharedPreferences prefs) {
+        if (username == null) {
+            username = prefs.getString(KEY_USERNAME, DatabaseHelper.GUEST_USERNAME);
+        }
+        return username;
+    }
+
+    /**
+     * Renames the current user. Per-user preferences (goal and unit) move with the name.
+     */
+    public static synchronized void rename(SharedPreferences prefs, String oldUsername, String newUsername) {
+        // The old and new keys would be the same, and the removes below would win over the puts
+        if (oldUsername.equals(newUsername)) {
+            return;
+        }
+        SharedPreferences.Editor editor = prefs.edit().putString(KEY_USERNAME, newUsername);
+        String oldGoalKey = PreferenceKeys.goalWeight(oldUsername);
+        String oldUnitKey = PreferenceKeys.unit(oldUsername);
+        if (prefs.contains(oldGoalKey)) {
+            editor.putFloat(PreferenceKeys.goalWeight(newUsername), prefs.getFloat(oldGoalKey, 0)).remove(oldGoalKey);
+        }
+        if (prefs.contains(oldUnitKey)) {
+            editor.putString(PreferenceKeys.unit(newUsername), prefs.getString(oldUnitKey, "lbs")).remove(oldUnitKey);
+        }
+        editor.apply();
+        username = newUsername;
+    }
+
+    /**
+     * Clears the session on logout.
+     */
+    public static synchronized void end(SharedPreferences prefs) {
+        prefs.edit().remove(KEY_USERNAME).remove(KEY_USER_ID).apply();
+        username = null;
+        userId = -1;
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Maintains the archive table: a user's entries of one month, once old enough, compressed into a
+ * {@link WeightBlock} and moved out of the weights table. The rollups and sketches already count
+ * them and are left as they are; DatabaseHelper's reads merge archived entries back in, so callers
+ * see the same history either way.
+ *
+ * <p>Anything that writes around an archived entry restores its month to the weights table first:
+ * an update or delete restores the months within a week of the entry, so the rollups recompute
+ * their buckets from every entry in them, and deletes restore recent months so the trend window
+ * stays live. The next {@link #archive(long)} packs them up again. Months are numbered as by
+ * {@link WeightRollups#bucketOf(int, long, TimeZone)} in the time zone the blocks were written in.
+ */
+final class WeightArchive {
+
+    private static final String TAG = "WeightArchive";
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Entries restored either side of a changed one: enough for its week bucket in any zone
+    private static final long WEEK_MILLIS = 7 * MILLIS_PER_DAY;
+
+    // A user's blocks overlapping a date range, in month order
+    static final String SQL_BLOCKS_BETWEEN = "SELECT " + DatabaseHelper.COLUMN_ARCHIVE_DATA
+            + " FROM " + DatabaseHelper.TABLE_ARCHIVE + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + " = ?"
+            + " AND " + DatabaseHelper.COLUMN_ARCHIVE_LAST_DATE + " >= ? AND " + DatabaseHelper.COLUMN_ARCHIVE_FIRST_DATE + " <= ?"
+            + " ORDER BY " + DatabaseHelper.COLUMN_ARCHIVE_MONTH;
+    static final String SQL_HAS_BLOCKS = "SELECT EXISTS (SELECT 1 FROM " + DatabaseHelper.TABLE_ARCHIVE
+            + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + " = ?)";
+    static final String SQL_BLOCK = "SELECT " + DatabaseHelper.COLUMN_ARCHIVE_DATA
+            + " FROM " + DatabaseHelper.TABLE_ARCHIVE + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + " = ?"
+            + " AND " + DatabaseHelper.COLUMN_ARCHIVE_MONTH + " = ?";
+    // The block of a month that covers a date, if any
+    static final String SQL_BLOCK_AT = SQL_BLOCK
+            + " AND " + DatabaseHelper.COLUMN_ARCHIVE_FIRST_DATE + " <= ?3 AND " + DatabaseHelper.COLUMN_ARCHIVE_LAST_DATE + " >= ?3";
+    static final String SQL_BLOCKS_WITH_ID = "SELECT " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + ", "
+            + DatabaseHelper.COLUMN_ARCHIVE_MONTH + ", " + DatabaseHelper.COLUMN_ARCHIVE_DATA
+            + " FROM " + DatabaseHelper.TABLE_ARCHIVE + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_MIN_ID + " <= ?1"
+            + " AND " + DatabaseHelper.COLUMN_ARCHIVE_MAX_ID + " >= ?1";
+    static final String SQL_BLOCKS_IN_MONTHS = "SELECT " + DatabaseHelper.COLUMN_ARCHIVE_MONTH + ", "
+            + DatabaseHelper.COLUMN_ARCHIVE_DATA + " FROM " + DatabaseHelper.TABLE_ARCHIVE
+            + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + " = ?"
+            + " AND " + DatabaseHelper.COLUMN_ARCHIVE_MONTH + " BETWEEN ? AND ?";
+    static final String SQL_NEWEST_BLOCK = "SELECT " + DatabaseHelper.COLUMN_ARCHIVE_MONTH + ", "
+            + DatabaseHelper.COLUMN_ARCHIVE_LAST_DATE + ", " + DatabaseHelper.COLUMN_ARCHIVE_DATA
+            + " FROM " + DatabaseHelper.TABLE_ARCHIVE + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + " = ?"
+            + " ORDER BY " + DatabaseHelper.COLUMN_ARCHIVE_MONTH + " DESC LIMIT 1";
+    // Every block, read only to restore them all before a rollup rebuild
+    static final String SQL_ALL_BLOCKS = "SELECT " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + ", "
+            + DatabaseHelper.COLUMN_ARCHIVE_MONTH + ", " + DatabaseHelper.COLUMN_ARCHIVE_DATA
+            + " FROM " + DatabaseHelper.TABLE_ARCHIVE;
+    private static final String SQL_REPLACE = "INSERT OR REPLACE INTO " + DatabaseHelper.TABLE_ARCHIVE + " ("
+            + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + ", " + DatabaseHelper.COLUMN_ARCHIVE_MONTH + ", "
+            + DatabaseHelper.COLUMN_ARCHIVE_FIRST_DATE + ", " + DatabaseHelper.COLUMN_ARCHIVE_LAST_DATE + ", "
+            + DatabaseHelper.COLUMN_ARCHIVE_MIN_ID + ", " + DatabaseHelper.COLUMN_ARCHIVE_MAX_ID + ", "
+            + DatabaseHelper.COLUMN_ARCHIVE_DATA + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+    static final String SQL_DELETE_BLOCK = "DELETE FROM " + DatabaseHelper.TABLE_ARCHIVE
+            + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_ARCHIVE_MONTH + " = ?";
+    static final String SQL_DELETE_USER = "DELETE FROM " + DatabaseHelper.TABLE_ARCHIVE
+            + " WHERE " + DatabaseHelper.COLUMN_ARCHIVE_USER_ID + " = ?";
+    // Puts an entry back under its original id
+    private static final String SQL_RESTORE = "INSERT INTO " + DatabaseHelper.TABLE_WEIGHTS + " ("
+            + DatabaseHelper.COLUMN_ID + ", " + DatabaseHelper.COLUMN_WEIGHT + ", " + DatabaseHelper.COLUMN_DATE + ", "
+            + DatabaseHelper.COLUMN_WEIGHT_USER_ID + ") VALUES (?, ?, ?, ?)";
+    // users._id, qualified inside subqueries on the weights table, which has its own _id
+    private static final String USER_ID = DatabaseHelper.TABLE_USERS + "." + DatabaseHelper.COLUMN_USER_ID;
+    // Each user's latest date, one probe of the (user_id, date, _id, weight) index per user rather
+    // than a walk over all of it. Users without entries are left out.
+    static final String SQL_LATEST_DATES = "SELECT " + DatabaseHelper.COLUMN_USER_ID
+            + ", (SELECT MAX(" + DatabaseHelper.COLUMN_DATE + ") FROM " + DatabaseHelper.TABLE_WEIGHTS
+            + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = " + USER_ID + ")"
+            + " FROM " + DatabaseHelper.TABLE_USERS + " WHERE EXISTS (SELECT 1 FROM " + DatabaseHelper.TABLE_WEIGHTS
+            + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = " + USER_ID + ")";
+    static final String SQL_LATEST_DATE = "SELECT MAX(" + DatabaseHelper.COLUMN_DATE + ") FROM "
+            + DatabaseHelper.TABLE_WEIGHTS + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ?";
+    static final String SQL_ENTRIES_BEFORE = "SELECT " + DatabaseHelper.COLUMN_ID + ", "
+            + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_WEIGHT + " FROM " + DatabaseHelper.TABLE_WEIGHTS
+            + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_DATE + " < ?"
+            + " ORDER BY " + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_ID;
+    static final String SQL_DELETE_BEFORE = "DELETE FROM " + DatabaseHelper.TABLE_WEIGHTS
+            + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_DATE + " < ?";
+
+    /**
+     * Entries decoded from the archive, as parallel arrays in (date, _id) order.
+     */
+    static final class Entries {
+        long[] ids;
+        long[] dates;
+        double[] weights;
+        int size;
+
+        Entries(int capacity) {
+            ids = new long[capacity];
+            dates = new long[capacity];
+            weights = new double[capacity];
+        }
+
+        // Makes room for count more entries
+        void ensureCapacity(int count) {
+            if (size + count > ids.length) {
+                int capacity = Math.max(size + count, ids.length + (ids.length >> 1));
+                ids = Arrays.copyOf(ids, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+        }
+
+        void add(long id, long date, double weight) {
+            ensureCapacity(1);
+            ids[size] = id;
+            dates[size] = date;
+            weights[size] = weight;
+            size++;
+        }
+
+        // Decodes a block onto the end
+        void addBlock(byte[] block) {
+            ensureCapacity(WeightBlock.count(block));
+            size += WeightBlock.decode(block, ids, dates, weights, size);
+        }
+    }
+
+    private final SQLiteDatabase db;
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final SQLiteStatement replace;
+    private final SQLiteStatement deleteBlock;
+    private final SQLiteStatement deleteUser;
+    private final SQLiteStatement restore;
+    private final SQLiteStatement deleteBefore;
+
+    WeightArchive(SQLiteDatabase db) {
+        this.db = db;
+        replace = db.compileStatement(SQL_REPLACE);
+        deleteBlock = db.compileStatement(SQL_DELETE_BLOCK);
+        deleteUser = db.compileStatement(SQL_DELETE_USER);
+        restore = db.compileStatement(SQL_RESTORE);
+        deleteBefore = db.compileStatement(SQL_DELETE_BEFORE);
+    }
+
+    // Check if these statements were compiled against the given, still open, database
+    boolean isFor(SQLiteDatabase database) {
+        return db == database && db.isOpen();
+    }
+
+    // Check if a user has any archived entries, so reads can skip merging when they have none
+    static boolean hasBlocks(SQLiteDatabase db, long userId) {
+        try (Cursor cursor = db.rawQuery(SQL_HAS_BLOCKS, new String[]{String.valueOf(userId)})) {
+            return cursor.moveToFirst() && cursor.getInt(0) != 0;
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} of a user's archived entries after the (afterDate, afterId)
+     * position up to and including the (toDate, toId) position, oldest first. Whole blocks are
+     * decoded, so a few more than {@code limit} may be returned.
+     */
+    static Entries read(SQLiteDatabase db, long userId, long afterDate, long afterId, long toDate, long toId,
+                        int limit) {
+        Entries entries = new Entries(64);
+        try (Cursor cursor = db.rawQuery(SQL_BLOCKS_BETWEEN, new String[]{String.valueOf(userId),
+                String.valueOf(afterDate), String.valueOf(toDate)})) {
+            while (entries.size < limit && cursor.moveToNext()) {
+                int from = entries.size;
+                entries.addBlock(cursor.getBlob(0));
+                // Keeps only the entries inside the range
+                int kept = from;
+                for (int i = from; i < entries.size; i++) {
+                    long date = entries.dates[i];
+                    long id = entries.ids[i];
+                    if ((date > afterDate || (date == afterDate && id > afterId))
+                            && (date < toDate || (date == toDate && id <= toId))) {
+                        entries.ids[kept] = id;
+                        entries.dates[kept] = date;
+                        entries.weights[kept] = entries.weights[i];
+                        kept++;
+                    }
+                }
+                entries.size = kept;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Archives each user's entries from months that ended before {@code cutoff}, keeping
+     * {@link WeightTrends#HORIZON_DAYS} before their latest entry live so the trend never reads the
+     * archive. Entries in a month that already has a block are merged into it. Call inside a
+     * transaction.
+     *
+     * @return the number of entries archived
+     */
+    synchronized int archive(long cutoff) {
+        long[] users;
+        long[] latestDates;
+        try (Cursor cursor = db.rawQuery(SQL_LATEST_DATES, null)) {
+            users = new long[cursor.getCount()];
+            latestDates = new long[users.length];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                users[i] = cursor.getLong(0);
+                latestDates[i] = cursor.getLong(1);
+            }
+        }
+        int archived = 0;
+        int blocks = 0;
+        Entries month = new Entries(64);
+        for (int i = 0; i < users.length; i++) {
+            long limit = Math.min(cutoff, latestDates[i] - WeightTrends.HORIZON_DAYS * MILLIS_PER_DAY);
+            // Only whole months are archived
+            long end = WeightSketches.monthStart(WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, limit, timeZone),
+                    timeZone);
+            long current = Long.MIN_VALUE;
+            month.size = 0;
+            try (Cursor cursor = db.rawQuery(SQL_ENTRIES_BEFORE, new String[]{String.valueOf(users[i]),
+                    String.valueOf(end)})) {
+                while (cursor.moveToNext()) {
+                    long date = cursor.getLong(1);
+                    long entryMonth = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, date, timeZone);
+                    if (month.size > 0 && entryMonth != current) {
+                        pack(users[i], current, month);
+                        blocks++;
+                        month.size = 0;
+                    }
+                    month.add(cursor.getLong(0), date, cursor.getDouble(2));
+                    current = entryMonth;
+                    archived++;
+                }
+            }
+            if (month.size > 0) {
+                pack(users[i], current, month);
+                blocks++;
+                deleteBefore.bindLong(1, users[i]);
+                deleteBefore.bindLong(2, end);
+                deleteBefore.executeUpdateDelete();
+            }
+        }
+        if (archived > 0) {
+            Log.i(TAG, "Archived " + archived + " entries into " + blocks + " blocks");
+        }
+        return archived;
+    }
+
+    // Check if a user has an archived entry recorded at exactly this time
+    synchronized boolean existsAt(long userId, long date) {
+        long month = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, date, timeZone);
+        try (Cursor cursor = db.rawQuery(SQL_BLOCK_AT, new String[]{String.valueOf(userId), String.valueOf(month),
+                String.valueOf(date)})) {
+            if (!cursor.moveToFirst()) {
+                return false;
+            }
+            Entries entries = new Entries(64);
+            entries.addBlock(cursor.getBlob(0));
+            for (int i = 0; i < entries.size; i++) {
+                if (entries.dates[i] == date) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Restores the month holding an archived entry to the weights table.
+     *
+     * @return false if no block holds the entry
+     */
+    synchronized boolean restoreId(long id) {
+        try (Cursor cursor = db.rawQuery(SQL_BLOCKS_WITH_ID, new String[]{String.valueOf(id)})) {
+            while (cursor.moveToNext()) {
+                Entries entries = new Entries(64);
+                entries.addBlock(cursor.getBlob(2));
+                for (int i = 0; i < entries.size; i++) {
+                    if (entries.ids[i] == id) {
+                        restore(cursor.getLong(0), cursor.getLong(1), entries);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Restores the months within a week either side of a date, before an entry there is changed
+    synchronized void restoreAround(long userId, long date) {
+        long first = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, date - WEEK_MILLIS, timeZone);
+        long last = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, date + WEEK_MILLIS, timeZone);
+        try (Cursor cursor = db.rawQuery(SQL_BLOCKS_IN_MONTHS, new String[]{String.valueOf(userId),
+                String.valueOf(first), String.valueOf(last)})) {
+            while (cursor.moveToNext()) {
+                Entries entries = new Entries(64);
+                entries.addBlock(cursor.getBlob(1));
+                restore(userId, cursor.getLong(0), entries);
+            }
+        }
+    }
+
+    /**
+     * Restores a user's newest blocks, after a delete, until the live entries again cover
+     * {@link WeightTrends#HORIZON_DAYS} before the latest or no blocks are left.
+     */
+    synchronized void keepRecentLive(long userId) {
+        String[] args = {String.valueOf(userId)};
+        while (true) {
+            long latest;
+            try (Cursor cursor = db.rawQuery(SQL_LATEST_DATE, args)) {
+                latest = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : Long.MIN_VALUE;
+            }
+            try (Cursor cursor = db.rawQuery(SQL_NEWEST_BLOCK, args)) {
+                if (!cursor.moveToFirst() || (latest != Long.MIN_VALUE
+                        && cursor.getLong(1) <= latest - WeightTrends.HORIZON_DAYS * MILLIS_PER_DAY)) {
+                    return;
+                }
+                Entries entries = new Entries(64);
+                entries.addBlock(cursor.getBlob(2));
+                restore(userId, cursor.getLong(0), entries);
+            }
+        }
+    }
+
+    /**
+     * Restores every block to the weights table, for rebuilds that read only the weights. Call
+     * inside a transaction.
+     *
+     * @return the number of entries restored
+     */
+    synchronized int restoreAll() {
+        int restored = 0;
+        Entries entries = new Entries(64);
+        try (Cursor cursor = db.rawQuery(SQL_ALL_BLOCKS, null)) {
+            while (cursor.moveToNext()) {
+                entries.size = 0;
+                entries.addBlock(cursor.getBlob(2));
+                restore(cursor.getLong(0), cursor.getLong(1), entries);
+                restored += entries.size;
+            }
+        }
+        return restored;
+    }
+
+    // Drops a user's blocks after all their entries were deleted
+    synchronized void deleteUser(long userId) {
+        deleteUser.bindLong(1, userId);
+        deleteUser.executeUpdateDelete();
+    }
+
+    // Writes a month's entries as its block, merged with any block it already has
+    private void pack(long userId, long month, Entries entries) {
+        Entries packed = entries;
+        try (Cursor cursor = db.rawQuery(SQL_BLOCK, new String[]{String.valueOf(userId), String.valueOf(month)})) {
+            if (cursor.moveToFirst()) {
+                Entries existing = new Entries(entries.size + 64);
+                existing.addBlock(cursor.getBlob(0));
+                packed = merge(existing, entries);
+            }
+        }
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        for (int i = 0; i < packed.size; i++) {
+            minId = Math.min(minId, packed.ids[i]);
+            maxId = Math.max(maxId, packed.ids[i]);
+        }
+        replace.bindLong(1, userId);
+        replace.bindLong(2, month);
+        replace.bindLong(3, packed.dates[0]);
+        replace.bindLong(4, packed.dates[packed.size - 1]);
+        replace.bindLong(5, minId);
+        replace.bindLong(6, maxId);
+        replace.bindBlob(7, WeightBlock.encode(packed.ids, packed.dates, packed.weights, 0, packed.size));
+        replace.executeInsert();
+    }
+
+    // Puts a block's entries back in the weights table and drops the block
+    private void restore(long userId, long month, Entries entries) {
+        for (int i = 0; i < entries.size; i++) {
+            restore.bindLong(1, entries.ids[i]);
+            restore.bindDouble(2, entries.weights[i]);
+            restore.bindLong(3, entries.dates[i]);
+            restore.bindLong(4, userId);
+            restore.executeInsert();
+        }
+        deleteBlock.bindLong(1, userId);
+        deleteBlock.bindLong(2, month);
+        deleteBlock.executeUpdateDelete();
+    }
+
+    // Merges two runs of entries, each in (date, _id) order
+    static Entries merge(Entries a, Entries b) {
+        Entries merged = new Entries(a.size + b.size);
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && (a.dates[i] < b.dates[j]
+                    || (a.dates[i] == b.dates[j] && a.ids[i] < b.ids[j])))) {
+                merged.add(a.ids[i], a.dates[i], a.weights[i]);
+                i++;
+            } else {
+                merged.add(b.ids[j], b.dates[j], b.weights[j]);
+                j++;
+            }
+        }
+        return merged;
+    }
+
+    void close() {
+        replace.close();
+        deleteBlock.close();
+        deleteUser.close();
+        restore.close();
+        deleteBefore.close();
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.dailyweighttracker;
+
+import java.util.Arrays;
+
+/**
+ * Compresses a run of entries, in (date, id) order, into one block in the style of Facebook's
+ * Gorilla time series encoding. The first entry is stored whole; each later date and id as the
+ * change in its delta from the previous entry's, in a variable-width bucket, and each weight as
+ * the XOR of its bits with the previous weight's, keeping only the bits that differ. Entries read
+ * at about the same time each day cost a few bits for the date, consecutive ids one bit, and a
+ * repeated weight one bit.
+ *
+ * <p>The date buckets are wider than Gorilla's, which were sized for timestamps in seconds taken
+ * at fixed intervals; these are milliseconds, a day or so apart.
+ */
+final class WeightBlock {
+
+    // Header: entry count, then the first id, date and weight bits
+    private static final int COUNT_BITS = 32;
+
+    private WeightBlock() {
+    }
+
+    /**
+     * Encodes entries {@code from} (inclusive) to {@code to} (exclusive) of the given arrays.
+     */
+    static byte[] encode(long[] ids, long[] dates, double[] weights, int from, int to) {
+        BitWriter out = new BitWriter(16 + (to - from) * 4);
+        out.write(to - from, COUNT_BITS);
+        if (to == from) {
+            return out.toBytes();
+        }
+        out.write(ids[from], 64);
+        out.write(dates[from], 64);
+        long previousBits = Double.doubleToRawLongBits(weights[from]);
+        out.write(previousBits, 64);
+        long idDelta = 0;
+        long dateDelta = 0;
+        int leading = Integer.MAX_VALUE;
+        int trailing = 0;
+        for (int i = from + 1; i < to; i++) {
+            long delta = ids[i] - ids[i - 1];
+            writeDeltaOfDelta(out, delta - idDelta);
+            idDelta = delta;
+            delta = dates[i] - dates[i - 1];
+            writeDeltaOfDelta(out, delta - dateDelta);
+            dateDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(weights[i]);
+            long xor = bits ^ previousBits;
+            previousBits = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int xorLeading = Long.numberOfLeadingZeros(xor);
+            int xorTrailing = Long.numberOfTrailingZeros(xor);
+            if (xorLeading >= leading && xorTrailing >= trailing) {
+                // Fits in the previous window of meaningful bits
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                leading = xorLeading;
+                trailing = xorTrailing;
+                int meaningful = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 6);
+                out.write(meaningful - 1, 6);
+                out.write(xor >>> trailing, meaningful);
+            }
+        }
+        return out.toBytes();
+    }
+
+    // The number of entries in a block
+    static int count(byte[] block) {
+        return (int) new BitReader(block).read(COUNT_BITS);
+    }
+
+    /**
+     * Decodes a block into the given arrays from index {@code at}, which must have room for
+     * {@link #count(byte[])} more entries.
+     *
+     * @return the number of entries decoded
+     */
+    static int decode(byte[] block, long[] ids, long[] dates, double[] weights, int at) {
+        BitReader in = new BitReader(block);
+        int count = (int) in.read(COUNT_BITS);
+        if (count == 0) {
+            return 0;
+        }
+        long id = in.read(64);
+        long date = in.read(64);
+        long bits = in.read(64);
+        ids[at] = id;
+        dates[at] = date;
+        weights[at] = Double.longBitsToDouble(bits);
+        long idDelta = 0;
+        long dateDelta = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            idDelta += readDeltaOfDelta(in);
+            id += idDelta;
+            dateDelta += readDeltaOfDelta(in);
+            date += dateDelta;
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = (int) in.read(6);
+                    trailing = 64 - leading - ((int) in.read(6) + 1);
+                }
+                bits ^= in.read(64 - leading - trailing) << trailing;
+            }
+            ids[at + i] = id;
+            dates[at + i] = date;
+            weights[at + i] = Double.longBitsToDouble(bits);
+        }
+        return count;
+    }
+
+    // '0' for no change, then 7, 24 and 32-bit two's complement buckets behind '10', '110' and
+    // '1110', and the whole value behind '1111'
+    private static void writeDeltaOfDelta(BitWriter out, long value) {
+        if (value == 0) {
+            out.write(0, 1);
+        } else if (fits(value, 7)) {
+            out.write(0b10, 2);
+            out.write(value, 7);
+        } else if (fits(value, 24)) {
+            out.write(0b110, 3);
+            out.write(value, 24);
+        } else if (fits(value, 32)) {
+            out.write(0b1110, 4);
+            out.write(value, 32);
+        } else {
+            out.write(0b1111, 4);
+            out.write(value, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (in.read(1) == 0) {
+            return 0;
+        }
+        if (in.read(1) == 0) {
+            return signed(in.read(7), 7);
+        }
+        if (in.read(1) == 0) {
+            return signed(in.read(24), 24);
+        }
+        if (in.read(1) == 0) {
+            return signed(in.read(32), 32);
+        }
+        return in.read(64);
+    }
+
+    private static boolean fits(long value, int bits) {
+        return value >= -(1L << (bits - 1)) && value < (1L << (bits - 1));
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    // Writes values most significant bit first into a growing byte array
+    private static final class BitWriter {
+        private byte[] bytes;
+        private long position;
+
+        BitWriter(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        // Writes the low {@code count} bits of value
+        void write(long value, int count) {
+            while (count > 0) {
+                int index = (int) (position >>> 3);
+                if (index == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                int free = 8 - (int) (position & 7);
+                int take = Math.min(free, count);
+                int chunk = (int) (value >>> (count - take)) & ((1 << take) - 1);
+                bytes[index] |= (byte) (chunk << (free - take));
+                position += take;
+                count -= take;
+            }
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(bytes, (int) ((position + 7) >>> 3));
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] bytes;
+        private long position;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long read(int count) {
+            long value = 0;
+            while (count > 0) {
+                int available = 8 - (int) (position & 7);
+                int take = Math.min(available, count);
+                int current = bytes[(int) (position >>> 3)] & 0xFF;
+                value = (value << take) | ((current >>> (available - take)) & ((1 << take) - 1));
+                position += take;
+                count -= take;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the histories of recently used users in memory as parallel primitive arrays ordered by
+ * (date, _id), so switching between users on a shared device doesn't re-read their weights.
+ * A user's history is loaded on first use and kept in step by {@link DatabaseHelper}'s write
+ * methods after they commit. Histories are evicted least recently used first once their arrays
+ * exceed the memory budget; the most recently used one is kept even if it alone exceeds it.
+ *
+ * <p>Thread safe. Loading a history queries the database, so call it off the main thread.
+ */
+final class WeightCache {
+
+    // Bytes held per entry: a long id, a long date and a double weight
+    static final int BYTES_PER_ENTRY = 8 + 8 + 8;
+
+    /**
+     * A copy of a user's history, oldest first.
+     */
+    static final class History {
+        final long[] ids;
+        final long[] dates;
+        final double[] weights;
+        final int size;
+
+        History(long[] ids, long[] dates, double[] weights, int size) {
+            this.ids = ids;
+            this.dates = dates;
+            this.weights = weights;
+            this.size = size;
+        }
+    }
+
+    // One user's entries; the arrays have spare capacity at the end
+    private static final class Series {
+        long[] ids;
+        long[] dates;
+        double[] weights;
+        int size;
+
+        Series(int capacity) {
+            ids = new long[capacity];
+            dates = new long[capacity];
+            weights = new double[capacity];
+        }
+
+        long bytes() {
+            return (long) ids.length * BYTES_PER_ENTRY;
+        }
+
+        // Index the entry at (date, id) has or would have
+        int position(long date, long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (dates[mid] < date || (dates[mid] == date && ids[mid] < id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void insert(int at, long id, long date, double weight) {
+            if (size == ids.length) {
+                int capacity = Math.max(16, size + (size >> 1));
+                ids = Arrays.copyOf(ids, capacity);
+                dates = Arrays.copyOf(dates, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(dates, at, dates, at + 1, size - at);
+            System.arraycopy(weights, at, weights, at + 1, size - at);
+            ids[at] = id;
+            dates[at] = date;
+            weights[at] = weight;
+            size++;
+        }
+
+        void remove(int at) {
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(dates, at + 1, dates, at, size - at - 1);
+            System.arraycopy(weights, at + 1, weights, at, size - at - 1);
+            size--;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final Map<Long, Series> series = new LinkedHashMap<>(8, 0.75f, true);
+    private long budgetBytes;
+    private long usedBytes;
+
+    WeightCache(DatabaseHelper dbHelper, long budgetBytes) {
+        this.dbHelper = dbHelper;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Sets the memory budget, evicting histories now if they exceed it.
+     */
+    synchronized void setBudget(long bytes) {
+        budgetBytes = bytes;
+        evict();
+    }
+
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    // Whether a user's history is in memory, without loading it
+    synchronized boolean contains(long userId) {
+        return series.containsKey(userId);
+    }
+
+    /**
+     * Returns a user's most recent entry, or null if they have none.
+     */
+    synchronized WeightEntry getLatest(long userId) {
+        Series entries = load(userId);
+        if (entries.size == 0) {
+            return null;
+        }
+        int last = entries.size - 1;
+        return new WeightEntry(entries.ids[last], entries.weights[last], entries.dates[last]);
+    }
+
+    /**
+     * Returns a copy of a user's history.
+     */
+    synchronized History getHistory(long userId) {
+        Series entries = load(userId);
+        return new History(Arrays.copyOf(entries.ids, entries.size), Arrays.copyOf(entries.dates, entries.size),
+                Arrays.copyOf(entries.weights, entries.size), entries.size);
+    }
+
+    // Records a committed insert. Loading may already have read the row, so it is added only once.
+    synchronized void onInserted(long userId, long id, long date, double weight) {
+        Series entries = series.get(userId);
+        if (entries == null || id == -1) {
+            return;
+        }
+        int at = entries.position(date, id);
+        if (at < entries.size && entries.ids[at] == id) {
+            return;
+        }
+        long before = entries.bytes();
+        entries.insert(at, id, date, weight);
+        usedBytes += entries.bytes() - before;
+        evict();
+    }
+
+    // Records a committed update of one of a user's entries
+    synchronized void onUpdated(long userId, long id, long date, double weight) {
+        Series entries = series.get(userId);
+        if (entries == null) {
+            return;
+        }
+        int at = entries.position(date, id);
+        if (at < entries.size && entries.ids[at] == id) {
+            entries.weights[at] = weight;
+        }
+    }
+
+    // Records a committed delete of one of a user's entries
+    synchronized void onDeleted(long userId, long id, long date) {
+        Series entries = series.get(userId);
+        if (entries == null) {
+            return;
+        }
+        int at = entries.position(date, id);
+        if (at < entries.size && entries.ids[at] == id) {
+            entries.remove(at);
+        }
+    }
+
+    // Drops a user's history, to be loaded again on next use
+    synchronized void invalidate(long userId) {
+        Series entries = series.remove(userId);
+        if (entries != null) {
+            usedBytes -= entries.bytes();
+        }
+    }
+
+    // Drops every history, for writes too large to apply one entry at a time
+    synchronized void invalidateAll() {
+        series.clear();
+        usedBytes = 0;
+    }
+
+    private Series load(long userId) {
+        Series entries = series.get(userId);
+        if (entries != null) {
+            return entries;
+        }
+        try (Cursor cursor = dbHelper.getAllWeights(userId)) {
+            entries = new Series(Math.max(16, cursor.getCount()));
+            while (cursor.moveToNext()) {
+                int at = entries.size++;
+                entries.ids[at] = cursor.getLong(0);
+                entries.weights[at] = cursor.getDouble(1);
+                entries.dates[at] = cursor.getLong(2);
+            }
+        }
+        series.put(userId, entries);
+        usedBytes += entries.bytes();
+        evict();
+        return entries;
+    }
+
+    // Evicts least recently used histories until the budget is met, keeping the newest
+    private void evict() {
+        Iterator<Series> eldest = series.values().iterator();
+        while (usedBytes > budgetBytes && series.size() > 1) {
+            usedBytes -= eldest.next().bytes();
+            eldest.remove();
+        }
+    }
+}
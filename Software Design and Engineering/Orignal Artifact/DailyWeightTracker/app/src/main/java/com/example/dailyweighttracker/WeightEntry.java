@@ -0,0 +1,63 @@
+package com.example.dailyweighttracker;
+
+/**
+ * A single weight reading: its row id, the weight in the user's unit, and when it was recorded
+ * (epoch milliseconds).
+ */
+public final class WeightEntry {
+
+    // Id of an entry that hasn't been stored yet
+    public static final long NO_ID = -1;
+
+    private final long id;
+    private final double weight;
+    private final long date;
+
+    public WeightEntry(long id, double weight, long date) {
+        this.id = id;
+        this.weight = weight;
+        this.date = date;
+    }
+
+    // Creates an entry to be inserted
+    public static WeightEntry of(double weight, long date) {
+        return new WeightEntry(NO_ID, weight, date);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WeightEntry)) {
+            return false;
+        }
+        WeightEntry other = (WeightEntry) o;
+        return id == other.id && date == other.date && Double.compare(weight, other.weight) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(id);
+        result = 31 * result + Double.hashCode(weight);
+        result = 31 * result + Long.hashCode(date);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "WeightEntry{id=" + id + ", weight=" + weight + ", date=" + date + "}";
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a user's weight history to a CSV or JSON file.
+ * Entries are read in keyset-paginated pages ordered by (date, _id), so only one page is held in
+ * a CursorWindow at a time, and are encoded straight into a reused buffer that is drained to a
+ * {@link FileChannel}. Memory use is the same for ten rows or ten million.
+ *
+ * <p>CSV output has a {@code date,weight} header and dates in epoch milliseconds, which
+ * {@link WeightImporter} reads back as is. JSON output is an array of {@code {"date", "weight"}}
+ * objects. With gzip, each export or resumed part is its own gzip member; gzip readers
+ * decompress concatenated members as one stream.
+ */
+public class WeightExporter {
+
+    private static final String TAG = "WeightExporter";
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format { CSV, JSON }
+
+    /**
+     * Where an export stopped: the last entry written and the file length at that point.
+     * Pass it back to {@link #export} to continue a cancelled export.
+     */
+    public static final class Checkpoint {
+        public final long lastDate;
+        public final long lastId;
+        public final long rowsWritten;
+        public final long bytesWritten;
+        public final boolean complete;
+
+        Checkpoint(long lastDate, long lastId, long rowsWritten, long bytesWritten, boolean complete) {
+            this.lastDate = lastDate;
+            this.lastId = lastId;
+            this.rowsWritten = rowsWritten;
+            this.bytesWritten = bytesWritten;
+            this.complete = complete;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final int pageSize;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // Scratch space for formatting one number
+    private final byte[] digits = new byte[20];
+
+    public WeightExporter(DatabaseHelper dbHelper) {
+        this(dbHelper, DEFAULT_PAGE_SIZE);
+    }
+
+    public WeightExporter(DatabaseHelper dbHelper, int pageSize) {
+        this.dbHelper = dbHelper;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Exports the user's entries to {@code file}.
+     *
+     * @param resumeFrom a checkpoint returned by a cancelled export of the same user, file, format
+     *                   and compression, or null to start a new file
+     * @param signal     cancels the export between pages; may be null
+     * @return a checkpoint that is {@link Checkpoint#complete} unless the export was cancelled
+     */
+    public synchronized Checkpoint export(long userId, File file, Format format, boolean gzip,
+                                          Checkpoint resumeFrom, CancellationSignal signal) throws IOException {
+        long lastDate = resumeFrom != null ? resumeFrom.lastDate : Long.MIN_VALUE;
+        long lastId = resumeFrom != null ? resumeFrom.lastId : Long.MIN_VALUE;
+        long rows = resumeFrom != null ? resumeFrom.rowsWritten : 0;
+        boolean cancelled = false;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel fileChannel = raf.getChannel()) {
+            // Drop anything written after the checkpoint, then append
+            long start = resumeFrom != null ? resumeFrom.bytesWritten : 0;
+            fileChannel.truncate(start);
+            fileChannel.position(start);
+
+            GZIPOutputStream gzipStream = null;
+            WritableByteChannel out = fileChannel;
+            if (gzip) {
+                OutputStream fileStream = Channels.newOutputStream(fileChannel);
+                gzipStream = new GZIPOutputStream(fileStream, BUFFER_SIZE);
+                out = Channels.newChannel(gzipStream);
+            }
+
+            buffer.clear();
+            if (resumeFrom == null) {
+                putAscii(format == Format.CSV ? "date,weight\n" : "[");
+            }
+
+            while (true) {
+                if (signal != null && signal.isCanceled()) {
+                    cancelled = true;
+                    break;
+                }
+                int pageRows = 0;
+                try (Cursor page = dbHelper.getWeightsAfter(userId, lastDate, lastId, pageSize, signal)) {
+                    while (page.moveToNext()) {
+                        lastId = page.getLong(0);
+                        double weight = page.getDouble(1);
+                        lastDate = page.getLong(2);
+                        writeEntry(out, format, lastDate, weight, rows == 0);
+                        rows++;
+                        pageRows++;
+                    }
+                } catch (OperationCanceledException e) {
+                    cancelled = true;
+                    break;
+                }
+                if (pageRows < pageSize) {
+                    break;
+                }
+            }
+
+            if (!cancelled && format == Format.JSON) {
+                putAscii("]");
+            }
+            drain(out);
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+            fileChannel.force(false);
+
+            Checkpoint checkpoint = new Checkpoint(lastDate, lastId, rows, fileChannel.position(), !cancelled);
+            Log.i(TAG, (cancelled ? "Export cancelled after " : "Exported ") + rows + " rows to " + file);
+            return checkpoint;
+        }
+    }
+
+    private void writeEntry(WritableByteChannel out, Format format, long date, double weight, boolean first)
+            throws IOException {
+        // Longest entry is well under 100 bytes
+        if (buffer.remaining() < 100) {
+            drain(out);
+        }
+        if (format == Format.CSV) {
+            putLong(date);
+            buffer.put((byte) ',');
+            putAscii(Double.toString(weight));
+            buffer.put((byte) '\n');
+        } else {
+            if (!first) {
+                buffer.put((byte) ',');
+            }
+            putAscii("{\"date\":");
+            putLong(date);
+            putAscii(",\"weight\":");
+            putAscii(Double.toString(weight));
+            buffer.put((byte) '}');
+        }
+    }
+
+    private void drain(WritableByteChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putAscii(String text) {
+        buffer.put(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Writes a decimal long without going through a String
+    private void putLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            putAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (length > 0) {
+            buffer.put(digits[--length]);
+        }
+    }
+}
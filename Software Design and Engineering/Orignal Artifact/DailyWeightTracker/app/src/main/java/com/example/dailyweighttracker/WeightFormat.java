@@ -0,0 +1,157 @@
+package com.example.dailyweighttracker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Formats weights to one decimal place with their unit, and dates as
+ * {@link DatabaseHelper#DISPLAY_DATE_PATTERN} in local time, without a formatter per value.
+ * Weight texts are built once per tenth and reused; dates are written into a char buffer owned by
+ * the view showing them. One instance per unit is shared by all screens. No Android APIs are used,
+ * so the benchmark module compiles it for the JVM.
+ *
+ * <p>Used on the main thread only.
+ */
+public final class WeightFormat {
+
+    // Length of a date in DISPLAY_DATE_PATTERN
+    static final int DATE_LENGTH = 19;
+    // Length of the " HH:mm:ss" after the day
+    private static final int DAY_SUFFIX_LENGTH = 9;
+    // Weights from 0.0 to 999.9 have their text cached
+    private static final int CACHED_TENTHS = 10_000;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private static final Map<String, WeightFormat> INSTANCES = new HashMap<>();
+    private static TimeZone instanceTimeZone;
+
+    private final String suffix;
+    private final TimeZone timeZone;
+    private final String[] texts = new String[CACHED_TENTHS];
+    private final char[] scratch = new char[32];
+
+    /**
+     * Returns the shared format for a unit. Formats are rebuilt if the device's time zone changed.
+     */
+    public static WeightFormat get(String unit) {
+        TimeZone timeZone = TimeZone.getDefault();
+        if (!timeZone.equals(instanceTimeZone)) {
+            INSTANCES.clear();
+            instanceTimeZone = timeZone;
+        }
+        WeightFormat format = INSTANCES.get(unit);
+        if (format == null) {
+            format = new WeightFormat(unit, timeZone);
+            INSTANCES.put(unit, format);
+        }
+        return format;
+    }
+
+    WeightFormat(String unit, TimeZone timeZone) {
+        this.suffix = " " + unit;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Returns the weight rounded to one decimal place, followed by the unit, e.g. "150.5 lbs".
+     */
+    public String format(double weight) {
+        long tenths = Math.round(weight * 10);
+        if (tenths < 0 || tenths >= CACHED_TENTHS) {
+            return formatNumber(weight) + suffix;
+        }
+        String text = texts[(int) tenths];
+        if (text == null) {
+            int length = writeTenths(tenths, scratch, 0);
+            suffix.getChars(0, suffix.length(), scratch, length);
+            text = new String(scratch, 0, length + suffix.length());
+            texts[(int) tenths] = text;
+        }
+        return text;
+    }
+
+    /**
+     * Returns the weight rounded to one decimal place without a unit, for input fields.
+     */
+    public static String formatNumber(double weight) {
+        char[] chars = new char[24];
+        return new String(chars, 0, writeTenths(Math.round(weight * 10), chars, 0));
+    }
+
+    /**
+     * Returns a date in local time as yyyy-MM-dd, for dates shown as part of a longer text.
+     */
+    public String formatDay(long millis) {
+        return new String(scratch, 0, writeDate(millis, scratch, 0) - DAY_SUFFIX_LENGTH);
+    }
+
+    /**
+     * Writes a date in local time as yyyy-MM-dd HH:mm:ss, and returns the index after it. A text
+     * view shown from {@code into} keeps a reference to it, so each view needs its own buffer of
+     * at least {@link #DATE_LENGTH} chars.
+     */
+    int writeDate(long millis, char[] into, int at) {
+        long local = millis + timeZone.getOffset(millis);
+        long days = Math.floorDiv(local, MILLIS_PER_DAY);
+        int secondOfDay = (int) (Math.floorMod(local, MILLIS_PER_DAY) / 1000);
+
+        // Civil date from days since 1970-01-01, counted in 400-year eras starting on March 1st
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        int dayOfEra = (int) (z - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        at = writeDigits((int) year, 4, into, at);
+        into[at++] = '-';
+        at = writeDigits(month, 2, into, at);
+        into[at++] = '-';
+        at = writeDigits(day, 2, into, at);
+        into[at++] = ' ';
+        at = writeDigits(secondOfDay / 3600, 2, into, at);
+        into[at++] = ':';
+        at = writeDigits(secondOfDay / 60 % 60, 2, into, at);
+        into[at++] = ':';
+        return writeDigits(secondOfDay % 60, 2, into, at);
+    }
+
+    // Writes a count of tenths as a decimal with one fractional digit, and returns the index after it
+    private static int writeTenths(long tenths, char[] into, int at) {
+        if (tenths < 0) {
+            into[at++] = '-';
+            tenths = -tenths;
+        }
+        long whole = tenths / 10;
+        int start = at;
+        do {
+            into[at++] = (char) ('0' + whole % 10);
+            whole /= 10;
+        } while (whole > 0);
+        reverse(into, start, at - 1);
+        into[at++] = '.';
+        into[at++] = (char) ('0' + tenths % 10);
+        return at;
+    }
+
+    // Writes a value zero-padded to the given width, and returns the index after it
+    private static int writeDigits(int value, int width, char[] into, int at) {
+        for (int i = at + width - 1; i >= at; i--) {
+            into[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return at + width;
+    }
+
+    private static void reverse(char[] chars, int from, int to) {
+        while (from < to) {
+            char c = chars[from];
+            chars[from++] = chars[to];
+            chars[to--] = c;
+        }
+    }
+}
@@ -3,32 +3,30 @@ package com.example.dailyweighttracker;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.GridView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import java.text.DecimalFormat;
 import java.util.Objects;
 
 /**
- * This activity displays a grid of the user's past weight entries. Allows users to add new entries,
+ * This activity displays a list of the user's past weight entries. Allows users to add new entries,
  * edit existing entries, and delete entries.
  */
 public class WeightHistoryActivity extends AppCompatActivity {
 
-    // Database, adapter, and preferences
-    private DatabaseHelper dbHelper;
-    private WeightCursorAdapter adapter;
+    // Repository, adapter, and preferences
+    private WeightRepository repository;
+    private WeightHistoryAdapter adapter;
     private SharedPreferences prefs;
 
     // UI elements
@@ -41,18 +39,18 @@ public class WeightHistoryActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_datagrid);
 
-        // Initialize database helper and shared preferences
-        dbHelper = new DatabaseHelper(this);
+        // Initialize the repository and shared preferences
+        repository = WeightRepository.getInstance(this);
         prefs = getSharedPreferences("WeightTrackerPrefs", Context.MODE_PRIVATE);
-        String username = dbHelper.getCurrentUsername(prefs);
+        String username = UserSession.getUsername(prefs);
 
         // Determine the user's preferred unit
-        String unit = prefs.getString("unit_" + username, "lbs");
+        String unit = prefs.getString(PreferenceKeys.unit(username), "lbs");
 
         // Get references to UI elements
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
-        GridView gridView = findViewById(R.id.weight_grid);
+        RecyclerView weightList = findViewById(R.id.weight_grid);
         fab = findViewById(R.id.fab_add_weight);
         popupOverlay = findViewById(R.id.popupOverlay);
         editPopupOverlay = findViewById(R.id.editPopupOverlay);
@@ -67,20 +65,19 @@ public class WeightHistoryActivity extends AppCompatActivity {
         Objects.requireNonNull(getSupportActionBar()).setDisplayHomeAsUpEnabled(true);
         getSupportActionBar().setTitle("");
 
-        // Set up the grid view with a custom adapter
-        Cursor cursor = dbHelper.getAllWeights(prefs);
-        adapter = new WeightCursorAdapter(this, cursor, unit, prefs, (id, currentWeight) -> {
+        // Set up the list with a custom adapter; the entries are loaded in pages in the background
+        adapter = new WeightHistoryAdapter(this, unit, (id, currentWeight) -> {
             // Show the edit popup when a weight entry is clicked
             editPopupOverlay.setVisibility(View.VISIBLE);
             fab.setVisibility(View.GONE);
-            DecimalFormat df = new DecimalFormat("#.0");
-            editInputWeight.setText(df.format(currentWeight));
+            editInputWeight.setText(WeightFormat.formatNumber(currentWeight));
             // Save the edited weight entry
             btnEditSave.setOnClickListener(v -> {
                 String weightStr = editInputWeight.getText().toString();
                 if (!weightStr.isEmpty()) {
-                    dbHelper.updateWeight(id, Float.parseFloat(weightStr));
-                    updateWeightList(); // Refresh the list
+                    double weight = Double.parseDouble(weightStr);
+                    // The list refreshes itself once the write lands
+                    repository.execute(this, (db, signal) -> db.updateWeight(id, weight));
                     editPopupOverlay.setVisibility(View.GONE);
                     fab.setVisibility(View.VISIBLE);
                     editInputWeight.setText("");
@@ -94,8 +91,15 @@ public class WeightHistoryActivity extends AppCompatActivity {
                 fab.setVisibility(View.VISIBLE);
                 editInputWeight.setText("");
             });
-        }, dbHelper);
-        gridView.setAdapter(adapter);
+        }, id -> repository.execute(this, (db, signal) -> db.deleteWeight(id))
+                .thenAccept(deleted -> Toast.makeText(this, "Weight deleted", Toast.LENGTH_SHORT).show()));
+        weightList.setAdapter(adapter);
+        repository.execute(this, (db, signal) -> UserSession.getUserId(db, prefs)).thenAccept(userId -> {
+            WeightHistoryPager pager = new WeightHistoryPager(repository, this, userId, adapter::submit);
+            adapter.setPager(pager);
+            // Reload the pages on screen whenever the weights change, from here or elsewhere
+            repository.observe(this, pager::refresh, DatabaseHelper.TABLE_WEIGHTS);
+        });
 
         // Show the add weight popup when the FAB is clicked
         fab.setOnClickListener(v -> {
@@ -105,10 +109,14 @@ public class WeightHistoryActivity extends AppCompatActivity {
 
         // Save the new weight entry
         btnSave.setOnClickListener(v -> {
-            String weight = inputWeight.getText().toString();
-            if (!weight.isEmpty()) {
-                dbHelper.addWeight(this, Float.parseFloat(weight), prefs);
-                updateWeightList(); // Refresh the list
+            String weightStr = inputWeight.getText().toString();
+            if (!weightStr.isEmpty()) {
+                double weight = Double.parseDouble(weightStr);
+                float goalWeight = prefs.getFloat(PreferenceKeys.goalWeight(username), 0);
+                repository.execute(this, (db, signal) ->
+                                db.addWeight(UserSession.getUserId(db, prefs), weight, goalWeight, unit))
+                        // Sends the goal notification if this weight queued one
+                        .thenAccept(id -> GoalNotifier.getInstance(this).wake());
                 popupOverlay.setVisibility(View.GONE);
                 fab.setVisibility(View.VISIBLE);
                 inputWeight.setText("");
@@ -125,14 +133,6 @@ public class WeightHistoryActivity extends AppCompatActivity {
         });
     }
 
-    /**
-     * Updates the weight list by creating a new cursor and swapping it into the adapter.
-     */
-    private void updateWeightList() {
-        Cursor newCursor = dbHelper.getAllWeights(prefs);
-        adapter.swapCursor(newCursor);
-    }
-
     @Override
     // Handle back button press
     public boolean onSupportNavigateUp() {
@@ -0,0 +1,222 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageButton;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Adapter for the weight history list. Rows come from {@link WeightHistoryPager} snapshots; each
+ * new snapshot is diffed against the one on screen on a background thread, so an edit or delete
+ * updates just the rows it touched. A row whose page is still loading is shown empty until it
+ * arrives.
+ */
+public class WeightHistoryAdapter extends RecyclerView.Adapter<WeightHistoryAdapter.ViewHolder> {
+
+    // Diffs run one at a time, in submission order
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, "WeightHistoryDiff"));
+
+    private final Context context;
+    private final WeightFormat format;
+    private final OnEditClickListener listener;
+    private final OnDeleteClickListener deleteListener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private WeightHistoryPager pager;
+    // The snapshot on screen; replaced only when its diff is dispatched
+    private WeightHistoryPager.Snapshot snapshot = WeightHistoryPager.Snapshot.EMPTY;
+    // Counts submitted snapshots, so a diff finishing after a newer one was submitted is dropped
+    private volatile int generation;
+    // Index of a position within its page, filled in by the snapshot
+    private final int[] index = new int[1];
+
+    public interface OnEditClickListener {
+        void onEditClick(long id, double currentWeight);
+    }
+    // Called once the user confirms deleting an entry
+    public interface OnDeleteClickListener {
+        void onDeleteClick(long id);
+    }
+    // Constructor
+    public WeightHistoryAdapter(Context context, String unit, OnEditClickListener listener, OnDeleteClickListener deleteListener) {
+        this.context = context;
+        this.format = WeightFormat.get(unit);
+        this.listener = listener;
+        this.deleteListener = deleteListener;
+        setHasStableIds(true);
+    }
+
+    // Shows the pager's rows and asks it for pages as they are bound
+    public void setPager(WeightHistoryPager pager) {
+        this.pager = pager;
+        submit(pager.getSnapshot());
+    }
+
+    /**
+     * Shows a new snapshot once it has been diffed against the one on screen. Must be called on
+     * the main thread.
+     */
+    public void submit(WeightHistoryPager.Snapshot newSnapshot) {
+        int submitted = ++generation;
+        WeightHistoryPager.Snapshot oldSnapshot = snapshot;
+        if (oldSnapshot.size() == 0 || newSnapshot.size() == 0) {
+            // Nothing to match up
+            snapshot = newSnapshot;
+            if (oldSnapshot.size() == 0) {
+                notifyItemRangeInserted(0, newSnapshot.size());
+            } else {
+                notifyItemRangeRemoved(0, oldSnapshot.size());
+            }
+            return;
+        }
+        DIFF_EXECUTOR.execute(() -> {
+            if (submitted != generation) {
+                return;
+            }
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new SnapshotDiff(oldSnapshot, newSnapshot), false);
+            mainHandler.post(() -> {
+                if (submitted == generation) {
+                    snapshot = newSnapshot;
+                    result.dispatchUpdatesTo(this);
+                }
+            });
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return snapshot.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        WeightHistoryPager.Page page = snapshot.get(position, index);
+        // Row ids are positive, so placeholders take negative ids of their own
+        return page == null ? -1 - position : page.ids[index[0]];
+    }
+
+    @NonNull
+    @Override
+    // Inflate the layout for a row and look up its views once
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.grid_item_weight, parent, false));
+    }
+
+    @Override
+    // Bind the row's entry to its views
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        if (pager != null) {
+            // The pager's latest rows may be a diff ahead of the screen; close enough to pick pages
+            pager.loadAround(position);
+        }
+        WeightHistoryPager.Page page = snapshot.get(position, index);
+        if (page == null) {
+            // Placeholder until the page arrives
+            holder.weightTextView.setText("");
+            holder.dateTextView.setText("");
+            holder.editButton.setVisibility(View.INVISIBLE);
+            holder.deleteButton.setVisibility(View.INVISIBLE);
+            return;
+        }
+        holder.id = page.ids[index[0]];
+        holder.weight = page.weights[index[0]];
+        holder.weightTextView.setText(format.format(holder.weight));
+        holder.dateTextView.setText(holder.dateChars, 0, format.writeDate(page.dates[index[0]], holder.dateChars, 0));
+        holder.editButton.setVisibility(View.VISIBLE);
+        holder.deleteButton.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Views of one row, and the entry bound to it for the click listeners.
+     */
+    class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView weightTextView;
+        final TextView dateTextView;
+        final ImageButton editButton;
+        final ImageButton deleteButton;
+        // Backs the date view's text, which is rewritten in place on every bind
+        final char[] dateChars = new char[WeightFormat.DATE_LENGTH];
+        long id;
+        double weight;
+
+        ViewHolder(View view) {
+            super(view);
+            weightTextView = view.findViewById(R.id.weight_text);
+            dateTextView = view.findViewById(R.id.date_text);
+            editButton = view.findViewById(R.id.edit_button);
+            deleteButton = view.findViewById(R.id.delete_button);
+            // Set the click listeners for the buttons
+            editButton.setOnClickListener(v -> listener.onEditClick(id, weight));
+            deleteButton.setOnClickListener(v -> {
+                long entryId = id;
+                new MaterialAlertDialogBuilder(context)
+                        .setTitle("Delete Weight")
+                        .setMessage("Are you sure you want to delete this weight entry?")
+                        .setPositiveButton("Delete", (dialog, which) -> deleteListener.onDeleteClick(entryId))
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            });
+        }
+    }
+
+    // Matches rows by id; a placeholder matches whatever is at its position
+    private static final class SnapshotDiff extends DiffUtil.Callback {
+        private final WeightHistoryPager.Snapshot oldSnapshot;
+        private final WeightHistoryPager.Snapshot newSnapshot;
+        private final int[] oldIndex = new int[1];
+        private final int[] newIndex = new int[1];
+
+        SnapshotDiff(WeightHistoryPager.Snapshot oldSnapshot, WeightHistoryPager.Snapshot newSnapshot) {
+            this.oldSnapshot = oldSnapshot;
+            this.newSnapshot = newSnapshot;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldSnapshot.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newSnapshot.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            WeightHistoryPager.Page oldPage = oldSnapshot.get(oldPosition, oldIndex);
+            WeightHistoryPager.Page newPage = newSnapshot.get(newPosition, newIndex);
+            if (oldPage == null || newPage == null) {
+                return oldPosition == newPosition;
+            }
+            return oldPage.ids[oldIndex[0]] == newPage.ids[newIndex[0]];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            WeightHistoryPager.Page oldPage = oldSnapshot.get(oldPosition, oldIndex);
+            WeightHistoryPager.Page newPage = newSnapshot.get(newPosition, newIndex);
+            if (oldPage == null || newPage == null) {
+                return oldPage == newPage;
+            }
+            return oldPage.ids[oldIndex[0]] == newPage.ids[newIndex[0]]
+                    && Double.compare(oldPage.weights[oldIndex[0]], newPage.weights[newIndex[0]]) == 0
+                    && oldPage.dates[oldIndex[0]] == newPage.dates[newIndex[0]];
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads a user's history in keyset pages as the list scrolls.
+ * Each page covers the entries after one (date, _id) anchor up to the next, so a page keeps its
+ * rows when other pages change and can be dropped and reloaded at any time. Only the most
+ * recently used pages are kept; the rest are reloaded from their anchors when they come back
+ * into view. The page after the last loaded one is fetched once the list comes within the
+ * prefetch distance of the end.
+ *
+ * <p>Every change is published as an immutable {@link Snapshot}, so the list can be diffed
+ * against the previous one off the main thread.
+ *
+ * <p>Used on the main thread only. Pages load through {@link WeightRepository}.
+ */
+public class WeightHistoryPager {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int DEFAULT_PREFETCH_DISTANCE = 50;
+    public static final int DEFAULT_MAX_PAGES = 8;
+
+    /**
+     * Called on the main thread with a new snapshot when loaded pages change the count or the entries.
+     */
+    public interface Listener {
+        void onPagesChanged(Snapshot snapshot);
+    }
+
+    // One loaded page, as parallel arrays
+    static final class Page {
+        final long[] ids;
+        final double[] weights;
+        final long[] dates;
+        final int size;
+
+        Page(long[] ids, double[] weights, long[] dates, int size) {
+            this.ids = ids;
+            this.weights = weights;
+            this.dates = dates;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The pages as they were at one point. Pages are never modified once loaded, so a snapshot
+     * can be read from any thread.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new Page[1], new int[1], 0);
+
+        // Loaded page, or null, and first position of each known page
+        private final Page[] pages;
+        private final int[] offsets;
+        private final int count;
+
+        private Snapshot(Page[] pages, int[] offsets, int count) {
+            this.pages = pages;
+            this.offsets = offsets;
+            this.count = count;
+        }
+
+        int size() {
+            return count;
+        }
+
+        /**
+         * Returns the number of the page holding the given position. Empty pages share their
+         * offset with the next page, so the last page starting at or before the position holds it.
+         */
+        int pageOf(int position) {
+            int low = 0;
+            int high = pages.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (offsets[mid] <= position) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns the loaded page holding the given position and the position's index in it
+         * through {@code index}, or null if that page isn't loaded.
+         */
+        Page get(int position, int[] index) {
+            int page = pageOf(position);
+            Page loaded = pages[page];
+            if (loaded == null) {
+                return null;
+            }
+            index[0] = position - offsets[page];
+            return loaded;
+        }
+    }
+
+    private final WeightRepository repository;
+    private final LifecycleOwner owner;
+    private final long userId;
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final Listener listener;
+
+    // Exclusive lower bound of each known page; page k ends where page k + 1 starts, the last page is open
+    private long[] startDates = new long[16];
+    private long[] startIds = new long[16];
+    // Row count of each known page, kept after the page itself is dropped
+    private int[] sizes = new int[16];
+    private int pageCount;
+    private int totalCount;
+    // Whether the last page was short the last time it loaded
+    private boolean endReached;
+
+    private final Map<Integer, Page> pages;
+    private final Set<Integer> loading = new HashSet<>();
+    // Pages to load again once their current load finishes
+    private final Set<Integer> stale = new HashSet<>();
+    private Snapshot snapshot = Snapshot.EMPTY;
+
+    public WeightHistoryPager(WeightRepository repository, LifecycleOwner owner, long userId, Listener listener) {
+        this(repository, owner, userId, DEFAULT_PAGE_SIZE, DEFAULT_PREFETCH_DISTANCE, DEFAULT_MAX_PAGES, listener);
+    }
+
+    public WeightHistoryPager(WeightRepository repository, LifecycleOwner owner, long userId, int pageSize,
+                              int prefetchDistance, int maxPages, Listener listener) {
+        this.repository = repository;
+        this.owner = owner;
+        this.userId = userId;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.listener = listener;
+        pages = new LinkedHashMap<Integer, Page>(maxPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                return size() > maxPages;
+            }
+        };
+        startDates[0] = Long.MIN_VALUE;
+        startIds[0] = Long.MIN_VALUE;
+        pageCount = 1;
+        load(0);
+    }
+
+    // The latest snapshot. Its size is the rows known so far, which grows as pages past the end are loaded.
+    Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Requests the page holding the given position if it isn't loaded, and the next page when the
+     * position is close to the end. Positions past the known rows are ignored.
+     */
+    public void loadAround(int position) {
+        if (!endReached && position >= totalCount - prefetchDistance) {
+            int last = pageCount - 1;
+            if (!pages.containsKey(last)) {
+                load(last);
+            }
+        }
+        if (position >= totalCount) {
+            return;
+        }
+        int page = snapshot.pageOf(position);
+        if (pages.get(page) == null) {
+            load(page);
+        }
+    }
+
+    /**
+     * Reloads every retained page, keeping the anchors, after the user's entries have changed.
+     */
+    public void refresh() {
+        for (Integer page : pages.keySet().toArray(new Integer[0])) {
+            reload(page);
+        }
+        if (!pages.containsKey(pageCount - 1)) {
+            // The open-ended last page picks up entries added at the end
+            reload(pageCount - 1);
+        }
+    }
+
+    // Loads a page again even if a load is already running, since that one may predate a change
+    private void reload(int page) {
+        if (loading.contains(page)) {
+            stale.add(page);
+        } else {
+            load(page);
+        }
+    }
+
+    private void load(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        long afterDate = startDates[page];
+        long afterId = startIds[page];
+        boolean last = page == pageCount - 1;
+        long toDate = last ? 0 : startDates[page + 1];
+        long toId = last ? 0 : startIds[page + 1];
+        repository.execute(owner, (db, signal) -> last
+                        ? readPage(db.getWeightsAfter(userId, afterDate, afterId, pageSize, signal))
+                        : readPage(db.getWeightsBetween(userId, afterDate, afterId, toDate, toId, signal)))
+                .whenComplete((result, error) -> {
+                    loading.remove(page);
+                    if (result != null) {
+                        apply(page, last, result);
+                    }
+                    if (stale.remove(page)) {
+                        load(page);
+                    }
+                });
+    }
+
+    // Copies a page out of its cursor on the background thread
+    private static Page readPage(Cursor cursor) {
+        try {
+            int count = cursor.getCount();
+            long[] ids = new long[count];
+            double[] weights = new double[count];
+            long[] dates = new long[count];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                weights[i] = cursor.getDouble(1);
+                dates[i] = cursor.getLong(2);
+            }
+            return new Page(ids, weights, dates, count);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void apply(int page, boolean wasLast, Page result) {
+        pages.put(page, result);
+        totalCount += result.size - sizes[page];
+        sizes[page] = result.size;
+
+        if (wasLast && page == pageCount - 1) {
+            endReached = result.size < pageSize;
+            if (!endReached) {
+                // A full last page: the next one starts after its last entry
+                addPage(result.dates[result.size - 1], result.ids[result.size - 1]);
+            }
+        }
+        snapshot = takeSnapshot();
+        listener.onPagesChanged(snapshot);
+    }
+
+    private Snapshot takeSnapshot() {
+        Page[] loaded = new Page[pageCount];
+        int[] offsets = new int[pageCount];
+        int offset = 0;
+        for (int page = 0; page < pageCount; page++) {
+            offsets[page] = offset;
+            offset += sizes[page];
+        }
+        // Iterating doesn't touch the access order, unlike get()
+        for (Map.Entry<Integer, Page> entry : pages.entrySet()) {
+            loaded[entry.getKey()] = entry.getValue();
+        }
+        return new Snapshot(loaded, offsets, offset);
+    }
+
+    private void addPage(long afterDate, long afterId) {
+        if (pageCount == sizes.length) {
+            startDates = Arrays.copyOf(startDates, pageCount * 2);
+            startIds = Arrays.copyOf(startIds, pageCount * 2);
+            sizes = Arrays.copyOf(sizes, pageCount * 2);
+        }
+        startDates[pageCount] = afterDate;
+        startIds[pageCount] = afterId;
+        sizes[pageCount] = 0;
+        pageCount++;
+    }
+}
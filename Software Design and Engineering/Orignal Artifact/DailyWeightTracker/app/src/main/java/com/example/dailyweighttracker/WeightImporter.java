@@ -0,0 +1,303 @@
+package com.example.dailyweighttracker;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Streams weight history from another tracker into the weights table.
+ * Rows are read one at a time, validated, checked against existing entries and written in
+ * chunked transactions, so memory use depends on the chunk size and not on the file size.
+ *
+ * <p>CSV files have a {@code date} and a {@code weight} column, either named in a header row or
+ * in that order. JSON files are an array of objects with {@code date} and {@code weight} members.
+ * Dates may be epoch milliseconds, "yyyy-MM-dd HH:mm:ss" or "yyyy-MM-dd" in local time. A value
+ * that can't be read, such as a JSON null, makes its row invalid rather than ending the import.
+ */
+public class WeightImporter {
+
+    private static final String TAG = "WeightImporter";
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    // Readings outside this range are treated as typos
+    private static final double MIN_WEIGHT = 1;
+    private static final double MAX_WEIGHT = 2000;
+    private static final long ONE_DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    public enum Format { CSV, JSON }
+
+    /**
+     * Called after each chunk is committed.
+     */
+    public interface ProgressListener {
+        void onProgress(long rowsRead, long rowsImported);
+    }
+
+    /**
+     * Row counts of a finished import.
+     */
+    public static final class Result {
+        public final long rowsRead;
+        public final long imported;
+        public final long invalid;
+        public final long duplicates;
+
+        Result(long rowsRead, long imported, long invalid, long duplicates) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.invalid = invalid;
+            this.duplicates = duplicates;
+        }
+
+        @Override
+        public String toString() {
+            return "read " + rowsRead + ", imported " + imported + ", invalid " + invalid + ", duplicates " + duplicates;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final int chunkSize;
+
+    // Reused for every row of an import
+    private final SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+    private final ParsePosition parsePosition = new ParsePosition(0);
+
+    // The pending chunk, as parallel arrays
+    private final long[] chunkDates;
+    private final double[] chunkWeights;
+    private final Set<Long> chunkDateSet;
+    private int chunkCount;
+
+    private long userId;
+    private ProgressListener listener;
+    private long rowsRead;
+    private long imported;
+    private long invalid;
+    private long duplicates;
+
+    public WeightImporter(DatabaseHelper dbHelper) {
+        this(dbHelper, DEFAULT_CHUNK_SIZE);
+    }
+
+    public WeightImporter(DatabaseHelper dbHelper, int chunkSize) {
+        this.dbHelper = dbHelper;
+        this.chunkSize = chunkSize;
+        chunkDates = new long[chunkSize];
+        chunkWeights = new double[chunkSize];
+        chunkDateSet = new HashSet<>(chunkSize * 2);
+    }
+
+    /**
+     * Imports every valid, not yet recorded reading in the stream for the given user.
+     * The stream is not closed. Rows committed before an I/O error stay imported.
+     */
+    public synchronized Result importFrom(InputStream in, Format format, long userId, ProgressListener listener)
+            throws IOException {
+        this.userId = userId;
+        this.listener = listener;
+        rowsRead = imported = invalid = duplicates = 0;
+        chunkCount = 0;
+        chunkDateSet.clear();
+
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        if (format == Format.CSV) {
+            readCsv(new BufferedReader(reader));
+        } else {
+            readJson(new JsonReader(reader));
+        }
+        flushChunk();
+
+        Result result = new Result(rowsRead, imported, invalid, duplicates);
+        Log.i(TAG, "Import finished: " + result);
+        return result;
+    }
+
+    private void readCsv(BufferedReader reader) throws IOException {
+        int dateColumn = 0;
+        int weightColumn = 1;
+        String line = reader.readLine();
+        if (line != null) {
+            // A header row names the columns; without one the first line is a reading like any other
+            boolean header = false;
+            String[] names = line.split(",");
+            for (int i = 0; i < names.length; i++) {
+                String name = unquote(names[i]).toLowerCase(Locale.US);
+                if (name.equals("date")) {
+                    dateColumn = i;
+                    header = true;
+                } else if (name.equals("weight")) {
+                    weightColumn = i;
+                    header = true;
+                }
+            }
+            if (header) {
+                line = reader.readLine();
+            }
+        }
+
+        for (; line != null; line = reader.readLine()) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length <= Math.max(dateColumn, weightColumn)) {
+                rowsRead++;
+                invalid++;
+                continue;
+            }
+            long date = parseDate(unquote(fields[dateColumn]));
+            double weight = parseWeight(unquote(fields[weightColumn]));
+            addRow(date, weight);
+        }
+    }
+
+    private void readJson(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            long date = -1;
+            double weight = Double.NaN;
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                addRow(date, weight);
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("date")) {
+                    date = parseDate(nextText(reader));
+                } else if (name.equals("weight")) {
+                    weight = parseWeight(nextText(reader));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            addRow(date, weight);
+        }
+        reader.endArray();
+    }
+
+    // Validates a row and adds it to the pending chunk
+    private void addRow(long date, double weight) {
+        rowsRead++;
+        if (date <= 0 || date > System.currentTimeMillis() + ONE_DAY_MILLIS
+                || !(weight >= MIN_WEIGHT && weight <= MAX_WEIGHT)) {
+            invalid++;
+            return;
+        }
+        if (!chunkDateSet.add(date)) {
+            duplicates++;
+            return;
+        }
+        chunkDates[chunkCount] = date;
+        chunkWeights[chunkCount] = weight;
+        chunkCount++;
+        if (chunkCount == chunkSize) {
+            flushChunk();
+        }
+    }
+
+    // Writes the pending chunk in one transaction, skipping readings the user already has
+    private void flushChunk() {
+        if (chunkCount > 0) {
+            WeightStatements statements = dbHelper.getStatements();
+            WeightRollups rollups = dbHelper.getRollups();
+            WeightSketches sketches = dbHelper.getSketches();
+            WeightArchive archive = dbHelper.getArchive();
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < chunkCount; i++) {
+                    if (statements.existsAt(userId, chunkDates[i]) || archive.existsAt(userId, chunkDates[i])) {
+                        duplicates++;
+                        continue;
+                    }
+                    try {
+                        statements.insert(userId, chunkWeights[i], chunkDates[i]);
+                        rollups.onInserted(userId, chunkDates[i], chunkWeights[i]);
+                        sketches.onInserted(userId, chunkDates[i], chunkWeights[i]);
+                        imported++;
+                    } catch (SQLException e) {
+                        Log.w(TAG, "Failed to import reading at " + chunkDates[i], e);
+                        invalid++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            dbHelper.getWeightCache().invalidate(userId);
+            dbHelper.getTrends().invalidate(userId);
+            dbHelper.notifyTablesChanged(DatabaseHelper.TABLE_WEIGHTS, DatabaseHelper.TABLE_ROLLUPS,
+                    DatabaseHelper.TABLE_SKETCHES);
+            chunkCount = 0;
+            chunkDateSet.clear();
+        }
+        if (listener != null) {
+            listener.onProgress(rowsRead, imported);
+        }
+    }
+
+    // The text of a string or number value. Anything else, such as null, is skipped and read as empty.
+    private static String nextText(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return "";
+    }
+
+    // Returns epoch milliseconds, or -1 if the text isn't a supported date
+    private long parseDate(String text) {
+        if (text.isEmpty()) {
+            return -1;
+        }
+        if (Character.isDigit(text.charAt(text.length() - 1)) && text.indexOf('-') < 0) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        SimpleDateFormat format = text.length() > 10 ? dateTimeFormat : dateFormat;
+        parsePosition.setIndex(0);
+        parsePosition.setErrorIndex(-1);
+        Date date = format.parse(text, parsePosition);
+        return date == null || parsePosition.getIndex() != text.length() ? -1 : date.getTime();
+    }
+
+    // Returns NaN if the text isn't a number
+    private static double parseWeight(String text) {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String unquote(String field) {
+        String trimmed = field.trim();
+        if (trimmed.length() >= 2 && trimmed.charAt(0) == '"' && trimmed.charAt(trimmed.length() - 1) == '"') {
+            return trimmed.substring(1, trimmed.length() - 1).trim();
+        }
+        return trimmed;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * Converts weight rows written by schema version 2 and earlier into the typed weights table.
+ * Version 2 stored the weight as TEXT and the date as a local "yyyy-MM-dd HH:mm:ss" string.
+ * Rows are moved in batches, each in its own transaction, and removed from the legacy table as they
+ * are copied, so an interrupted migration resumes where it stopped the next time the database opens.
+ * Rows that can't be converted are moved to a quarantine table as they were stored.
+ */
+final class WeightMigration {
+
+    static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final String TAG = "WeightMigration";
+    static final String REASON_NO_USER = "no user";
+    static final String REASON_BAD_DATE = "unreadable date";
+    static final String REASON_BAD_WEIGHT = "unreadable weight";
+    // A legacy row's date in epoch seconds, or NULL if it can't be parsed. 'utc' reads the stored
+    // text as local time, matching how version 2 wrote it.
+    private static final String LEGACY_DATE = "strftime('%s', l.date, 'utc')";
+    // Whether a legacy row's weight is anything but a plain decimal number. CAST would read such
+    // text, or an empty one, as 0 or as its leading digits.
+    private static final String LEGACY_BAD_WEIGHT = "(l.weight IS NULL OR trim(l.weight) NOT GLOB '*[0-9]*'"
+            + " OR trim(l.weight) GLOB '*[^0-9.]*' OR trim(l.weight) GLOB '*.*.*')";
+
+    private WeightMigration() {
+    }
+
+    /**
+     * Migrates every row left in the legacy table and drops it once it is empty.
+     *
+     * @return the number of rows converted by this call
+     */
+    static int migrateLegacyWeights(SQLiteDatabase db, int batchSize) {
+        if (!legacyTableExists(db)) {
+            return 0;
+        }
+
+        // Rows are re-keyed by users._id, so every username needs a users row first
+        DatabaseHelper.addUsersForLegacyNames(db, DatabaseHelper.TABLE_WEIGHTS_LEGACY);
+
+        // Rows without a users row to belong to, or whose date or weight can't be read, are set
+        // aside with their original text rather than dropped, dated 1970 or recorded as 0.
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + DatabaseHelper.TABLE_WEIGHTS_QUARANTINE + " ("
+                + "_id INTEGER PRIMARY KEY, weight TEXT, date TEXT, " + DatabaseHelper.COLUMN_LEGACY_USER + " TEXT, "
+                + DatabaseHelper.COLUMN_QUARANTINE_REASON + " TEXT NOT NULL)");
+        String quarantineBatch = "INSERT OR REPLACE INTO " + DatabaseHelper.TABLE_WEIGHTS_QUARANTINE
+                + " (_id, weight, date, " + DatabaseHelper.COLUMN_LEGACY_USER + ", " + DatabaseHelper.COLUMN_QUARANTINE_REASON + ")"
+                + " SELECT l._id, l.weight, l.date, l." + DatabaseHelper.COLUMN_LEGACY_USER + ","
+                + " CASE WHEN u." + DatabaseHelper.COLUMN_USER_ID + " IS NULL THEN '" + REASON_NO_USER + "'"
+                + " WHEN " + LEGACY_DATE + " IS NULL THEN '" + REASON_BAD_DATE + "'"
+                + " ELSE '" + REASON_BAD_WEIGHT + "' END"
+                + " FROM " + DatabaseHelper.TABLE_WEIGHTS_LEGACY + " l LEFT JOIN " + DatabaseHelper.TABLE_USERS + " u"
+                + " ON u." + DatabaseHelper.COLUMN_USERNAME + " = l." + DatabaseHelper.COLUMN_LEGACY_USER
+                + " WHERE l._id <= ? AND (u." + DatabaseHelper.COLUMN_USER_ID + " IS NULL OR " + LEGACY_DATE + " IS NULL"
+                + " OR " + LEGACY_BAD_WEIGHT + ")";
+        String copyBatch = "INSERT OR REPLACE INTO " + DatabaseHelper.TABLE_WEIGHTS + " ("
+                + DatabaseHelper.COLUMN_ID + ", " + DatabaseHelper.COLUMN_WEIGHT + ", "
+                + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + ")"
+                + " SELECT l._id, CAST(trim(l.weight) AS REAL),"
+                + " CAST(" + LEGACY_DATE + " AS INTEGER) * 1000, u." + DatabaseHelper.COLUMN_USER_ID
+                + " FROM " + DatabaseHelper.TABLE_WEIGHTS_LEGACY + " l JOIN " + DatabaseHelper.TABLE_USERS + " u"
+                + " ON u." + DatabaseHelper.COLUMN_USERNAME + " = l." + DatabaseHelper.COLUMN_LEGACY_USER
+                + " WHERE l._id <= ? AND " + LEGACY_DATE + " IS NOT NULL AND NOT " + LEGACY_BAD_WEIGHT;
+        String deleteBatch = "DELETE FROM " + DatabaseHelper.TABLE_WEIGHTS_LEGACY + " WHERE _id <= ?";
+
+        int migrated = 0;
+        int quarantined = 0;
+        long batchEnd;
+        while ((batchEnd = nextBatchEnd(db, batchSize)) != -1) {
+            Object[] bindArgs = {batchEnd};
+            db.beginTransaction();
+            try {
+                db.execSQL(quarantineBatch, bindArgs);
+                quarantined += countChanges(db);
+                db.execSQL(copyBatch, bindArgs);
+                migrated += countChanges(db);
+                db.execSQL(deleteBatch, bindArgs);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        db.execSQL("DROP TABLE IF EXISTS " + DatabaseHelper.TABLE_WEIGHTS_LEGACY);
+        Log.i(TAG, "Migrated " + migrated + " legacy weight rows");
+        if (quarantined > 0) {
+            Log.w(TAG, "Kept " + quarantined + " unreadable legacy weight rows in "
+                    + DatabaseHelper.TABLE_WEIGHTS_QUARANTINE);
+        }
+        return migrated;
+    }
+
+    // Check if the legacy table is still present
+    static boolean legacyTableExists(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{DatabaseHelper.TABLE_WEIGHTS_LEGACY})) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    // Largest _id among the next batchSize legacy rows, or -1 once the legacy table is empty
+    private static long nextBatchEnd(SQLiteDatabase db, int batchSize) {
+        try (Cursor cursor = db.rawQuery("SELECT MAX(_id) FROM (SELECT _id FROM "
+                + DatabaseHelper.TABLE_WEIGHTS_LEGACY + " ORDER BY _id LIMIT ?)",
+                new String[]{String.valueOf(batchSize)})) {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                return -1;
+            }
+            return cursor.getLong(0);
+        }
+    }
+
+    // Rows touched by the last statement on this connection
+    private static int countChanges(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT changes()", null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.dailyweighttracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work off the main thread for the activities.
+ * Calls run one at a time, in submission order, on a single background thread with a bounded queue,
+ * so a read submitted after a write sees that write. Results are delivered on the main thread, and
+ * a call is cancelled when the lifecycle that submitted it is destroyed. Screens observe the tables
+ * they show instead of re-querying after each write.
+ */
+public class WeightRepository {
+
+    private static final String TAG = "WeightRepository";
+    // Calls waiting beyond this are rejected instead of piling up behind a slow query
+    private static final int QUEUE_CAPACITY = 64;
+
+    /**
+     * Work to run against the database on the background thread.
+     */
+    public interface Call<T> {
+        T run(DatabaseHelper dbHelper, CancellationSignal signal);
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static WeightRepository instance;
+
+    /**
+     * Returns the repository in front of the shared {@link DatabaseHelper}.
+     */
+    public static synchronized WeightRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new WeightRepository(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    public WeightRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }, TAG));
+    }
+
+    /**
+     * Queues a call and returns a future that completes on the main thread, so stages added with
+     * {@code thenAccept} and the like can touch views. The future is cancelled, and the call's
+     * signal with it, when {@code owner} is destroyed. A {@link Cursor} result has its first
+     * window filled on the background thread, and is closed if nobody is left to receive it.
+     * Must be called on the main thread.
+     */
+    public <T> CompletableFuture<T> execute(LifecycleOwner owner, Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            future.cancel(false);
+            return future;
+        }
+
+        CancellationSignal signal = new CancellationSignal();
+        LifecycleEventObserver observer = (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                future.cancel(false);
+            }
+        };
+        lifecycle.addObserver(observer);
+        future.whenComplete((result, error) -> {
+            lifecycle.removeObserver(observer);
+            if (future.isCancelled()) {
+                signal.cancel();
+            }
+        });
+
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    T result = call.run(dbHelper, signal);
+                    if (result instanceof Cursor) {
+                        ((Cursor) result).getCount();
+                    }
+                    mainHandler.post(() -> {
+                        if (!future.complete(result)) {
+                            closeQuietly(result);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    if (!future.isCancelled()) {
+                        Log.e(TAG, "Database call failed", e);
+                    }
+                    mainHandler.post(() -> future.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Database queue is full", e);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Calls {@code onChanged} on the main thread after any of {@code tables} is written. Changes
+     * are coalesced per frame, and held while {@code owner} is stopped until it starts again, so
+     * a burst of writes causes one call. Stops at ON_DESTROY. Must be called on the main thread.
+     */
+    public Observation observe(LifecycleOwner owner, Runnable onChanged, String... tables) {
+        Observation observation = new Observation(owner.getLifecycle(), onChanged, tables);
+        dbHelper.addTableObserver(observation);
+        owner.getLifecycle().addObserver(observation);
+        return observation;
+    }
+
+    /**
+     * Runs {@code query} once {@code owner} has started, and again after any of {@code tables} is
+     * written, handing each result to {@code onResult} on the main thread. At most one query is
+     * queued at a time. A {@link Cursor} result stays open until the next one has been delivered,
+     * or until {@code owner} is destroyed, and is closed then. Must be called on the main thread.
+     */
+    public <T> Observation observe(LifecycleOwner owner, Call<T> query, Consumer<T> onResult, String... tables) {
+        Requery<T> requery = new Requery<>(owner, query, onResult);
+        owner.getLifecycle().addObserver(requery);
+        Observation observation = observe(owner, requery, tables);
+        observation.invalidate();
+        return observation;
+    }
+
+    /**
+     * A screen's interest in some tables, live until its lifecycle is destroyed.
+     */
+    public final class Observation implements TableChangeNotifier.Observer, LifecycleEventObserver {
+
+        private final Lifecycle lifecycle;
+        private final Runnable onChanged;
+        private final Set<String> tables;
+        private boolean dirty;
+
+        private Observation(Lifecycle lifecycle, Runnable onChanged, String[] tables) {
+            this.lifecycle = lifecycle;
+            this.onChanged = onChanged;
+            this.tables = new HashSet<>(Arrays.asList(tables));
+        }
+
+        /**
+         * Treats the tables as changed, for when what the screen shows depends on something
+         * else too, such as the signed-in user.
+         */
+        public void invalidate() {
+            dirty = true;
+            dispatchIfStarted();
+        }
+
+        @Override
+        public void onTablesChanged(Set<String> changed) {
+            if (!Collections.disjoint(tables, changed)) {
+                invalidate();
+            }
+        }
+
+        @Override
+        public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_START) {
+                dispatchIfStarted();
+            } else if (event == Lifecycle.Event.ON_DESTROY) {
+                dbHelper.removeTableObserver(this);
+                lifecycle.removeObserver(this);
+            }
+        }
+
+        private void dispatchIfStarted() {
+            if (dirty && lifecycle.getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                dirty = false;
+                onChanged.run();
+            }
+        }
+    }
+
+    // Runs an observed query, one at a time, and closes each result once the next replaces it
+    private final class Requery<T> implements Runnable, LifecycleEventObserver {
+
+        private final LifecycleOwner owner;
+        private final Call<T> query;
+        private final Consumer<T> onResult;
+        private boolean running;
+        private boolean again;
+        private T current;
+
+        Requery(LifecycleOwner owner, Call<T> query, Consumer<T> onResult) {
+            this.owner = owner;
+            this.query = query;
+            this.onResult = onResult;
+        }
+
+        @Override
+        public void run() {
+            if (running) {
+                // The running query may have read the tables before the change
+                again = true;
+                return;
+            }
+            running = true;
+            execute(owner, query).whenComplete((result, error) -> {
+                running = false;
+                if (error == null) {
+                    T previous = current;
+                    current = result;
+                    onResult.accept(result);
+                    if (previous != result) {
+                        closeQuietly(previous);
+                    }
+                }
+                if (again) {
+                    again = false;
+                    run();
+                }
+            });
+        }
+
+        @Override
+        public void onStateChanged(LifecycleOwner source, Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                closeQuietly(current);
+                current = null;
+                owner.getLifecycle().removeObserver(this);
+            }
+        }
+    }
+
+    /**
+     * Closes the database once the queued calls have finished and stops the background thread.
+     * Only for repositories built around their own helper; the shared one stays open.
+     */
+    public void close() {
+        try {
+            executor.execute(dbHelper::close);
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Closing with a full queue", e);
+        }
+        executor.shutdown();
+    }
+
+    private static void closeQuietly(Object result) {
+        if (result instanceof Closeable) {
+            try {
+                ((Closeable) result).close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close an undelivered result", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.TimeZone;
+
+/**
+ * Maintains the rollups table: count, min, max, sum and first and last entry per user per day,
+ * week and month, so trends over long histories read one row per bucket instead of every entry.
+ * DatabaseHelper calls it inside the transaction of each weights write. Inserts are merged into
+ * their buckets; updates and deletes recompute their buckets from the entries around them, since
+ * a min, max, first or last can't be taken back out of an aggregate.
+ *
+ * <p>Buckets are local calendar days, Monday-based weeks and months in the time zone the rollups
+ * were written in; {@link #rebuild()} recomputes them all, e.g. after the zone changes.
+ * Statements are compiled once per open database, like {@link WeightStatements}.
+ */
+final class WeightRollups {
+
+    private static final String TAG = "WeightRollups";
+
+    // Values of the rollups table's period column
+    static final int PERIOD_DAY = 0;
+    static final int PERIOD_WEEK = 1;
+    static final int PERIOD_MONTH = 2;
+    private static final int PERIODS = 3;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Entries read around a changed one: a month either side covers its week and month buckets,
+    // and a day more covers any time zone offset
+    private static final long WINDOW_MILLIS = 33 * MILLIS_PER_DAY;
+
+    // Adds an aggregate of entries to an existing bucket
+    static final String SQL_MERGE = "UPDATE " + DatabaseHelper.TABLE_ROLLUPS + " SET "
+            + DatabaseHelper.COLUMN_ROLLUP_COUNT + " = " + DatabaseHelper.COLUMN_ROLLUP_COUNT + " + ?1, "
+            + DatabaseHelper.COLUMN_ROLLUP_SUM + " = " + DatabaseHelper.COLUMN_ROLLUP_SUM + " + ?2, "
+            + DatabaseHelper.COLUMN_ROLLUP_MIN + " = MIN(" + DatabaseHelper.COLUMN_ROLLUP_MIN + ", ?3), "
+            + DatabaseHelper.COLUMN_ROLLUP_MAX + " = MAX(" + DatabaseHelper.COLUMN_ROLLUP_MAX + ", ?4), "
+            + DatabaseHelper.COLUMN_ROLLUP_FIRST_WEIGHT + " = CASE WHEN ?5 < " + DatabaseHelper.COLUMN_ROLLUP_FIRST_DATE
+            + " THEN ?6 ELSE " + DatabaseHelper.COLUMN_ROLLUP_FIRST_WEIGHT + " END, "
+            + DatabaseHelper.COLUMN_ROLLUP_FIRST_DATE + " = MIN(" + DatabaseHelper.COLUMN_ROLLUP_FIRST_DATE + ", ?5), "
+            + DatabaseHelper.COLUMN_ROLLUP_LAST_WEIGHT + " = CASE WHEN ?7 >= " + DatabaseHelper.COLUMN_ROLLUP_LAST_DATE
+            + " THEN ?8 ELSE " + DatabaseHelper.COLUMN_ROLLUP_LAST_WEIGHT + " END, "
+            + DatabaseHelper.COLUMN_ROLLUP_LAST_DATE + " = MAX(" + DatabaseHelper.COLUMN_ROLLUP_LAST_DATE + ", ?7)"
+            + " WHERE " + DatabaseHelper.COLUMN_ROLLUP_USER_ID + " = ?9 AND " + DatabaseHelper.COLUMN_ROLLUP_PERIOD + " = ?10"
+            + " AND " + DatabaseHelper.COLUMN_ROLLUP_BUCKET + " = ?11";
+    private static final String SQL_REPLACE = "INSERT OR REPLACE INTO " + DatabaseHelper.TABLE_ROLLUPS + " ("
+            + DatabaseHelper.COLUMN_ROLLUP_COUNT + ", " + DatabaseHelper.COLUMN_ROLLUP_SUM + ", "
+            + DatabaseHelper.COLUMN_ROLLUP_MIN + ", " + DatabaseHelper.COLUMN_ROLLUP_MAX + ", "
+            + DatabaseHelper.COLUMN_ROLLUP_FIRST_DATE + ", " + DatabaseHelper.COLUMN_ROLLUP_FIRST_WEIGHT + ", "
+            + DatabaseHelper.COLUMN_ROLLUP_LAST_DATE + ", " + DatabaseHelper.COLUMN_ROLLUP_LAST_WEIGHT + ", "
+            + DatabaseHelper.COLUMN_ROLLUP_USER_ID + ", " + DatabaseHelper.COLUMN_ROLLUP_PERIOD + ", "
+            + DatabaseHelper.COLUMN_ROLLUP_BUCKET + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    static final String SQL_DELETE_BUCKET = "DELETE FROM " + DatabaseHelper.TABLE_ROLLUPS
+            + " WHERE " + DatabaseHelper.COLUMN_ROLLUP_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_ROLLUP_PERIOD + " = ?"
+            + " AND " + DatabaseHelper.COLUMN_ROLLUP_BUCKET + " = ?";
+    static final String SQL_DELETE_USER = "DELETE FROM " + DatabaseHelper.TABLE_ROLLUPS
+            + " WHERE " + DatabaseHelper.COLUMN_ROLLUP_USER_ID + " = ?";
+    // Every entry, grouped by user and in bucket order, read along the (user_id, date, _id, weight) index
+    private static final String SQL_ALL_ENTRIES = "SELECT " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + ", "
+            + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_WEIGHT + " FROM " + DatabaseHelper.TABLE_WEIGHTS
+            + " ORDER BY " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + ", " + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_ID;
+    // A user's entries within a date range, oldest first
+    static final String SQL_ENTRIES_AROUND = "SELECT " + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_WEIGHT
+            + " FROM " + DatabaseHelper.TABLE_WEIGHTS + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ?"
+            + " AND " + DatabaseHelper.COLUMN_DATE + " BETWEEN ? AND ?"
+            + " ORDER BY " + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_ID;
+
+    // Aggregate of the entries of one bucket, added in (date, _id) order
+    private static final class Bucket {
+        long bucket;
+        int count;
+        double sum;
+        double min;
+        double max;
+        long firstDate;
+        double firstWeight;
+        long lastDate;
+        double lastWeight;
+
+        void reset(long bucket) {
+            this.bucket = bucket;
+            count = 0;
+            sum = 0;
+        }
+
+        void add(long date, double weight) {
+            if (count == 0) {
+                min = weight;
+                max = weight;
+                firstDate = date;
+                firstWeight = weight;
+            } else {
+                min = Math.min(min, weight);
+                max = Math.max(max, weight);
+            }
+            lastDate = date;
+            lastWeight = weight;
+            sum += weight;
+            count++;
+        }
+    }
+
+    private final SQLiteDatabase db;
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final SQLiteStatement merge;
+    private final SQLiteStatement replace;
+    private final SQLiteStatement deleteBucket;
+    private final SQLiteStatement deleteUser;
+    private final Bucket[] buckets = new Bucket[PERIODS];
+
+    WeightRollups(SQLiteDatabase db) {
+        this.db = db;
+        merge = db.compileStatement(SQL_MERGE);
+        replace = db.compileStatement(SQL_REPLACE);
+        deleteBucket = db.compileStatement(SQL_DELETE_BUCKET);
+        deleteUser = db.compileStatement(SQL_DELETE_USER);
+        for (int period = 0; period < PERIODS; period++) {
+            buckets[period] = new Bucket();
+        }
+    }
+
+    // Check if these statements were compiled against the given, still open, database
+    boolean isFor(SQLiteDatabase database) {
+        return db == database && db.isOpen();
+    }
+
+    /**
+     * Returns the bucket of a date for one period: the local epoch day, the week counted from the
+     * Monday before the epoch, or the month counted from year 0.
+     */
+    static long bucketOf(int period, long millis, TimeZone timeZone) {
+        long day = Math.floorDiv(millis + timeZone.getOffset(millis), MILLIS_PER_DAY);
+        if (period == PERIOD_DAY) {
+            return day;
+        }
+        if (period == PERIOD_WEEK) {
+            // 1970-01-01 was a Thursday
+            return Math.floorDiv(day + 3, 7);
+        }
+        // Civil year and month from days since 1970-01-01, counted in 400-year eras starting on March 1st
+        long z = day + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        int dayOfEra = (int) (z - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    long bucketOf(int period, long millis) {
+        return bucketOf(period, millis, timeZone);
+    }
+
+    /**
+     * Adds a newly inserted entry to its buckets.
+     */
+    synchronized void onInserted(long userId, long date, double weight) {
+        for (int period = 0; period < PERIODS; period++) {
+            Bucket bucket = buckets[period];
+            bucket.reset(bucketOf(period, date));
+            bucket.add(date, weight);
+            write(userId, period, bucket, true);
+        }
+    }
+
+    /**
+     * Recomputes the buckets holding {@code date} after an entry there was updated or deleted.
+     */
+    synchronized void recompute(long userId, long date) {
+        for (int period = 0; period < PERIODS; period++) {
+            buckets[period].reset(bucketOf(period, date));
+        }
+        try (Cursor cursor = db.rawQuery(SQL_ENTRIES_AROUND, new String[]{String.valueOf(userId),
+                String.valueOf(date - WINDOW_MILLIS), String.valueOf(date + WINDOW_MILLIS)})) {
+            while (cursor.moveToNext()) {
+                long entryDate = cursor.getLong(0);
+                double weight = cursor.getDouble(1);
+                for (int period = 0; period < PERIODS; period++) {
+                    if (bucketOf(period, entryDate) == buckets[period].bucket) {
+                        buckets[period].add(entryDate, weight);
+                    }
+                }
+            }
+        }
+        for (int period = 0; period < PERIODS; period++) {
+            Bucket bucket = buckets[period];
+            if (bucket.count > 0) {
+                write(userId, period, bucket, false);
+            } else {
+                deleteBucket.bindLong(1, userId);
+                deleteBucket.bindLong(2, period);
+                deleteBucket.bindLong(3, bucket.bucket);
+                deleteBucket.executeUpdateDelete();
+            }
+        }
+    }
+
+    // Drops a user's rollups after all their entries were deleted
+    synchronized void deleteUser(long userId) {
+        deleteUser.bindLong(1, userId);
+        deleteUser.executeUpdateDelete();
+    }
+
+    /**
+     * Recomputes every rollup from the weights table in one pass along its index. Call inside a
+     * transaction.
+     *
+     * @return the number of entries read
+     */
+    synchronized int rebuild() {
+        db.execSQL("DELETE FROM " + DatabaseHelper.TABLE_ROLLUPS);
+        int entries = 0;
+        long userId = 0;
+        try (Cursor cursor = db.rawQuery(SQL_ALL_ENTRIES, null)) {
+            while (cursor.moveToNext()) {
+                long entryUser = cursor.getLong(0);
+                long date = cursor.getLong(1);
+                double weight = cursor.getDouble(2);
+                for (int period = 0; period < PERIODS; period++) {
+                    Bucket bucket = buckets[period];
+                    long entryBucket = bucketOf(period, date);
+                    if (entries > 0 && (entryUser != userId || entryBucket != bucket.bucket)) {
+                        // Merged rather than inserted, in case a zone change sends a later entry back to a written bucket
+                        write(userId, period, bucket, true);
+                        bucket.reset(entryBucket);
+                    } else if (entries == 0) {
+                        bucket.reset(entryBucket);
+                    }
+                    bucket.add(date, weight);
+                }
+                userId = entryUser;
+                entries++;
+            }
+        }
+        if (entries > 0) {
+            for (int period = 0; period < PERIODS; period++) {
+                write(userId, period, buckets[period], true);
+            }
+        }
+        Log.i(TAG, "Rebuilt rollups from " + entries + " entries");
+        return entries;
+    }
+
+    // Writes a bucket's aggregate, merging it into the stored one or replacing that
+    private void write(long userId, int period, Bucket bucket, boolean mergeIntoExisting) {
+        if (mergeIntoExisting) {
+            merge.bindLong(1, bucket.count);
+            merge.bindDouble(2, bucket.sum);
+            merge.bindDouble(3, bucket.min);
+            merge.bindDouble(4, bucket.max);
+            merge.bindLong(5, bucket.firstDate);
+            merge.bindDouble(6, bucket.firstWeight);
+            merge.bindLong(7, bucket.lastDate);
+            merge.bindDouble(8, bucket.lastWeight);
+            merge.bindLong(9, userId);
+            merge.bindLong(10, period);
+            merge.bindLong(11, bucket.bucket);
+            if (merge.executeUpdateDelete() > 0) {
+                return;
+            }
+        }
+        replace.bindLong(1, bucket.count);
+        replace.bindDouble(2, bucket.sum);
+        replace.bindDouble(3, bucket.min);
+        replace.bindDouble(4, bucket.max);
+        replace.bindLong(5, bucket.firstDate);
+        replace.bindDouble(6, bucket.firstWeight);
+        replace.bindLong(7, bucket.lastDate);
+        replace.bindDouble(8, bucket.lastWeight);
+        replace.bindLong(9, userId);
+        replace.bindLong(10, period);
+        replace.bindLong(11, bucket.bucket);
+        replace.executeInsert();
+    }
+
+    void close() {
+        merge.close();
+        replace.close();
+        deleteBucket.close();
+        deleteUser.close();
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.dailyweighttracker;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable summary of a set of weights for quantiles and histograms: the count of weights at
+ * each tenth, the precision weights are entered and shown at. Quantiles are exact to the nearest
+ * tenth, two sketches merge without losing anything, and a weight can be taken back out again,
+ * so edits and deletes update a stored sketch in place. Only tenths that occur are kept, which for
+ * a month of one person's weights is a few dozen.
+ *
+ * <p>Serialized by {@link #toBytes()} as varints: the number of tenths, then for each the gap from
+ * the previous tenth (zigzag encoded for the first) and its count.
+ *
+ * <p>Not thread safe.
+ */
+public final class WeightSketch {
+
+    private int[] tenths;
+    private long[] counts;
+    private int size;
+    private long total;
+
+    public WeightSketch() {
+        this(new int[8], new long[8], 0, 0);
+    }
+
+    private WeightSketch(int[] tenths, long[] counts, int size, long total) {
+        this.tenths = tenths;
+        this.counts = counts;
+        this.size = size;
+        this.total = total;
+    }
+
+    // Number of weights summarized
+    public long getCount() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    public void add(double weight) {
+        add(tenthOf(weight), 1);
+    }
+
+    /**
+     * Takes a weight added earlier back out.
+     *
+     * @return false, leaving the sketch unchanged, if there was no such weight
+     */
+    public boolean remove(double weight) {
+        int tenth = tenthOf(weight);
+        int at = Arrays.binarySearch(tenths, 0, size, tenth);
+        if (at < 0) {
+            return false;
+        }
+        total--;
+        if (--counts[at] == 0) {
+            System.arraycopy(tenths, at + 1, tenths, at, size - at - 1);
+            System.arraycopy(counts, at + 1, counts, at, size - at - 1);
+            size--;
+        }
+        return true;
+    }
+
+    // Adds every weight summarized by another sketch
+    public void merge(WeightSketch other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.tenths[i], other.counts[i]);
+        }
+    }
+
+    /**
+     * Returns the weight at a quantile by nearest rank: the smallest weight with at least
+     * {@code q} of all weights at or below it, so 0 gives the minimum and 1 the maximum. Exact to the
+     * nearest tenth.
+     *
+     * @return the weight, or NaN if the sketch is empty
+     */
+    public double quantile(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < size; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return tenths[i] / 10.0;
+            }
+        }
+        return tenths[size - 1] / 10.0;
+    }
+
+    /**
+     * Counts the weights into {@code bins.length} bins of {@code width} starting at {@code from}.
+     * Weights outside the bins are counted in the first or last one.
+     */
+    public void histogram(double from, double width, long[] bins) {
+        Arrays.fill(bins, 0);
+        for (int i = 0; i < size; i++) {
+            int bin = (int) Math.floor((tenths[i] / 10.0 - from) / width);
+            bins[Math.max(0, Math.min(bins.length - 1, bin))] += counts[i];
+        }
+    }
+
+    public byte[] toBytes() {
+        // At most 5 bytes per int and 10 per long
+        byte[] bytes = new byte[5 + size * 15];
+        int at = writeVarint(size, bytes, 0);
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            at = i == 0 ? writeVarint(((tenths[0] << 1) ^ (tenths[0] >> 31)) & 0xFFFFFFFFL, bytes, at)
+                    : writeVarint(tenths[i] - previous, bytes, at);
+            at = writeVarint(counts[i], bytes, at);
+            previous = tenths[i];
+        }
+        return Arrays.copyOf(bytes, at);
+    }
+
+    /**
+     * Reads a sketch written by {@link #toBytes()}.
+     *
+     * @throws IllegalArgumentException if the bytes aren't a sketch
+     */
+    public static WeightSketch fromBytes(byte[] bytes) {
+        int[] at = new int[1];
+        int size = (int) readVarint(bytes, at);
+        if (size < 0 || size > bytes.length) {
+            throw new IllegalArgumentException("Bad sketch size " + size);
+        }
+        int[] tenths = new int[Math.max(8, size)];
+        long[] counts = new long[tenths.length];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            int gap = (int) readVarint(bytes, at);
+            tenths[i] = i == 0 ? (gap >>> 1) ^ -(gap & 1) : tenths[i - 1] + gap;
+            counts[i] = readVarint(bytes, at);
+            total += counts[i];
+        }
+        if (at[0] != bytes.length) {
+            throw new IllegalArgumentException("Trailing bytes in sketch");
+        }
+        return new WeightSketch(tenths, counts, size, total);
+    }
+
+    private void add(int tenth, long count) {
+        int at = Arrays.binarySearch(tenths, 0, size, tenth);
+        if (at < 0) {
+            at = -at - 1;
+            if (size == tenths.length) {
+                tenths = Arrays.copyOf(tenths, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            System.arraycopy(tenths, at, tenths, at + 1, size - at);
+            System.arraycopy(counts, at, counts, at + 1, size - at);
+            tenths[at] = tenth;
+            counts[at] = 0;
+            size++;
+        }
+        counts[at] += count;
+        total += count;
+    }
+
+    private static int tenthOf(double weight) {
+        return (int) Math.round(weight * 10);
+    }
+
+    private static int writeVarint(long value, byte[] into, int at) {
+        while ((value & ~0x7FL) != 0) {
+            into[at++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        into[at++] = (byte) value;
+        return at;
+    }
+
+    private static long readVarint(byte[] bytes, int[] at) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (at[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated sketch");
+            }
+            byte b = bytes[at[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
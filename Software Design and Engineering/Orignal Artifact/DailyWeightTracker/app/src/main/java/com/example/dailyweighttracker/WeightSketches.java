@@ -0,0 +1,221 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Maintains the sketches table: a {@link WeightSketch} of each user's weights per month, so
+ * percentiles and histograms over a long range merge one sketch per month instead of reading every
+ * entry. DatabaseHelper calls it inside the transaction of each weights write. Unlike the rollups,
+ * a sketch can take a weight back out, so updates and deletes change just their own month.
+ *
+ * <p>Months are numbered as by {@link WeightRollups#bucketOf(int, long, TimeZone)} in the time
+ * zone the sketches were written in; {@link #rebuild()} recomputes them all.
+ */
+final class WeightSketches {
+
+    private static final String TAG = "WeightSketches";
+
+    static final String SQL_SKETCH = "SELECT " + DatabaseHelper.COLUMN_SKETCH_DATA
+            + " FROM " + DatabaseHelper.TABLE_SKETCHES + " WHERE " + DatabaseHelper.COLUMN_SKETCH_USER_ID + " = ?"
+            + " AND " + DatabaseHelper.COLUMN_SKETCH_MONTH + " = ?";
+    // A user's sketches over a range of months, read along the primary key
+    static final String SQL_SKETCHES_BETWEEN = "SELECT " + DatabaseHelper.COLUMN_SKETCH_DATA
+            + " FROM " + DatabaseHelper.TABLE_SKETCHES + " WHERE " + DatabaseHelper.COLUMN_SKETCH_USER_ID + " = ?"
+            + " AND " + DatabaseHelper.COLUMN_SKETCH_MONTH + " BETWEEN ? AND ?";
+    private static final String SQL_REPLACE = "INSERT OR REPLACE INTO " + DatabaseHelper.TABLE_SKETCHES + " ("
+            + DatabaseHelper.COLUMN_SKETCH_USER_ID + ", " + DatabaseHelper.COLUMN_SKETCH_MONTH + ", "
+            + DatabaseHelper.COLUMN_SKETCH_DATA + ") VALUES (?, ?, ?)";
+    static final String SQL_DELETE_MONTH = "DELETE FROM " + DatabaseHelper.TABLE_SKETCHES
+            + " WHERE " + DatabaseHelper.COLUMN_SKETCH_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_SKETCH_MONTH + " = ?";
+    static final String SQL_DELETE_USER = "DELETE FROM " + DatabaseHelper.TABLE_SKETCHES
+            + " WHERE " + DatabaseHelper.COLUMN_SKETCH_USER_ID + " = ?";
+    // Every entry, grouped by user and in month order, read along the (user_id, date, _id, weight) index
+    private static final String SQL_ALL_ENTRIES = "SELECT " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + ", "
+            + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_WEIGHT + " FROM " + DatabaseHelper.TABLE_WEIGHTS
+            + " ORDER BY " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + ", " + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_ID;
+
+    private final SQLiteDatabase db;
+    private final TimeZone timeZone = TimeZone.getDefault();
+    private final SQLiteStatement replace;
+    private final SQLiteStatement deleteMonth;
+    private final SQLiteStatement deleteUser;
+
+    WeightSketches(SQLiteDatabase db) {
+        this.db = db;
+        replace = db.compileStatement(SQL_REPLACE);
+        deleteMonth = db.compileStatement(SQL_DELETE_MONTH);
+        deleteUser = db.compileStatement(SQL_DELETE_USER);
+    }
+
+    // Check if these statements were compiled against the given, still open, database
+    boolean isFor(SQLiteDatabase database) {
+        return db == database && db.isOpen();
+    }
+
+    /**
+     * Returns the first instant of a month numbered as by {@link WeightRollups#bucketOf}.
+     */
+    static long monthStart(long month, TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set((int) Math.floorDiv(month, 12), (int) Math.floorMod(month, 12), 1);
+        return calendar.getTimeInMillis();
+    }
+
+    synchronized void onInserted(long userId, long date, double weight) {
+        long month = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, date, timeZone);
+        WeightSketch sketch = read(userId, month);
+        if (sketch == null) {
+            sketch = new WeightSketch();
+        }
+        sketch.add(weight);
+        write(userId, month, sketch);
+    }
+
+    synchronized void onUpdated(long userId, long date, double oldWeight, double newWeight) {
+        long month = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, date, timeZone);
+        WeightSketch sketch = read(userId, month);
+        if (sketch == null) {
+            sketch = new WeightSketch();
+        }
+        sketch.remove(oldWeight);
+        sketch.add(newWeight);
+        write(userId, month, sketch);
+    }
+
+    synchronized void onDeleted(long userId, long date, double weight) {
+        long month = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, date, timeZone);
+        WeightSketch sketch = read(userId, month);
+        if (sketch != null && sketch.remove(weight)) {
+            write(userId, month, sketch);
+        }
+    }
+
+    // Drops a user's sketches after all their entries were deleted
+    synchronized void deleteUser(long userId) {
+        deleteUser.bindLong(1, userId);
+        deleteUser.executeUpdateDelete();
+    }
+
+    /**
+     * Returns a sketch of a user's weights dated from {@code fromDate} to {@code toDate}
+     * inclusive: the stored sketches of the months wholly inside the range, plus the entries of
+     * the partial months at either end.
+     */
+    synchronized WeightSketch query(long userId, long fromDate, long toDate) {
+        WeightSketch sketch = new WeightSketch();
+        long firstMonth = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, fromDate, timeZone);
+        if (monthStart(firstMonth, timeZone) < fromDate) {
+            firstMonth++;
+        }
+        long lastMonth = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, toDate, timeZone);
+        if (monthStart(lastMonth + 1, timeZone) - 1 > toDate) {
+            lastMonth--;
+        }
+        if (firstMonth > lastMonth) {
+            addEntries(sketch, userId, fromDate, toDate);
+            return sketch;
+        }
+        addEntries(sketch, userId, fromDate, monthStart(firstMonth, timeZone) - 1);
+        try (Cursor cursor = db.rawQuery(SQL_SKETCHES_BETWEEN, new String[]{String.valueOf(userId),
+                String.valueOf(firstMonth), String.valueOf(lastMonth)})) {
+            while (cursor.moveToNext()) {
+                sketch.merge(WeightSketch.fromBytes(cursor.getBlob(0)));
+            }
+        }
+        addEntries(sketch, userId, monthStart(lastMonth + 1, timeZone), toDate);
+        return sketch;
+    }
+
+    /**
+     * Recomputes every sketch from the weights table in one pass along its index. Call inside a
+     * transaction.
+     *
+     * @return the number of entries read
+     */
+    synchronized int rebuild() {
+        db.execSQL("DELETE FROM " + DatabaseHelper.TABLE_SKETCHES);
+        int entries = 0;
+        long userId = 0;
+        long month = 0;
+        WeightSketch sketch = new WeightSketch();
+        try (Cursor cursor = db.rawQuery(SQL_ALL_ENTRIES, null)) {
+            while (cursor.moveToNext()) {
+                long entryUser = cursor.getLong(0);
+                long entryMonth = WeightRollups.bucketOf(WeightRollups.PERIOD_MONTH, cursor.getLong(1), timeZone);
+                if (entries > 0 && (entryUser != userId || entryMonth != month)) {
+                    writeMerged(userId, month, sketch);
+                    sketch = new WeightSketch();
+                }
+                sketch.add(cursor.getDouble(2));
+                userId = entryUser;
+                month = entryMonth;
+                entries++;
+            }
+        }
+        if (entries > 0) {
+            writeMerged(userId, month, sketch);
+        }
+        Log.i(TAG, "Rebuilt sketches from " + entries + " entries");
+        return entries;
+    }
+
+    // Adds a user's entries within a date range, archived ones included, if it isn't empty
+    private void addEntries(WeightSketch sketch, long userId, long fromDate, long toDate) {
+        if (fromDate > toDate) {
+            return;
+        }
+        try (Cursor cursor = db.rawQuery(WeightRollups.SQL_ENTRIES_AROUND, new String[]{String.valueOf(userId),
+                String.valueOf(fromDate), String.valueOf(toDate)})) {
+            while (cursor.moveToNext()) {
+                sketch.add(cursor.getDouble(1));
+            }
+        }
+        WeightArchive.Entries archived = WeightArchive.read(db, userId, fromDate - 1, Long.MAX_VALUE,
+                toDate, Long.MAX_VALUE, Integer.MAX_VALUE);
+        for (int i = 0; i < archived.size; i++) {
+            sketch.add(archived.weights[i]);
+        }
+    }
+
+    private WeightSketch read(long userId, long month) {
+        try (Cursor cursor = db.rawQuery(SQL_SKETCH, new String[]{String.valueOf(userId), String.valueOf(month)})) {
+            return cursor.moveToFirst() ? WeightSketch.fromBytes(cursor.getBlob(0)) : null;
+        }
+    }
+
+    // Merged rather than replaced, in case a zone change sends a later entry back to a written month
+    private void writeMerged(long userId, long month, WeightSketch sketch) {
+        WeightSketch existing = read(userId, month);
+        if (existing != null) {
+            sketch.merge(existing);
+        }
+        write(userId, month, sketch);
+    }
+
+    // Stores a month's sketch, or drops it once empty
+    private void write(long userId, long month, WeightSketch sketch) {
+        if (sketch.isEmpty()) {
+            deleteMonth.bindLong(1, userId);
+            deleteMonth.bindLong(2, month);
+            deleteMonth.executeUpdateDelete();
+            return;
+        }
+        replace.bindLong(1, userId);
+        replace.bindLong(2, month);
+        replace.bindBlob(3, sketch.toBytes());
+        replace.executeInsert();
+    }
+
+    void close() {
+        replace.close();
+        deleteMonth.close();
+        deleteUser.close();
+    }
+}
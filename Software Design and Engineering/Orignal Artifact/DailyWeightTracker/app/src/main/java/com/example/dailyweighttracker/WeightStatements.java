@@ -0,0 +1,85 @@
+package com.example.dailyweighttracker;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Write statements for the weights table, compiled once per open database and reused through
+ * bound parameters instead of building ContentValues and SQL for every call.
+ * A SQLiteStatement can't be bound from two threads at once, so each one is used under its own lock.
+ */
+final class WeightStatements {
+
+    private final SQLiteDatabase db;
+    private final SQLiteStatement insert;
+    private final SQLiteStatement update;
+    private final SQLiteStatement delete;
+    private final SQLiteStatement deleteForUser;
+    private final SQLiteStatement countAt;
+
+    WeightStatements(SQLiteDatabase db) {
+        this.db = db;
+        insert = db.compileStatement(DatabaseHelper.SQL_INSERT_WEIGHT);
+        update = db.compileStatement(DatabaseHelper.SQL_UPDATE_WEIGHT);
+        delete = db.compileStatement(DatabaseHelper.SQL_DELETE_WEIGHT);
+        deleteForUser = db.compileStatement(DatabaseHelper.SQL_DELETE_WEIGHTS_FOR_USER);
+        countAt = db.compileStatement(DatabaseHelper.SQL_COUNT_WEIGHTS_AT);
+    }
+
+    // Check if these statements were compiled against the given, still open, database
+    boolean isFor(SQLiteDatabase database) {
+        return db == database && db.isOpen();
+    }
+
+    // Returns the new row id, or -1 on failure
+    long insert(long userId, double weight, long date) {
+        synchronized (insert) {
+            insert.bindDouble(1, weight);
+            insert.bindLong(2, date);
+            insert.bindLong(3, userId);
+            return insert.executeInsert();
+        }
+    }
+
+    // Returns the number of rows changed
+    int update(long id, double weight) {
+        synchronized (update) {
+            update.bindDouble(1, weight);
+            update.bindLong(2, id);
+            return update.executeUpdateDelete();
+        }
+    }
+
+    // Returns the number of rows deleted
+    int delete(long id) {
+        synchronized (delete) {
+            delete.bindLong(1, id);
+            return delete.executeUpdateDelete();
+        }
+    }
+
+    // Returns the number of rows deleted
+    int deleteForUser(long userId) {
+        synchronized (deleteForUser) {
+            deleteForUser.bindLong(1, userId);
+            return deleteForUser.executeUpdateDelete();
+        }
+    }
+
+    // Check if the user already has an entry recorded at exactly this time
+    boolean existsAt(long userId, long date) {
+        synchronized (countAt) {
+            countAt.bindLong(1, userId);
+            countAt.bindLong(2, date);
+            return countAt.simpleQueryForLong() > 0;
+        }
+    }
+
+    void close() {
+        insert.close();
+        update.close();
+        delete.close();
+        deleteForUser.close();
+        countAt.close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.dailyweighttracker;
+
+import java.util.List;
+
+/**
+ * Storage of users and their weight entries, independent of where they are kept.
+ * {@link SqliteWeightStore} is the app's store on top of {@link DatabaseHelper};
+ * {@link InMemoryWeightStore} keeps everything in plain Java collections, so storage behaviour
+ * can be tested and measured on the JVM without a device.
+ *
+ * <p>Entries are ordered by date, then by id. Implementations must not use Android APIs in this
+ * interface's signatures.
+ */
+public interface WeightStore {
+
+    // The user every new store starts out with, who can't log in
+    String GUEST_USERNAME = "guest";
+
+    /**
+     * Records a weight for a user at the given date.
+     *
+     * @return the new entry's id, or -1 if it could not be stored
+     */
+    long addWeight(long userId, double weight, long date);
+
+    /**
+     * Inserts all entries for a user at once. The entries' ids are ignored.
+     *
+     * @return the new id of each entry, in order, or -1 for an entry that could not be stored
+     */
+    long[] addWeights(long userId, List<WeightEntry> entries);
+
+    // Sets an entry's weight, returning false if there is no such entry
+    boolean updateWeight(long id, double weight);
+
+    // Deletes an entry, returning false if there is no such entry
+    boolean deleteWeight(long id);
+
+    void deleteAllWeightsForUser(long userId);
+
+    // All of a user's entries, oldest first
+    List<WeightEntry> getAllWeights(long userId);
+
+    /**
+     * Returns up to {@code limit} of a user's entries after the given (date, id) position, oldest
+     * first. Pass {@code Long.MIN_VALUE} for both to start at the beginning.
+     */
+    List<WeightEntry> getWeightsAfter(long userId, long afterDate, long afterId, int limit);
+
+    // A user's most recent entry, or null if they have none
+    WeightEntry getMostRecentWeight(long userId);
+
+    // Adds a user, returning false if the username is taken
+    boolean addUser(String username, String password);
+
+    boolean checkUser(String username, String password);
+
+    boolean checkUserExists(String username);
+
+    // The id of a user, or -1 if there is none
+    long getUserId(String username);
+
+    // Renames a user, returning false if there is no such user or the new name is taken
+    boolean updateUsername(String oldUsername, String newUsername);
+
+    boolean updatePassword(String username, String newPassword);
+}
@@ -0,0 +1,71 @@
+package com.example.dailyweighttracker;
+
+/**
+ * A user's weight trend as of their latest entry: 7- and 30-day moving averages, an exponentially
+ * weighted trend that smooths out day-to-day swings, and the slope of a least-squares line through
+ * the last 30 days. Computed by {@link WeightTrends}.
+ */
+public final class WeightTrend {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Projections further out than this aren't shown
+    private static final double MAX_ETA_DAYS = 5 * 365;
+
+    private final long latestDate;
+    private final double movingAverage7;
+    private final double movingAverage30;
+    private final double trend;
+    private final double slopePerDay;
+
+    WeightTrend(long latestDate, double movingAverage7, double movingAverage30, double trend, double slopePerDay) {
+        this.latestDate = latestDate;
+        this.movingAverage7 = movingAverage7;
+        this.movingAverage30 = movingAverage30;
+        this.trend = trend;
+        this.slopePerDay = slopePerDay;
+    }
+
+    public long getLatestDate() {
+        return latestDate;
+    }
+
+    // Average of the entries in the 7 days up to the latest one
+    public double getMovingAverage7() {
+        return movingAverage7;
+    }
+
+    // Average of the entries in the 30 days up to the latest one
+    public double getMovingAverage30() {
+        return movingAverage30;
+    }
+
+    // Exponentially weighted trend, each day's entries moving it 10% of the way
+    public double getTrend() {
+        return trend;
+    }
+
+    // Change per day over the last 30 days, or NaN with fewer than two distinct days of entries
+    public double getSlopePerDay() {
+        return slopePerDay;
+    }
+
+    /**
+     * Projects when the trend reaches a goal at the current slope.
+     *
+     * @return the projected date in epoch milliseconds, the latest entry's date if the trend is
+     * already there, or -1 if the trend isn't heading towards the goal or won't reach it within
+     * five years
+     */
+    public long getGoalEta(double goalWeight) {
+        double remaining = goalWeight - trend;
+        if (Math.abs(remaining) < 0.05) {
+            return latestDate;
+        }
+        double days = remaining / slopePerDay;
+        // Also false for a NaN slope
+        if (!(days > 0 && days <= MAX_ETA_DAYS)) {
+            return -1;
+        }
+        return latestDate + (long) (days * MILLIS_PER_DAY);
+    }
+}
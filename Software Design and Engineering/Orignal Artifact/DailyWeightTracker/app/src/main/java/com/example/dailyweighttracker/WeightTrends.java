@@ -0,0 +1,191 @@
+package com.example.dailyweighttracker;
+
+import android.database.Cursor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps running trend state for recently used users: sums over their last 7 and 30 days of entries,
+ * the regression sums over the 30 days, and an exponentially weighted trend. An entry added after
+ * the latest one updates the state in amortized constant time. Any other change within
+ * {@link #HORIZON_DAYS} of the latest entry drops the state, and the next read replays just that
+ * window; older changes can't move the trend by more than {@code 0.9^HORIZON_DAYS} of a weight,
+ * so they are ignored.
+ *
+ * <p>Kept in step by {@link DatabaseHelper}'s write methods after they commit. Thread safe.
+ * Loading a user's state queries the database, so call it off the main thread.
+ */
+final class WeightTrends {
+
+    // Days of entries replayed to rebuild a user's state
+    static final int HORIZON_DAYS = 180;
+    // Users whose state is kept; the least recently used is dropped beyond this
+    private static final int MAX_USERS = 8;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long WEEK_MILLIS = 7 * MILLIS_PER_DAY;
+    private static final long MONTH_MILLIS = 30 * MILLIS_PER_DAY;
+    // Share of the trend kept per day; each day of entries moves it the rest of the way
+    private static final double DAILY_DECAY = 0.9;
+
+    // The entries within HORIZON_DAYS of a user's latest, oldest first
+    static final String SQL_WINDOW = "SELECT " + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_WEIGHT
+            + ", " + DatabaseHelper.COLUMN_ID
+            + " FROM " + DatabaseHelper.TABLE_WEIGHTS + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ?1"
+            + " AND " + DatabaseHelper.COLUMN_DATE + " >= (SELECT MAX(" + DatabaseHelper.COLUMN_DATE + ") FROM "
+            + DatabaseHelper.TABLE_WEIGHTS + " WHERE " + DatabaseHelper.COLUMN_WEIGHT_USER_ID + " = ?1) - ?2"
+            + " ORDER BY " + DatabaseHelper.COLUMN_DATE + ", " + DatabaseHelper.COLUMN_ID;
+
+    // One user's running state. The entries of the last 30 days are kept from head30 to size, and
+    // those of the last 7 from head7; regression x values are days since anchor.
+    private static final class State {
+        long[] dates = new long[32];
+        double[] weights = new double[32];
+        int head30;
+        int head7;
+        int size;
+        double sum7;
+        double sum30;
+        double sumX;
+        double sumXX;
+        double sumXY;
+        long anchor;
+        double trend;
+        long latestDate = Long.MIN_VALUE;
+        long latestId = -1;
+
+        void add(long date, double weight) {
+            if (size == 0) {
+                trend = weight;
+            } else {
+                // Decays by the time elapsed rather than per entry, so irregular logging counts each day once
+                double decay = Math.pow(DAILY_DECAY, (double) (date - latestDate) / MILLIS_PER_DAY);
+                trend = weight + decay * (trend - weight);
+            }
+            latestDate = date;
+            if (head30 == size) {
+                // Nothing in the window, so start the regression afresh around this entry
+                head30 = head7 = size = 0;
+                sum7 = sum30 = sumX = sumXX = sumXY = 0;
+                anchor = date;
+            } else if (size == dates.length) {
+                compact();
+            }
+            dates[size] = date;
+            weights[size] = weight;
+            size++;
+            double x = (double) (date - anchor) / MILLIS_PER_DAY;
+            sum7 += weight;
+            sum30 += weight;
+            sumX += x;
+            sumXX += x * x;
+            sumXY += x * weight;
+            while (dates[head7] <= date - WEEK_MILLIS) {
+                sum7 -= weights[head7++];
+            }
+            while (dates[head30] <= date - MONTH_MILLIS) {
+                double old = (double) (dates[head30] - anchor) / MILLIS_PER_DAY;
+                sum30 -= weights[head30];
+                sumX -= old;
+                sumXX -= old * old;
+                sumXY -= old * weights[head30];
+                head30++;
+            }
+        }
+
+        // Moves the window to the start of the arrays, growing them if it fills more than half
+        private void compact() {
+            int count = size - head30;
+            if (count > dates.length / 2) {
+                dates = Arrays.copyOf(dates, dates.length * 2);
+                weights = Arrays.copyOf(weights, weights.length * 2);
+            }
+            System.arraycopy(dates, head30, dates, 0, count);
+            System.arraycopy(weights, head30, weights, 0, count);
+            head7 -= head30;
+            head30 = 0;
+            size = count;
+        }
+
+        WeightTrend snapshot() {
+            int n30 = size - head30;
+            double slope = Double.NaN;
+            double denominator = n30 * sumXX - sumX * sumX;
+            // Zero, up to rounding, when every entry is on the same day
+            if (n30 >= 2 && denominator > 1e-6 * n30 * n30) {
+                slope = (n30 * sumXY - sumX * sum30) / denominator;
+            }
+            return new WeightTrend(latestDate, sum7 / (size - head7), sum30 / n30, trend, slope);
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final Map<Long, State> states = new LinkedHashMap<Long, State>(MAX_USERS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, State> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+
+    WeightTrends(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Returns a user's trend, or null if they have no entries.
+     */
+    synchronized WeightTrend get(long userId) {
+        State state = load(userId);
+        return state.size == 0 ? null : state.snapshot();
+    }
+
+    // Records a committed insert. Loading may already have read the row, so the latest is added only once.
+    synchronized void onInserted(long userId, long id, long date, double weight) {
+        State state = states.get(userId);
+        if (state == null || id == -1 || (date == state.latestDate && id == state.latestId)) {
+            return;
+        }
+        if (date >= state.latestDate) {
+            state.add(date, weight);
+            state.latestId = id;
+        } else {
+            onChanged(userId, date);
+        }
+    }
+
+    // Records a committed update, delete or out of order insert of an entry at the given date
+    synchronized void onChanged(long userId, long date) {
+        State state = states.get(userId);
+        if (state != null && (state.size == 0 || date > state.latestDate - HORIZON_DAYS * MILLIS_PER_DAY)) {
+            states.remove(userId);
+        }
+    }
+
+    // Drops a user's state, to be replayed on next use
+    synchronized void invalidate(long userId) {
+        states.remove(userId);
+    }
+
+    // Drops every user's state, for writes whose users aren't known
+    synchronized void invalidateAll() {
+        states.clear();
+    }
+
+    private State load(long userId) {
+        State state = states.get(userId);
+        if (state != null) {
+            return state;
+        }
+        state = new State();
+        try (Cursor cursor = dbHelper.getReadableDatabase().rawQuery(SQL_WINDOW, new String[]{
+                String.valueOf(userId), String.valueOf(HORIZON_DAYS * MILLIS_PER_DAY)})) {
+            while (cursor.moveToNext()) {
+                state.add(cursor.getLong(0), cursor.getDouble(1));
+                state.latestId = cursor.getLong(2);
+            }
+        }
+        states.put(userId, state);
+        return state;
+    }
+}
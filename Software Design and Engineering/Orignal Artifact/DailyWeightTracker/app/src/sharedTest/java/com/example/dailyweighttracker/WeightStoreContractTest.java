@@ -0,0 +1,205 @@
+package com.example.dailyweighttracker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Behaviour every {@link WeightStore} must share. Subclasses supply a store that starts out like a
+ * new database.
+ */
+public abstract class WeightStoreContractTest {
+
+    private static final long USER_ID = 1;
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_700_000_000_000L;
+
+    protected WeightStore store;
+
+    protected abstract WeightStore createStore();
+
+    @Before
+    public void createContractStore() {
+        store = createStore();
+    }
+
+    @Test
+    public void newStore_hasOnlyTheGuest() {
+        assertTrue(store.checkUserExists(WeightStore.GUEST_USERNAME));
+        assertNotEquals(-1, store.getUserId(WeightStore.GUEST_USERNAME));
+        assertFalse(store.checkUserExists("alice"));
+        assertEquals(-1, store.getUserId("alice"));
+        assertTrue(store.getAllWeights(USER_ID).isEmpty());
+        assertNull(store.getMostRecentWeight(USER_ID));
+    }
+
+    @Test
+    public void addWeight_isReadBackInDateOrder() {
+        long second = store.addWeight(USER_ID, 148.5, START + DAY);
+        long first = store.addWeight(USER_ID, 150.25, START);
+        long third = store.addWeight(USER_ID, 147.75, START + 2 * DAY);
+
+        assertEquals(Arrays.asList(
+                new WeightEntry(first, 150.25, START),
+                new WeightEntry(second, 148.5, START + DAY),
+                new WeightEntry(third, 147.75, START + 2 * DAY)), store.getAllWeights(USER_ID));
+        assertEquals(new WeightEntry(third, 147.75, START + 2 * DAY), store.getMostRecentWeight(USER_ID));
+    }
+
+    @Test
+    public void weights_keepTheirDecimalsExactly() {
+        // 150.1 and 150.3 have no exact float, so a float anywhere in the store would show here
+        long id = store.addWeight(USER_ID, 150.1, START);
+
+        assertEquals(Arrays.asList(new WeightEntry(id, 150.1, START)), store.getAllWeights(USER_ID));
+        assertEquals(new WeightEntry(id, 150.1, START), store.getMostRecentWeight(USER_ID));
+
+        assertTrue(store.updateWeight(id, 150.3));
+        assertEquals(Arrays.asList(new WeightEntry(id, 150.3, START)), store.getAllWeights(USER_ID));
+        assertEquals(new WeightEntry(id, 150.3, START), store.getMostRecentWeight(USER_ID));
+    }
+
+    @Test
+    public void sameDate_isOrderedById() {
+        long first = store.addWeight(USER_ID, 150, START);
+        long second = store.addWeight(USER_ID, 149, START);
+
+        List<WeightEntry> entries = store.getAllWeights(USER_ID);
+        assertTrue(first < second);
+        assertEquals(first, entries.get(0).getId());
+        assertEquals(second, entries.get(1).getId());
+        assertEquals(second, store.getMostRecentWeight(USER_ID).getId());
+    }
+
+    @Test
+    public void addWeights_returnsIdsInOrder() {
+        long[] ids = store.addWeights(USER_ID, Arrays.asList(
+                WeightEntry.of(150, START), WeightEntry.of(149.5, START + DAY)));
+
+        assertEquals(2, ids.length);
+        assertEquals(Arrays.asList(new WeightEntry(ids[0], 150, START), new WeightEntry(ids[1], 149.5, START + DAY)),
+                store.getAllWeights(USER_ID));
+    }
+
+    @Test
+    public void users_areKeptApart() {
+        long otherUserId = addOtherUser();
+        store.addWeight(USER_ID, 150, START);
+        long other = store.addWeight(otherUserId, 180, START);
+
+        assertEquals(1, store.getAllWeights(USER_ID).size());
+        assertEquals(Arrays.asList(new WeightEntry(other, 180, START)), store.getAllWeights(otherUserId));
+    }
+
+    @Test
+    public void getWeightsAfter_pagesThroughEverything() {
+        List<WeightEntry> added = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // Pairs of entries share a date, so pages split between equal dates
+            long date = START + (i / 2) * DAY;
+            added.add(new WeightEntry(store.addWeight(USER_ID, 150 + i / 4.0, date), 150 + i / 4.0, date));
+        }
+
+        List<WeightEntry> read = new ArrayList<>();
+        long afterDate = Long.MIN_VALUE;
+        long afterId = Long.MIN_VALUE;
+        List<WeightEntry> page;
+        while (!(page = store.getWeightsAfter(USER_ID, afterDate, afterId, 7)).isEmpty()) {
+            assertTrue(page.size() <= 7);
+            read.addAll(page);
+            WeightEntry last = page.get(page.size() - 1);
+            afterDate = last.getDate();
+            afterId = last.getId();
+        }
+        assertEquals(added, read);
+    }
+
+    @Test
+    public void updateWeight_changesOnlyThatEntry() {
+        long id = store.addWeight(USER_ID, 150, START);
+        long other = store.addWeight(USER_ID, 149, START + DAY);
+
+        assertTrue(store.updateWeight(id, 151.5));
+        assertFalse(store.updateWeight(other + 1000, 140));
+
+        assertEquals(Arrays.asList(new WeightEntry(id, 151.5, START), new WeightEntry(other, 149, START + DAY)),
+                store.getAllWeights(USER_ID));
+    }
+
+    @Test
+    public void deleteWeight_removesOnlyThatEntry() {
+        long id = store.addWeight(USER_ID, 150, START);
+        long latest = store.addWeight(USER_ID, 149, START + DAY);
+
+        assertTrue(store.deleteWeight(latest));
+        assertFalse(store.deleteWeight(latest));
+
+        assertEquals(Arrays.asList(new WeightEntry(id, 150, START)), store.getAllWeights(USER_ID));
+        assertEquals(id, store.getMostRecentWeight(USER_ID).getId());
+    }
+
+    @Test
+    public void deleteAllWeightsForUser_leavesOtherUsers() {
+        long otherUserId = addOtherUser();
+        long id = store.addWeight(USER_ID, 150, START);
+        store.addWeight(otherUserId, 180, START);
+        store.addWeight(otherUserId, 179, START + DAY);
+
+        store.deleteAllWeightsForUser(otherUserId);
+
+        assertTrue(store.getAllWeights(otherUserId).isEmpty());
+        assertNull(store.getMostRecentWeight(otherUserId));
+        assertFalse(store.updateWeight(id + 1, 170));
+        assertEquals(1, store.getAllWeights(USER_ID).size());
+    }
+
+    @Test
+    public void addUser_rejectsTakenNames() {
+        assertTrue(store.addUser("alice", "secret"));
+        assertFalse(store.addUser("alice", "other"));
+
+        assertTrue(store.checkUserExists("alice"));
+        assertTrue(store.checkUser("alice", "secret"));
+        assertFalse(store.checkUser("alice", "other"));
+        assertFalse(store.checkUser("bob", "secret"));
+        assertNotEquals(store.getUserId(WeightStore.GUEST_USERNAME), store.getUserId("alice"));
+    }
+
+    @Test
+    public void updateUsername_keepsTheUserId() {
+        store.addUser("alice", "secret");
+        store.addUser("bob", "hunter2");
+        long id = store.getUserId("alice");
+
+        assertFalse(store.updateUsername("alice", "bob"));
+        assertFalse(store.updateUsername("carol", "dave"));
+        assertTrue(store.updateUsername("alice", "carol"));
+
+        assertFalse(store.checkUserExists("alice"));
+        assertEquals(id, store.getUserId("carol"));
+        assertTrue(store.checkUser("carol", "secret"));
+        assertTrue(store.checkUser("bob", "hunter2"));
+    }
+
+    @Test
+    public void updatePassword_replacesTheOldOne() {
+        store.addUser("alice", "secret");
+
+        assertTrue(store.updatePassword("alice", "changed"));
+        assertFalse(store.updatePassword("bob", "changed"));
+
+        assertFalse(store.checkUser("alice", "secret"));
+        assertTrue(store.checkUser("alice", "changed"));
+    }
+
+    // A second user, created as the app would before writing their weights
+    private long addOtherUser() {
+        assertTrue(store.addUser("other", "secret"));
+        return store.getUserId("other");
+    }
+}
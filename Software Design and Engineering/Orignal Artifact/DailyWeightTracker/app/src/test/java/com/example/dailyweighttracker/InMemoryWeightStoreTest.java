@@ -0,0 +1,12 @@
+package com.example.dailyweighttracker;
+
+/**
+ * The {@link WeightStore} contract on the JVM, against {@link InMemoryWeightStore}.
+ */
+public class InMemoryWeightStoreTest extends WeightStoreContractTest {
+
+    @Override
+    protected WeightStore createStore() {
+        return new InMemoryWeightStore();
+    }
+}
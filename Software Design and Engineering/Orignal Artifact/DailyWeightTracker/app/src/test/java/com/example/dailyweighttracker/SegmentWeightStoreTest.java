@@ -0,0 +1,139 @@
+package com.example.dailyweighttracker;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The {@link WeightStore} contract against {@link SegmentWeightStore}, plus reopening, the
+ * unsorted tail and compaction.
+ */
+public class SegmentWeightStoreTest extends WeightStoreContractTest {
+
+    private static final long USER_ID = 1;
+    private static final long HOUR = 3_600_000L;
+    private static final long START = 1_420_070_400_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private SegmentWeightStore segments;
+
+    @Override
+    protected WeightStore createStore() {
+        directory = new File(folder.getRoot(), "segments");
+        segments = new SegmentWeightStore(directory, new InMemoryWeightStore());
+        return segments;
+    }
+
+    @After
+    public void closeStore() throws IOException {
+        segments.close();
+    }
+
+    @Test
+    public void reopen_keepsEntriesTombstonesAndPatches() throws IOException {
+        List<WeightEntry> expected = addHourly(3000);
+        segments.deleteWeight(expected.remove(10).getId());
+        segments.updateWeight(expected.get(20).getId(), 140);
+        expected.set(20, new WeightEntry(expected.get(20).getId(), 140, expected.get(20).getDate()));
+        segments.close();
+
+        segments = new SegmentWeightStore(directory, new InMemoryWeightStore());
+        assertEquals(expected, segments.getAllWeights(USER_ID));
+        long id = segments.addWeight(USER_ID, 150, START + 5000 * HOUR);
+        assertTrue("ids aren't reused", id > expected.get(expected.size() - 1).getId());
+    }
+
+    @Test
+    public void backdatedEntries_areMergedInOrder() {
+        List<WeightEntry> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // Every other entry goes back before the last one
+            long date = START + (i % 2 == 0 ? i : i - 3) * HOUR;
+            expected.add(new WeightEntry(segments.addWeight(USER_ID, 150 + i / 10.0, date), 150 + i / 10.0, date));
+        }
+        expected.sort((a, b) -> a.getDate() != b.getDate()
+                ? Long.compare(a.getDate(), b.getDate()) : Long.compare(a.getId(), b.getId()));
+
+        assertEquals(expected, segments.getAllWeights(USER_ID));
+        assertEquals(expected.get(expected.size() - 1), segments.getMostRecentWeight(USER_ID));
+        List<WeightEntry> paged = new ArrayList<>();
+        List<WeightEntry> page;
+        long afterDate = Long.MIN_VALUE;
+        long afterId = Long.MIN_VALUE;
+        while (!(page = segments.getWeightsAfter(USER_ID, afterDate, afterId, 33)).isEmpty()) {
+            paged.addAll(page);
+            afterDate = page.get(page.size() - 1).getDate();
+            afterId = page.get(page.size() - 1).getId();
+        }
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    public void compact_dropsTombstonesAndKeepsOrder() throws IOException {
+        List<WeightEntry> expected = addHourly(1000);
+        long backdated = segments.addWeight(USER_ID, 160, START + HOUR / 2);
+        expected.add(1, new WeightEntry(backdated, 160, START + HOUR / 2));
+        for (int i = expected.size() - 1; i >= 0; i -= 3) {
+            assertTrue(segments.deleteWeight(expected.remove(i).getId()));
+        }
+        long size = new File(directory, USER_ID + ".seg").length();
+
+        segments.compact(USER_ID);
+
+        assertEquals(expected, segments.getAllWeights(USER_ID));
+        assertEquals(expected.get(expected.size() - 1), segments.getMostRecentWeight(USER_ID));
+        assertTrue(new File(directory, USER_ID + ".seg").length() <= size);
+        assertFalse(segments.deleteWeight(backdated + 10_000));
+        // The backdated entry now sits ahead of older ids, and each id is still found
+        for (WeightEntry entry : expected) {
+            assertTrue(segments.updateWeight(entry.getId(), entry.getWeight()));
+        }
+        assertTrue(segments.updateWeight(expected.get(0).getId(), 145));
+    }
+
+    @Test
+    public void deleteAllWeightsForUser_neverReusesIds() throws IOException {
+        List<WeightEntry> deleted = addHourly(10);
+        long size = new File(directory, USER_ID + ".seg").length();
+
+        segments.deleteAllWeightsForUser(USER_ID);
+
+        assertTrue(segments.getAllWeights(USER_ID).isEmpty());
+        assertNull(segments.getMostRecentWeight(USER_ID));
+        assertTrue(new File(directory, USER_ID + ".seg").length() <= size);
+        List<WeightEntry> added = addHourly(10);
+        assertTrue("ids aren't reused", added.get(0).getId() > deleted.get(deleted.size() - 1).getId());
+        // An id held from before the delete can't reach a new entry
+        for (WeightEntry entry : deleted) {
+            assertFalse(segments.updateWeight(entry.getId(), 140));
+            assertFalse(segments.deleteWeight(entry.getId()));
+        }
+        assertEquals(added, segments.getAllWeights(USER_ID));
+
+        segments.deleteAllWeightsForUser(USER_ID);
+        segments.close();
+        segments = new SegmentWeightStore(directory, new InMemoryWeightStore());
+        assertTrue(segments.addWeight(USER_ID, 150, START) > added.get(added.size() - 1).getId());
+    }
+
+    private List<WeightEntry> addHourly(int count) {
+        List<WeightEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long date = START + i * HOUR;
+            entries.add(new WeightEntry(segments.addWeight(USER_ID, 150 + (i % 300) / 10.0, date),
+                    150 + (i % 300) / 10.0, date));
+        }
+        return entries;
+    }
+}
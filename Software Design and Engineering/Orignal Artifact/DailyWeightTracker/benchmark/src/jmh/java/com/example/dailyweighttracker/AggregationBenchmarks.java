@@ -0,0 +1,96 @@
+package com.example.dailyweighttracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Percentiles over a user's whole history of {@code historySize} hourly weights: merged from
+ * monthly {@link WeightSketch}es as DatabaseHelper.getWeightSketch does, against sorting every weight, plus
+ * the cost of building and storing the sketches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AggregationBenchmarks {
+
+    // Hourly entries in an average month
+    private static final int PER_MONTH = 730;
+    private static final double[] QUANTILES = {0.1, 0.5, 0.9};
+    private static final int BINS = 40;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int historySize;
+
+    private double[] weights;
+    private byte[][] months;
+
+    @Setup
+    public void setUp() {
+        weights = new double[historySize];
+        for (int i = 0; i < historySize; i++) {
+            weights[i] = StoreBenchmarks.weight(i);
+        }
+        months = new byte[(historySize + PER_MONTH - 1) / PER_MONTH][];
+        for (int month = 0; month < months.length; month++) {
+            months[month] = sketchOf(month * PER_MONTH, Math.min(historySize, (month + 1) * PER_MONTH)).toBytes();
+        }
+    }
+
+    private WeightSketch sketchOf(int from, int to) {
+        WeightSketch sketch = new WeightSketch();
+        for (int i = from; i < to; i++) {
+            sketch.add(weights[i]);
+        }
+        return sketch;
+    }
+
+    @Benchmark
+    public void percentilesFromSketches(Blackhole blackhole) {
+        WeightSketch sketch = new WeightSketch();
+        for (byte[] month : months) {
+            sketch.merge(WeightSketch.fromBytes(month));
+        }
+        for (double q : QUANTILES) {
+            blackhole.consume(sketch.quantile(q));
+        }
+    }
+
+    @Benchmark
+    public void percentilesBySorting(Blackhole blackhole) {
+        double[] sorted = weights.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            blackhole.consume(sorted[(int) Math.max(1, Math.ceil(q * sorted.length)) - 1]);
+        }
+    }
+
+    @Benchmark
+    public long[] histogramFromSketches() {
+        WeightSketch sketch = new WeightSketch();
+        for (byte[] month : months) {
+            sketch.merge(WeightSketch.fromBytes(month));
+        }
+        long[] bins = new long[BINS];
+        sketch.histogram(150, 1, bins);
+        return bins;
+    }
+
+    @Benchmark
+    public int rebuildSketches() {
+        int bytes = 0;
+        for (int from = 0; from < historySize; from += PER_MONTH) {
+            bytes += sketchOf(from, Math.min(historySize, from + PER_MONTH)).toBytes().length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.dailyweighttracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packing {@code historySize} daily readings into one {@link WeightBlock} per month, as the
+ * archive does, and decoding them all back, as a read of an archived history does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArchiveBenchmarks {
+
+    private static final int PER_MONTH = 30;
+    private static final long DAY = 86_400_000L;
+
+    @Param({"365", "3650", "36500"})
+    public int historySize;
+
+    private long[] ids;
+    private long[] dates;
+    private double[] weights;
+    private byte[][] blocks;
+
+    @Setup
+    public void setUp() {
+        ids = new long[historySize];
+        dates = new long[historySize];
+        weights = new double[historySize];
+        // A morning reading to the tenth, a few minutes either side of 7:00
+        Random random = new Random(7);
+        double weight = 180;
+        for (int i = 0; i < historySize; i++) {
+            weight = Math.round((weight + random.nextGaussian() * 0.4) * 10) / 10.0;
+            ids[i] = i + 1;
+            dates[i] = StoreBenchmarks.START + i * DAY + 7 * StoreBenchmarks.HOUR + random.nextInt(600_000);
+            weights[i] = weight;
+        }
+        blocks = encodeAll();
+    }
+
+    @Benchmark
+    public byte[][] encodeAll() {
+        byte[][] encoded = new byte[(historySize + PER_MONTH - 1) / PER_MONTH][];
+        for (int month = 0; month < encoded.length; month++) {
+            encoded[month] = WeightBlock.encode(ids, dates, weights, month * PER_MONTH,
+                    Math.min(historySize, (month + 1) * PER_MONTH));
+        }
+        return encoded;
+    }
+
+    @Benchmark
+    public double[] decodeAll() {
+        long[] decodedIds = new long[historySize];
+        long[] decodedDates = new long[historySize];
+        double[] decodedWeights = new double[historySize];
+        int size = 0;
+        for (byte[] block : blocks) {
+            size += WeightBlock.decode(block, decodedIds, decodedDates, decodedWeights, size);
+        }
+        return decodedWeights;
+    }
+}
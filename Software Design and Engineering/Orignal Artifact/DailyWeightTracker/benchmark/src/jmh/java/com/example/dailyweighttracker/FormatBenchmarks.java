@@ -0,0 +1,87 @@
+package com.example.dailyweighttracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weight and date texts from {@link WeightFormat}, against the DecimalFormat and
+ * SimpleDateFormat it replaced, cycling through 1024 weights and dates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormatBenchmarks {
+
+    private static final String UNIT = "lbs";
+    // DatabaseHelper.DISPLAY_DATE_PATTERN
+    private static final String DISPLAY_DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    private static final int VALUES = 1024;
+    // A zone with daylight saving, so offsets change within the dates
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/New_York");
+
+    private final double[] weights = new double[VALUES];
+    private final long[] dates = new long[VALUES];
+    private final char[] dateChars = new char[WeightFormat.DATE_LENGTH];
+    private WeightFormat format;
+    private DecimalFormat decimalFormat;
+    private SimpleDateFormat dateFormat;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < VALUES; i++) {
+            weights[i] = StoreBenchmarks.weight(i);
+            dates[i] = StoreBenchmarks.START + i * 7L * StoreBenchmarks.HOUR;
+        }
+        format = new WeightFormat(UNIT, TIME_ZONE);
+        decimalFormat = new DecimalFormat("0.0");
+        dateFormat = new SimpleDateFormat(DISPLAY_DATE_PATTERN, Locale.US);
+        dateFormat.setTimeZone(TIME_ZONE);
+    }
+
+    @Benchmark
+    public String weight() {
+        return format.format(weights[nextIndex()]);
+    }
+
+    @Benchmark
+    public String weightDecimalFormat() {
+        return decimalFormat.format(weights[nextIndex()]) + " " + UNIT;
+    }
+
+    @Benchmark
+    public String weightNumber() {
+        return WeightFormat.formatNumber(weights[nextIndex()]);
+    }
+
+    @Benchmark
+    public int date() {
+        return format.writeDate(dates[nextIndex()], dateChars, 0);
+    }
+
+    @Benchmark
+    public String dateSimpleDateFormat() {
+        return dateFormat.format(new Date(dates[nextIndex()]));
+    }
+
+    @Benchmark
+    public String day() {
+        return format.formatDay(dates[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        return next++ & (VALUES - 1);
+    }
+}
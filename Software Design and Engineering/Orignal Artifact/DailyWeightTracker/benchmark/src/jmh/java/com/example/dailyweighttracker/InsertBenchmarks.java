@@ -0,0 +1,74 @@
+package com.example.dailyweighttracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts into a {@link WeightStore}, in memory or in segment files, holding {@code historySize} entries over {@code users}
+ * users: a new latest entry, and an entry backdated into the middle of a user's history. The
+ * store grows with every insert, so it is refilled before each iteration and each iteration times
+ * a fixed batch of inserts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = InsertBenchmarks.BATCH)
+@Measurement(iterations = 20, batchSize = InsertBenchmarks.BATCH)
+public class InsertBenchmarks {
+
+    static final int BATCH = 1000;
+    private static final int STRIDE = 7919;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int historySize;
+
+    @Param({"1", "10", "100"})
+    public int users;
+
+    @Param({"memory", "segment"})
+    public String engine;
+
+    private WeightStore store;
+    private int perUser;
+    private long nextDate;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void fill() throws IOException {
+        store = StoreBenchmarks.open(engine);
+        perUser = historySize / users;
+        StoreBenchmarks.fill(store, users, perUser);
+        nextDate = StoreBenchmarks.START + perUser * StoreBenchmarks.HOUR;
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        StoreBenchmarks.close(store);
+    }
+
+    @Benchmark
+    public long append() {
+        next += STRIDE;
+        return store.addWeight(1 + Math.floorMod(next, users), StoreBenchmarks.weight(next), nextDate++);
+    }
+
+    @Benchmark
+    public long backdate() {
+        next += STRIDE;
+        long date = StoreBenchmarks.START + Math.floorMod(next, perUser) * StoreBenchmarks.HOUR + 1;
+        return store.addWeight(1 + Math.floorMod(next, users), StoreBenchmarks.weight(next), date);
+    }
+}
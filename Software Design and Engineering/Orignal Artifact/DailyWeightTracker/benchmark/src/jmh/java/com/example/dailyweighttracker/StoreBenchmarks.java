@@ -0,0 +1,131 @@
+package com.example.dailyweighttracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads from a {@link WeightStore}, in memory or in segment files, holding {@code historySize}
+ * hourly entries spread evenly over {@code users} users: the most recent entry, one history page, and a user's whole history.
+ * Each call picks the next user and page position from a fixed sequence, so every run reads the
+ * same entries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StoreBenchmarks {
+
+    static final long START = 1_420_070_400_000L;
+    static final long HOUR = 3_600_000L;
+    // Rows per history page, as WeightHistoryPager.DEFAULT_PAGE_SIZE
+    private static final int PAGE_SIZE = 100;
+    // Step through users and positions by a prime, so consecutive calls don't read neighbours
+    private static final int STRIDE = 7919;
+
+    // Entries across all users
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int historySize;
+
+    @Param({"1", "10", "100"})
+    public int users;
+
+    @Param({"memory", "segment"})
+    public String engine;
+
+    private WeightStore store;
+    private int perUser;
+    private int next;
+
+    @Setup
+    public void fill() throws IOException {
+        store = open(engine);
+        perUser = historySize / users;
+        fill(store, users, perUser);
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        close(store);
+    }
+
+    // A new, empty store of the given kind
+    static WeightStore open(String engine) throws IOException {
+        if (engine.equals("segment")) {
+            return new SegmentWeightStore(Files.createTempDirectory("segments").toFile(), new InMemoryWeightStore());
+        }
+        return new InMemoryWeightStore();
+    }
+
+    // Closes a store from open and deletes its files
+    static void close(WeightStore store) throws IOException {
+        if (store instanceof SegmentWeightStore) {
+            ((SegmentWeightStore) store).close();
+            File directory = ((SegmentWeightStore) store).getDirectory();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Files.delete(file.toPath());
+                }
+            }
+            Files.delete(directory.toPath());
+        }
+    }
+
+    /**
+     * Gives users 1 to {@code users} an entry an hour each, from {@link #START}.
+     */
+    static void fill(WeightStore store, int users, int perUser) {
+        List<WeightEntry> entries = new ArrayList<>(perUser);
+        for (int i = 0; i < perUser; i++) {
+            entries.add(WeightEntry.of(weight(i), START + i * HOUR));
+        }
+        for (int user = 1; user <= users; user++) {
+            store.addWeights(user, entries);
+        }
+    }
+
+    // Weights around 150 with hundredths, like the device benchmarks
+    static double weight(int i) {
+        return 150 + (i * 7919 % 3000) / 100.0;
+    }
+
+    @Benchmark
+    public WeightEntry mostRecent() {
+        return store.getMostRecentWeight(nextUser());
+    }
+
+    @Benchmark
+    public List<WeightEntry> firstPage() {
+        return store.getWeightsAfter(nextUser(), Long.MIN_VALUE, Long.MIN_VALUE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<WeightEntry> pageAtRandomPosition() {
+        long user = nextUser();
+        long afterDate = START + (long) Math.floorMod(next, perUser) * HOUR;
+        return store.getWeightsAfter(user, afterDate, Long.MAX_VALUE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<WeightEntry> wholeHistory() {
+        return store.getAllWeights(nextUser());
+    }
+
+    private long nextUser() {
+        next += STRIDE;
+        return 1 + Math.floorMod(next, users);
+    }
+}